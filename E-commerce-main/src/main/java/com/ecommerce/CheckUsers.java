@@ -37,7 +37,7 @@ public class CheckUsers {
             System.err.println("\nPossible causes:");
             System.err.println("1. MySQL is not running.");
             System.err.println("2. Database 'ecommerce_db' does not exist.");
-            System.err.println("3. Username/Password in DatabaseConnection.java are incorrect.");
+            System.err.println("3. Username/Password are incorrect (set -Ddb.user / -Ddb.password).");
         }
     }
 }
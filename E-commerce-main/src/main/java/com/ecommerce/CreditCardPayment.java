@@ -7,4 +7,9 @@ public class CreditCardPayment implements PaymentProcessor {
         System.out.println("Processing credit card payment of $" + amount);
         return true; // Assume success
     }
+
+    @Override
+    public void refundPayment(double amount) {
+        System.out.println("Refunding credit card payment of $" + amount);
+    }
 }
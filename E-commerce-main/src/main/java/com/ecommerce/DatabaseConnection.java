@@ -1,20 +1,122 @@
 package com.ecommerce;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.stream.Collectors;
 
+/**
+ * Pooled connection provider. The driver is loaded once when the pool starts and
+ * connections are validated on borrow by the pool. Settings come from system
+ * properties:
+ * <ul>
+ * <li>{@code db.profile} - {@code mysql} (default) or {@code h2} for a local MySQL-mode stand-in</li>
+ * <li>{@code db.url}, {@code db.user}, {@code db.password} - override the profile's defaults</li>
+ * <li>{@code db.pool.size} - maximum pool size (default 10)</li>
+ * <li>{@code db.pool.timeoutMs} - how long getConnection waits for a free connection (default 5000)</li>
+ * <li>{@code db.pool.keepaliveMs} - how often idle connections are tested in the background (default 60000, 0 disables)</li>
+ * <li>{@code db.statementCacheSize} - prepared statements cached per connection (default 250)</li>
+ * </ul>
+ * A borrowed connection idle for longer than Hikari's bypass window (500ms) is
+ * validated first. That window is JVM-wide, so it is a deployment flag
+ * ({@code -Dcom.zaxxer.hikari.aliveBypassWindowMs}) rather than a pool setting.
+ */
 public class DatabaseConnection {
     private static final String URL = "jdbc:mysql://localhost:3306/ecommerce_db";
     private static final String USER = "root";
     private static final String PASSWORD = "password"; // Change as needed
 
+    private static final String H2_URL = "jdbc:h2:mem:ecommerce_db;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    private static final String H2_USER = "sa";
+    private static final String H2_PASSWORD = "";
+
+    private static final HikariDataSource DATA_SOURCE = createDataSource();
+
     public static Connection getConnection() throws SQLException {
-        try {
-            Class.forName("com.mysql.cj.jdbc.Driver");
-            return DriverManager.getConnection(URL, USER, PASSWORD);
-        } catch (ClassNotFoundException e) {
-            throw new SQLException("MySQL JDBC Driver not found", e);
+        return DATA_SOURCE.getConnection();
+    }
+
+    public static DataSource getDataSource() {
+        return DATA_SOURCE;
+    }
+
+    public static boolean isH2() {
+        return "h2".equalsIgnoreCase(System.getProperty("db.profile"));
+    }
+
+    public static String poolStats() {
+        HikariPoolMXBean pool = DATA_SOURCE.getHikariPoolMXBean();
+        return "Pool{active=" + pool.getActiveConnections() + ", idle=" + pool.getIdleConnections()
+                + ", total=" + pool.getTotalConnections() + ", waiting=" + pool.getThreadsAwaitingConnection()
+                + ", max=" + DATA_SOURCE.getMaximumPoolSize() + "}";
+    }
+
+    public static void shutdown() {
+        DATA_SOURCE.close();
+    }
+
+    private static HikariDataSource createDataSource() {
+        boolean h2 = isH2();
+        int statementCacheSize = Integer.getInteger("db.statementCacheSize", 250);
+
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("ecommerce");
+        config.setJdbcUrl(System.getProperty("db.url", h2 ? H2_URL + ";QUERY_CACHE_SIZE=" + statementCacheSize : URL));
+        config.setUsername(System.getProperty("db.user", h2 ? H2_USER : USER));
+        config.setPassword(System.getProperty("db.password", h2 ? H2_PASSWORD : PASSWORD));
+        config.setMaximumPoolSize(Integer.getInteger("db.pool.size", 10));
+        config.setConnectionTimeout(Long.getLong("db.pool.timeoutMs", 5_000L));
+        config.setValidationTimeout(1_000L);
+        // Start even with the database down; getConnection then throws SQLException until it is back
+        config.setInitializationFailTimeout(-1);
+        // Idle connections are tested off the request path, so few borrows find a dead one
+        config.setKeepaliveTime(Long.getLong("db.pool.keepaliveMs", 60_000L));
+
+        if (!h2) {
+            // Server-side prepared statements, cached per connection by the driver
+            config.addDataSourceProperty("useServerPrepStmts", "true");
+            config.addDataSourceProperty("cachePrepStmts", "true");
+            config.addDataSourceProperty("prepStmtCacheSize", String.valueOf(statementCacheSize));
+            config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+            config.addDataSourceProperty("useLocalSessionState", "true");
+            config.addDataSourceProperty("rewriteBatchedStatements", "true");
+            // Honour Statement.setFetchSize with a server-side cursor instead of buffering whole result sets
+            config.addDataSourceProperty("useCursorFetch", "true");
+        }
+
+        HikariDataSource dataSource = new HikariDataSource(config);
+        if (h2) {
+            loadH2Schema(dataSource);
+        }
+        return dataSource;
+    }
+
+    private static void loadH2Schema(DataSource dataSource) {
+        try (InputStream is = DatabaseConnection.class.getResourceAsStream("/schema-h2.sql");
+                Connection conn = dataSource.getConnection();
+                Statement stmt = conn.createStatement()) {
+            if (is == null) {
+                System.out.println("Script not found: /schema-h2.sql");
+                return;
+            }
+            String sql = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))
+                    .lines().filter(line -> !line.trim().startsWith("--")).collect(Collectors.joining("\n"));
+            for (String statement : sql.split(";")) {
+                if (!statement.trim().isEmpty()) {
+                    stmt.execute(statement);
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
         }
     }
 }
@@ -2,4 +2,7 @@ package com.ecommerce;
 
 public interface PaymentProcessor {
     boolean processPayment(double amount);
+
+    /** Gives back a payment that was taken for an order that could not be placed. */
+    void refundPayment(double amount);
 }
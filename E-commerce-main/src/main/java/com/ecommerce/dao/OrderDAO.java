@@ -7,8 +7,16 @@ import com.ecommerce.model.Product;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class OrderDAO {
+    private static final int ROWS_PER_INSERT = 256;
+    private static final int FETCH_SIZE = Integer.getInteger("orders.fetchSize", 1000);
+
     public void create(Order order) throws SQLException {
         String sql = "INSERT INTO orders (user_id, total_amount, status) VALUES (?, ?, ?)";
         try (Connection conn = DatabaseConnection.getConnection();
@@ -26,6 +34,77 @@ public class OrderDAO {
         }
     }
 
+    /**
+     * Inserts all orders and their items in one transaction using multi-row
+     * INSERTs, setting each order's generated id. Either every order is stored
+     * or none is.
+     */
+    public void createAll(List<Order> orders) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                for (int from = 0; from < orders.size(); from += ROWS_PER_INSERT) {
+                    insertOrders(conn, orders.subList(from, Math.min(orders.size(), from + ROWS_PER_INSERT)));
+                }
+                List<int[]> items = new ArrayList<>();
+                for (Order order : orders) {
+                    for (Product product : order.getProducts()) {
+                        items.add(new int[]{order.getId(), product.getId()});
+                    }
+                }
+                for (int from = 0; from < items.size(); from += ROWS_PER_INSERT) {
+                    insertItems(conn, items.subList(from, Math.min(items.size(), from + ROWS_PER_INSERT)));
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    private void insertOrders(Connection conn, List<Order> orders) throws SQLException {
+        StringBuilder sql = new StringBuilder("INSERT INTO orders (user_id, total_amount, status) VALUES ");
+        for (int i = 0; i < orders.size(); i++) {
+            sql.append(i == 0 ? "(?, ?, ?)" : ", (?, ?, ?)");
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString(), Statement.RETURN_GENERATED_KEYS)) {
+            int p = 1;
+            for (Order order : orders) {
+                stmt.setInt(p++, order.getUserId());
+                stmt.setDouble(p++, order.getTotalAmount());
+                stmt.setString(p++, order.getStatus());
+            }
+            stmt.executeUpdate();
+            // Keys come back in row order
+            ResultSet rs = stmt.getGeneratedKeys();
+            for (Order order : orders) {
+                if (!rs.next()) {
+                    throw new SQLException("Fewer generated keys than inserted orders");
+                }
+                order.setId(rs.getInt(1));
+            }
+        }
+    }
+
+    private void insertItems(Connection conn, List<int[]> items) throws SQLException {
+        StringBuilder sql = new StringBuilder("INSERT INTO order_items (order_id, product_id) VALUES ");
+        for (int i = 0; i < items.size(); i++) {
+            sql.append(i == 0 ? "(?, ?)" : ", (?, ?)");
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            int p = 1;
+            for (int[] item : items) {
+                stmt.setInt(p++, item[0]);
+                stmt.setInt(p++, item[1]);
+            }
+            stmt.executeUpdate();
+        }
+    }
+
     private void insertOrderItems(Connection conn, Order order) throws SQLException {
         String sql = "INSERT INTO order_items (order_id, product_id) VALUES (?, ?)";
         try (PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -70,18 +149,109 @@ public class OrderDAO {
 
     public List<Order> readAll() throws SQLException {
         List<Order> orders = new ArrayList<>();
-        String sql = "SELECT * FROM orders";
+        forEach(orders::add);
+        return orders;
+    }
+
+    /**
+     * Streams every order with its products to the callback using one ordered
+     * join. Each order is assembled while the rows stream in and handed over as
+     * soon as its last row has been read, so only one order is held at a time.
+     */
+    public void forEach(Consumer<Order> consumer) throws SQLException {
         try (Connection conn = DatabaseConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                Order order = new Order(rs.getInt("id"), rs.getInt("user_id"), null,
-                        rs.getDouble("total_amount"), rs.getString("status"));
-                order.setProducts(getOrderItems(conn, order.getId()));
-                orders.add(order);
+             PreparedStatement stmt = prepareReadAll(conn);
+             ResultSet rs = stmt.executeQuery()) {
+            OrderAssembler assembler = new OrderAssembler(rs);
+            Order order;
+            while ((order = assembler.next()) != null) {
+                consumer.accept(order);
             }
         }
-        return orders;
+    }
+
+    /**
+     * Lazy variant of {@link #forEach}. The stream holds a pooled connection
+     * until it is closed, so use it in try-with-resources.
+     */
+    public Stream<Order> streamAll() throws SQLException {
+        Connection conn = DatabaseConnection.getConnection();
+        try {
+            PreparedStatement stmt = prepareReadAll(conn);
+            ResultSet rs = stmt.executeQuery();
+            OrderAssembler assembler = new OrderAssembler(rs);
+            Spliterator<Order> spliterator = new Spliterators.AbstractSpliterator<Order>(Long.MAX_VALUE,
+                    Spliterator.ORDERED | Spliterator.NONNULL) {
+                @Override
+                public boolean tryAdvance(Consumer<? super Order> action) {
+                    try {
+                        Order order = assembler.next();
+                        if (order == null) {
+                            return false;
+                        }
+                        action.accept(order);
+                        return true;
+                    } catch (SQLException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+            return StreamSupport.stream(spliterator, false).onClose(() -> {
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            });
+        } catch (SQLException | RuntimeException e) {
+            conn.close();
+            throw e;
+        }
+    }
+
+    private PreparedStatement prepareReadAll(Connection conn) throws SQLException {
+        String sql = "SELECT o.id AS order_id, o.user_id, o.total_amount, o.status, "
+                + "p.id AS product_id, p.name, p.price, p.category, p.stock "
+                + "FROM orders o "
+                + "LEFT JOIN order_items oi ON oi.order_id = o.id "
+                + "LEFT JOIN products p ON p.id = oi.product_id "
+                + "ORDER BY o.id, oi.id";
+        PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        stmt.setFetchSize(FETCH_SIZE);
+        return stmt;
+    }
+
+    /** Folds consecutive join rows that share an order id into one Order. */
+    private static class OrderAssembler {
+        private final ResultSet rs;
+        private boolean hasRow;
+        private boolean started;
+
+        OrderAssembler(ResultSet rs) {
+            this.rs = rs;
+        }
+
+        Order next() throws SQLException {
+            if (!started) {
+                hasRow = rs.next();
+                started = true;
+            }
+            if (!hasRow) {
+                return null;
+            }
+            int orderId = rs.getInt("order_id");
+            Order order = new Order(orderId, rs.getInt("user_id"), new ArrayList<>(),
+                    rs.getDouble("total_amount"), rs.getString("status"));
+            do {
+                int productId = rs.getInt("product_id");
+                if (!rs.wasNull()) {
+                    order.getProducts().add(new Product(productId, rs.getString("name"), rs.getDouble("price"),
+                            rs.getString("category"), rs.getInt("stock")));
+                }
+                hasRow = rs.next();
+            } while (hasRow && rs.getInt("order_id") == orderId);
+            return order;
+        }
     }
 
     public void update(Order order) throws SQLException {
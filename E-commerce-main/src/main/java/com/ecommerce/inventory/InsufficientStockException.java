@@ -0,0 +1,14 @@
+package com.ecommerce.inventory;
+
+public class InsufficientStockException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final int productId;
+
+    public InsufficientStockException(int productId, int requested, int available) {
+        super("Insufficient stock for product " + productId + ": requested " + requested + ", available " + available);
+        this.productId = productId;
+    }
+
+    public int getProductId() { return productId; }
+}
@@ -0,0 +1,334 @@
+package com.ecommerce.inventory;
+
+import com.ecommerce.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory stock counters per SKU. Reserving is a compare-and-set on the
+ * SKU's available count, so concurrent orders for different products never
+ * contend and orders for the same product only retry on a lost CAS.
+ *
+ * Committed units are written back to products.stock in batches by a
+ * background reconciler. Stock changes made by other processes are folded in
+ * by a full re-read of products.stock, which runs on its own, longer interval.
+ * Reservations that are neither committed, released nor pinned within their
+ * TTL are released by the same background thread.
+ *
+ * Across JVMs the database remains the source of truth only up to one
+ * refresh interval; two processes can still oversell a SKU inside that window.
+ */
+public class InventoryEngine {
+    private static volatile InventoryEngine instance;
+
+    private final Map<Integer, Sku> skus = new ConcurrentHashMap<>();
+    private final Map<Long, Reservation> active = new ConcurrentHashMap<>();
+    private final AtomicLong reservationIds = new AtomicLong();
+    private final long ttlMs;
+    private final long refreshIntervalMs;
+    private volatile long lastRefresh = System.currentTimeMillis();
+    private final ScheduledExecutorService background;
+
+    private final LongAdder reserved = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder casRetries = new LongAdder();
+    private final LongAdder committed = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder reconciles = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder reconcileFailures = new LongAdder();
+    private final LongAdder unitsFlushed = new LongAdder();
+
+    public InventoryEngine(long ttlMs, long reconcileIntervalMs, long refreshIntervalMs) {
+        this.ttlMs = ttlMs;
+        this.refreshIntervalMs = refreshIntervalMs;
+        this.background = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "inventory-reconciler");
+            t.setDaemon(true);
+            return t;
+        });
+        background.scheduleWithFixedDelay(this::expireReservations, 1, 1, TimeUnit.SECONDS);
+        background.scheduleWithFixedDelay(() -> {
+            try {
+                reconcile();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }, reconcileIntervalMs, reconcileIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public static InventoryEngine getInstance() {
+        if (instance == null) {
+            synchronized (InventoryEngine.class) {
+                if (instance == null) {
+                    instance = new InventoryEngine(Long.getLong("inventory.reservationTtlMs", 60_000L),
+                            Long.getLong("inventory.reconcileMs", 1_000L),
+                            Long.getLong("inventory.refreshMs", 30_000L));
+                }
+            }
+        }
+        return instance;
+    }
+
+    /** Loads counters for every product up front instead of on first reservation. */
+    public void loadAll() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, stock FROM products")) {
+            while (rs.next()) {
+                int id = rs.getInt("id");
+                int stock = rs.getInt("stock");
+                skus.computeIfAbsent(id, k -> new Sku(stock));
+            }
+        }
+    }
+
+    /**
+     * Holds the given units (product id -> quantity) for all products or none.
+     * Products are reserved in id order and rolled back on the first shortfall.
+     */
+    public Reservation reserve(Map<Integer, Integer> quantities) throws SQLException {
+        Map<Integer, Integer> ordered = new TreeMap<>(quantities);
+        List<Map.Entry<Integer, Integer>> taken = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> entry : ordered.entrySet()) {
+            int quantity = entry.getValue();
+            if (quantity <= 0) {
+                throw new IllegalArgumentException("Quantity must be positive for product " + entry.getKey());
+            }
+            Sku sku = sku(entry.getKey());
+            if (sku == null || !sku.tryReserve(quantity, casRetries)) {
+                // Reconciling external decrements can leave the count below zero
+                int available = sku == null ? 0 : Math.max(0, sku.available.get());
+                for (Map.Entry<Integer, Integer> undo : taken) {
+                    skus.get(undo.getKey()).release(undo.getValue());
+                }
+                rejected.increment();
+                throw new InsufficientStockException(entry.getKey(), quantity, available);
+            }
+            taken.add(entry);
+        }
+        Reservation reservation = new Reservation(reservationIds.incrementAndGet(), ordered,
+                System.currentTimeMillis() + ttlMs);
+        active.put(reservation.getId(), reservation);
+        reserved.increment();
+        return reservation;
+    }
+
+    /**
+     * Stops the reservation from expiring, for callers about to act on it with no way
+     * back. Returns false if it already expired or was committed or released.
+     */
+    public boolean pin(Reservation reservation) {
+        return reservation.transition(Reservation.ACTIVE, Reservation.PINNED);
+    }
+
+    /** Makes the reservation permanent; the units are written to the database on the next reconcile. */
+    public boolean commit(Reservation reservation) {
+        if (!reservation.transition(Reservation.COMMITTED)) {
+            return false;
+        }
+        active.remove(reservation.getId());
+        for (Map.Entry<Integer, Integer> entry : reservation.getQuantities().entrySet()) {
+            skus.get(entry.getKey()).commit(entry.getValue());
+        }
+        committed.increment();
+        return true;
+    }
+
+    /** Returns the reserved units to the available pool. */
+    public boolean release(Reservation reservation) {
+        if (!reservation.transition(Reservation.RELEASED)) {
+            return false;
+        }
+        returnUnits(reservation);
+        return true;
+    }
+
+    private void returnUnits(Reservation reservation) {
+        active.remove(reservation.getId());
+        for (Map.Entry<Integer, Integer> entry : reservation.getQuantities().entrySet()) {
+            skus.get(entry.getKey()).release(entry.getValue());
+        }
+        released.increment();
+    }
+
+    public int getAvailable(int productId) {
+        Sku sku = skus.get(productId);
+        return sku == null ? -1 : sku.available.get();
+    }
+
+    /**
+     * Writes committed units back to products.stock in one batch, and once every
+     * refresh interval re-reads stock so that changes made outside this engine are
+     * reflected in the counters.
+     */
+    public void reconcile() throws SQLException {
+        reconcile(System.currentTimeMillis() - lastRefresh >= refreshIntervalMs);
+    }
+
+    /** Reconciles and re-reads stock regardless of the refresh interval. */
+    public void refresh() throws SQLException {
+        reconcile(true);
+    }
+
+    private synchronized void reconcile(boolean refresh) throws SQLException {
+        Map<Integer, Integer> flushed = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Sku> entry : skus.entrySet()) {
+            int units = entry.getValue().unflushed.getAndSet(0);
+            if (units > 0) {
+                flushed.put(entry.getKey(), units);
+            }
+        }
+        if (flushed.isEmpty() && !refresh) {
+            return;
+        }
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            if (!flushed.isEmpty()) {
+                try (PreparedStatement stmt = conn.prepareStatement("UPDATE products SET stock = stock - ? WHERE id = ?")) {
+                    for (Map.Entry<Integer, Integer> entry : flushed.entrySet()) {
+                        stmt.setInt(1, entry.getValue());
+                        stmt.setInt(2, entry.getKey());
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                } catch (SQLException e) {
+                    // Put the units back so the next pass retries them
+                    for (Map.Entry<Integer, Integer> entry : flushed.entrySet()) {
+                        skus.get(entry.getKey()).unflushed.addAndGet(entry.getValue());
+                    }
+                    reconcileFailures.increment();
+                    throw e;
+                }
+                for (Map.Entry<Integer, Integer> entry : flushed.entrySet()) {
+                    Sku sku = skus.get(entry.getKey());
+                    sku.lastKnownDbStock -= entry.getValue();
+                    unitsFlushed.add(entry.getValue());
+                }
+            }
+
+            if (refresh) {
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT id, stock FROM products")) {
+                    while (rs.next()) {
+                        Sku sku = skus.get(rs.getInt("id"));
+                        if (sku != null) {
+                            int dbStock = rs.getInt("stock");
+                            int external = dbStock - sku.lastKnownDbStock;
+                            if (external != 0) {
+                                sku.available.addAndGet(external);
+                                sku.lastKnownDbStock = dbStock;
+                            }
+                        }
+                    }
+                }
+                lastRefresh = System.currentTimeMillis();
+                refreshes.increment();
+            }
+        }
+        reconciles.increment();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("skus", skus.size());
+        stats.put("activeReservations", active.size());
+        stats.put("reserved", reserved.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("casRetries", casRetries.sum());
+        stats.put("committed", committed.sum());
+        stats.put("released", released.sum());
+        stats.put("expired", expired.sum());
+        stats.put("reconciles", reconciles.sum());
+        stats.put("refreshes", refreshes.sum());
+        stats.put("reconcileFailures", reconcileFailures.sum());
+        stats.put("unitsFlushed", unitsFlushed.sum());
+        return stats;
+    }
+
+    public void shutdown() throws SQLException {
+        background.shutdownNow();
+        reconcile();
+    }
+
+    private void expireReservations() {
+        long now = System.currentTimeMillis();
+        for (Reservation reservation : active.values()) {
+            // Pinned reservations are left alone
+            if (reservation.getExpiresAt() <= now
+                    && reservation.transition(Reservation.ACTIVE, Reservation.RELEASED)) {
+                returnUnits(reservation);
+                expired.increment();
+            }
+        }
+    }
+
+    private Sku sku(int productId) throws SQLException {
+        Sku sku = skus.get(productId);
+        if (sku != null) {
+            return sku;
+        }
+        String sql = "SELECT stock FROM products WHERE id = ?";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, productId);
+            ResultSet rs = stmt.executeQuery();
+            if (!rs.next()) {
+                return null;
+            }
+            int stock = rs.getInt("stock");
+            return skus.computeIfAbsent(productId, k -> new Sku(stock));
+        }
+    }
+
+    private static class Sku {
+        final AtomicInteger available;
+        // Committed but not yet written to products.stock
+        final AtomicInteger unflushed = new AtomicInteger();
+        // Only touched by the reconciler
+        int lastKnownDbStock;
+
+        Sku(int stock) {
+            this.available = new AtomicInteger(stock);
+            this.lastKnownDbStock = stock;
+        }
+
+        /** Takes the units if that many are available; a count at or below zero never satisfies a reservation. */
+        boolean tryReserve(int quantity, LongAdder retries) {
+            while (true) {
+                int current = available.get();
+                if (current < quantity) {
+                    return false;
+                }
+                if (available.compareAndSet(current, current - quantity)) {
+                    return true;
+                }
+                retries.increment();
+            }
+        }
+
+        void commit(int quantity) {
+            unflushed.addAndGet(quantity);
+        }
+
+        void release(int quantity) {
+            available.addAndGet(quantity);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.ecommerce.inventory;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Units held against one or more SKUs until they are committed, released or
+ * expire. State moves ACTIVE -> COMMITTED | RELEASED exactly once, optionally
+ * by way of PINNED, which only stops the reservation from expiring.
+ */
+public class Reservation {
+    static final int ACTIVE = 0;
+    static final int COMMITTED = 1;
+    static final int RELEASED = 2;
+    static final int PINNED = 3;
+
+    private final long id;
+    private final Map<Integer, Integer> quantities;
+    private final long expiresAt;
+    private final AtomicInteger state = new AtomicInteger(ACTIVE);
+
+    Reservation(long id, Map<Integer, Integer> quantities, long expiresAt) {
+        this.id = id;
+        this.quantities = Collections.unmodifiableMap(quantities);
+        this.expiresAt = expiresAt;
+    }
+
+    public long getId() { return id; }
+
+    /** Product id -> units held. */
+    public Map<Integer, Integer> getQuantities() { return quantities; }
+
+    public long getExpiresAt() { return expiresAt; }
+
+    public boolean isActive() {
+        int current = state.get();
+        return current == ACTIVE || current == PINNED;
+    }
+
+    /** Moves an active or pinned reservation to {@code to}. */
+    boolean transition(int to) {
+        while (true) {
+            int current = state.get();
+            if (current != ACTIVE && current != PINNED) {
+                return false;
+            }
+            if (state.compareAndSet(current, to)) {
+                return true;
+            }
+        }
+    }
+
+    boolean transition(int from, int to) {
+        return state.compareAndSet(from, to);
+    }
+
+    @Override
+    public String toString() {
+        return "Reservation{" +
+                "id=" + id +
+                ", quantities=" + quantities +
+                ", state=" + state.get() +
+                '}';
+    }
+}
@@ -0,0 +1,117 @@
+package com.ecommerce.service;
+
+import com.ecommerce.metrics.Histogram;
+
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs order work with at most {@code maxInFlight} tasks admitted at once;
+ * anything beyond that is rejected immediately instead of piling up threads.
+ * Uses a virtual thread per task when the JVM provides them (looked up
+ * reflectively so the code still compiles for Java 11), otherwise a fixed
+ * pool of platform threads.
+ */
+public class OrderExecutor implements Executor {
+    private final ExecutorService delegate;
+    private final boolean virtualThreads;
+    private final int maxInFlight;
+    private final Semaphore permits;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final Histogram queueWaitMicros = new Histogram("us");
+    private final Histogram runTimeMicros = new Histogram("us");
+
+    public OrderExecutor(int maxInFlight, int platformThreads, boolean preferVirtualThreads) {
+        ExecutorService virtual = preferVirtualThreads ? newVirtualThreadExecutor() : null;
+        this.virtualThreads = virtual != null;
+        this.delegate = virtual != null ? virtual : newPlatformExecutor(platformThreads);
+        this.maxInFlight = maxInFlight;
+        this.permits = new Semaphore(maxInFlight);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (!permits.tryAcquire()) {
+            rejected.increment();
+            throw new RejectedExecutionException("Order executor saturated (" + maxInFlight + " in flight)");
+        }
+        long queuedAt = System.nanoTime();
+        try {
+            delegate.execute(() -> {
+                long start = System.nanoTime();
+                queueWaitMicros.record((start - queuedAt) / 1_000);
+                try {
+                    task.run();
+                    completed.increment();
+                } catch (RuntimeException | Error e) {
+                    failed.increment();
+                    throw e;
+                } finally {
+                    runTimeMicros.record((System.nanoTime() - start) / 1_000);
+                    permits.release();
+                }
+            });
+            submitted.increment();
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("virtualThreads", virtualThreads);
+        stats.put("maxInFlight", maxInFlight);
+        stats.put("inFlight", maxInFlight - permits.availablePermits());
+        stats.put("submitted", submitted.sum());
+        stats.put("completed", completed.sum());
+        stats.put("failed", failed.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("queueWait", queueWaitMicros.snapshot());
+        stats.put("runTime", runTimeMicros.snapshot());
+        return stats;
+    }
+
+    public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        delegate.shutdown();
+        return delegate.awaitTermination(timeout, unit);
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newPlatformExecutor(int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        // Unbounded queue is fine here: admission is already bounded by the semaphore
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "order-worker-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+}
@@ -0,0 +1,194 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dao.OrderDAO;
+import com.ecommerce.metrics.Histogram;
+import com.ecommerce.model.Order;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded queue of orders waiting to be stored, drained by a single writer
+ * thread. The writer collects whatever arrives within {@code windowMicros} of
+ * the first queued order, up to {@code maxBatch} orders, and stores the group
+ * with one transaction and multi-row INSERTs. Orders are written in the order
+ * they were submitted.
+ *
+ * If a group fails, its orders are retried one by one so a single bad order
+ * only fails its own future.
+ *
+ * Callers claim a slot before doing work they cannot take back (such as taking
+ * payment), so a full queue rejects the order up front rather than at submit.
+ * A slot is held until its order has been written or has failed.
+ */
+public class OrderIngestQueue {
+    private final OrderDAO orderDAO;
+    private final BlockingQueue<Pending> queue;
+    private final int capacity;
+    private final Semaphore slots;
+    private final long windowNanos;
+    private final int maxBatch;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder groupFailures = new LongAdder();
+    private final Histogram batchSize = new Histogram("orders");
+    private final Histogram commitMicros = new Histogram("us");
+    private final Histogram endToEndMicros = new Histogram("us");
+
+    public OrderIngestQueue(OrderDAO orderDAO, int capacity, long windowMicros, int maxBatch) {
+        this.orderDAO = orderDAO;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.capacity = capacity;
+        this.slots = new Semaphore(capacity);
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxBatch = maxBatch;
+        this.writer = new Thread(this::drainLoop, "order-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /** Claims a slot for one order. Throws RejectedExecutionException when every slot is taken. */
+    public void claim() {
+        if (!running || !slots.tryAcquire()) {
+            rejected.increment();
+            throw new RejectedExecutionException("Order ingest queue is full");
+        }
+    }
+
+    /** Gives back a claimed slot that will not be submitted. */
+    public void release() {
+        slots.release();
+    }
+
+    /**
+     * Queues the order for the next group commit, using a slot claimed earlier.
+     * The future completes with the generated order id. Throws
+     * RejectedExecutionException once the queue has been shut down, in which case
+     * the slot is still the caller's to release.
+     */
+    public CompletableFuture<Integer> submit(Order order) {
+        Pending pending = new Pending(order);
+        // There are never more claimed slots than queue capacity, so offer only fails after shutdown
+        if (!running || !queue.offer(pending)) {
+            rejected.increment();
+            throw new RejectedExecutionException("Order ingest queue is shut down");
+        }
+        submitted.increment();
+        return pending.future;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queued", queue.size());
+        stats.put("claimed", capacity - slots.availablePermits());
+        stats.put("submitted", submitted.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("written", written.sum());
+        stats.put("failed", failed.sum());
+        stats.put("groupFailures", groupFailures.sum());
+        stats.put("batchSize", batchSize.snapshot());
+        stats.put("commitLatency", commitMicros.snapshot());
+        stats.put("endToEndLatency", endToEndMicros.snapshot());
+        return stats;
+    }
+
+    /** Stops accepting orders and waits for the writer to store everything already queued. */
+    public void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        running = false;
+        writer.join(unit.toMillis(timeout));
+    }
+
+    private void drainLoop() {
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                // Timed poll so the loop notices shutdown without interrupting a write in progress
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatch) {
+                    if (queue.drainTo(batch, maxBatch - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    Pending next = remaining > 0 && running ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Pending> batch) {
+        List<Order> orders = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            orders.add(pending.order);
+        }
+        long start = System.nanoTime();
+        try {
+            orderDAO.createAll(orders);
+            long now = System.nanoTime();
+            batchSize.record(batch.size());
+            commitMicros.record((now - start) / 1_000);
+            for (Pending pending : batch) {
+                complete(pending, now);
+            }
+        } catch (SQLException | RuntimeException e) {
+            groupFailures.increment();
+            for (Pending pending : batch) {
+                try {
+                    orderDAO.create(pending.order);
+                    complete(pending, System.nanoTime());
+                } catch (SQLException | RuntimeException single) {
+                    failed.increment();
+                    slots.release();
+                    pending.future.completeExceptionally(single);
+                }
+            }
+        }
+    }
+
+    private void complete(Pending pending, long now) {
+        written.increment();
+        slots.release();
+        endToEndMicros.record((now - pending.queuedAt) / 1_000);
+        pending.future.complete(pending.order.getId());
+    }
+
+    private static class Pending {
+        final Order order;
+        final long queuedAt = System.nanoTime();
+        final CompletableFuture<Integer> future = new CompletableFuture<>();
+
+        Pending(Order order) {
+            this.order = order;
+        }
+    }
+}
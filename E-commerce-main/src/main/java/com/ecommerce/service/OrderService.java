@@ -2,55 +2,183 @@ package com.ecommerce.service;
 
 import com.ecommerce.PaymentProcessor;
 import com.ecommerce.dao.OrderDAO;
-import com.ecommerce.dao.ProductDAO;
+import com.ecommerce.inventory.InventoryEngine;
+import com.ecommerce.inventory.Reservation;
 import com.ecommerce.model.Order;
 import com.ecommerce.model.Product;
 
 import java.sql.SQLException;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class OrderService {
+    private static final OrderExecutor EXECUTOR = new OrderExecutor(
+            Integer.getInteger("orders.maxInFlight", 256),
+            Integer.getInteger("orders.threads", Runtime.getRuntime().availableProcessors() * 4),
+            Boolean.parseBoolean(System.getProperty("orders.virtualThreads", "true")));
+    private static final OrderIngestQueue ORDER_QUEUE = new OrderIngestQueue(new OrderDAO(),
+            Integer.getInteger("orders.ingest.capacity", 8192),
+            Long.getLong("orders.ingest.windowMicros", 2_000L),
+            Integer.getInteger("orders.ingest.maxBatch", 256));
+
     private OrderDAO orderDAO = new OrderDAO();
-    private ProductDAO productDAO = new ProductDAO();
-    private List<Order> orderQueue = new CopyOnWriteArrayList<>();
-    private Map<String, Order> orderMap = new ConcurrentHashMap<>();
-    private Set<String> processedOrders = ConcurrentHashMap.newKeySet();
-
-    public synchronized void placeOrder(Order order, PaymentProcessor paymentProcessor) throws SQLException {
-        // Polymorphism: paymentProcessor.processPayment can be any implementation
-        if (paymentProcessor.processPayment(order.getTotalAmount())) {
-            orderDAO.create(order);
-            // Update stock in a separate thread
-            new Thread(() -> {
+    private InventoryEngine inventory = InventoryEngine.getInstance();
+    // Placement futures by tracking id, removed once the order completes or fails
+    private final Map<Long, CompletableFuture<Order>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong trackingIds = new AtomicLong();
+
+    /**
+     * Places the order on the order executor. The future completes with the
+     * order (its id set) once it is stored and its stock committed, or
+     * exceptionally with the payment, stock or database failure; a payment taken
+     * for an order that then fails is refunded. Throws RejectedExecutionException
+     * straight away when too many orders are in flight or waiting to be stored.
+     */
+    public CompletableFuture<Order> placeOrderAsync(Order order, PaymentProcessor paymentProcessor) {
+        ORDER_QUEUE.claim();
+        long trackingId = trackingIds.incrementAndGet();
+        CompletableFuture<Order> future = new CompletableFuture<>();
+        inFlight.put(trackingId, future);
+        future.whenComplete((placed, error) -> inFlight.remove(trackingId));
+        try {
+            EXECUTOR.execute(() -> {
                 try {
-                    updateStock(order.getProducts());
-                } catch (SQLException e) {
-                    e.printStackTrace();
+                    place(order, paymentProcessor).whenComplete((placed, error) -> {
+                        if (error == null) {
+                            future.complete(placed);
+                        } else {
+                            future.completeExceptionally(error);
+                        }
+                    });
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
                 }
-            }).start();
-        } else {
-            throw new RuntimeException("Payment failed");
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(trackingId);
+            ORDER_QUEUE.release();
+            throw e;
         }
+        return future;
     }
 
-    private synchronized void updateStock(List<Product> products) throws SQLException {
-        for (Product product : products) {
-            Product dbProduct = productDAO.read(product.getId());
-            if (dbProduct != null && dbProduct.getStock() > 0) {
-                dbProduct.setStock(dbProduct.getStock() - 1);
-                productDAO.update(dbProduct);
+    public void placeOrder(Order order, PaymentProcessor paymentProcessor) throws SQLException {
+        try {
+            placeOrderAsync(order, paymentProcessor).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        }
+    }
+
+    // Runs with an ingest queue slot already claimed, and gives it back if the order is not submitted
+    private CompletableFuture<Order> place(Order order, PaymentProcessor paymentProcessor) throws SQLException {
+        Reservation reservation = null;
+        boolean paid = false;
+        CompletableFuture<Integer> stored;
+        try {
+            // Hold the stock for good before charging, so a paid order can always be fulfilled
+            reservation = inventory.reserve(quantities(order.getProducts()));
+            if (!inventory.pin(reservation)) {
+                throw new IllegalStateException("Reservation " + reservation.getId() + " expired before it was pinned");
             }
+            // Polymorphism: paymentProcessor.processPayment can be any implementation
+            if (!paymentProcessor.processPayment(order.getTotalAmount())) {
+                throw new RuntimeException("Payment failed");
+            }
+            paid = true;
+            // No lock needed: stock is already held by the reservation, and the single
+            // writer stores orders in the order they were submitted
+            stored = ORDER_QUEUE.submit(order);
+        } catch (SQLException | RuntimeException | Error e) {
+            ORDER_QUEUE.release();
+            if (reservation != null) {
+                inventory.release(reservation);
+            }
+            if (paid) {
+                paymentProcessor.refundPayment(order.getTotalAmount());
+            }
+            throw e;
+        }
+        Reservation held = reservation;
+        return stored.handle((id, error) -> {
+            if (error != null) {
+                inventory.release(held);
+                paymentProcessor.refundPayment(order.getTotalAmount());
+                throw error instanceof CompletionException ? (CompletionException) error : new CompletionException(error);
+            }
+            // Pinned, so nothing but this callback can end it
+            if (!inventory.commit(held)) {
+                throw new IllegalStateException("Reservation " + held.getId() + " ended before order " + id + " committed");
+            }
+            return order;
+        });
+    }
+
+    // Each product entry in an order is one unit
+    private static Map<Integer, Integer> quantities(List<Product> products) {
+        Map<Integer, Integer> quantities = new HashMap<>();
+        for (Product product : products) {
+            quantities.merge(product.getId(), 1, Integer::sum);
+        }
+        return quantities;
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /** Waits for every order placed so far to complete. Returns false on timeout. */
+    public boolean awaitInFlight(long timeout, TimeUnit unit) throws InterruptedException {
+        CompletableFuture<?>[] pending = inFlight.values().toArray(new CompletableFuture<?>[0]);
+        try {
+            CompletableFuture.allOf(pending).get(timeout, unit);
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            // Individual failures are reported through each order's own future
         }
+        return true;
+    }
+
+    public static Map<String, Object> getExecutorStats() {
+        return EXECUTOR.getStats();
+    }
+
+    public static Map<String, Object> getIngestStats() {
+        return ORDER_QUEUE.getStats();
     }
 
     public List<Order> getAllOrders() throws SQLException {
         return orderDAO.readAll();
     }
 
+    /** Visits every order without materializing the whole history. */
+    public void forEachOrder(Consumer<Order> consumer) throws SQLException {
+        orderDAO.forEach(consumer);
+    }
+
+    /** Lazily streams every order; close the stream to release its connection. */
+    public Stream<Order> streamAllOrders() throws SQLException {
+        return orderDAO.streamAll();
+    }
+
     public Order getOrder(int id) throws SQLException {
         return orderDAO.read(id);
     }
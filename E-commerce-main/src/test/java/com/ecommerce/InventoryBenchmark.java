@@ -0,0 +1,87 @@
+package com.ecommerce;
+
+import com.ecommerce.dao.ProductDAO;
+import com.ecommerce.inventory.InsufficientStockException;
+import com.ecommerce.inventory.InventoryEngine;
+import com.ecommerce.inventory.Reservation;
+import com.ecommerce.model.Product;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reserves and commits one unit at a time of a single hot SKU from many threads,
+ * then reconciles and checks products.stock against the committed count.
+ * Kept out of the packaged sources; run against the H2 stand-in with
+ * mvn -Ph2 test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.ecommerce.InventoryBenchmark
+ * Optional args: threads seconds
+ */
+public class InventoryBenchmark {
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int initialStock = 100_000_000;
+
+        ProductDAO productDAO = new ProductDAO();
+        productDAO.create(new Product(0, "Hot SKU", 9.99, "Benchmark", initialStock));
+        List<Product> products = productDAO.readAll();
+        int productId = products.get(products.size() - 1).getId();
+
+        InventoryEngine inventory = InventoryEngine.getInstance();
+        inventory.loadAll();
+
+        LongAdder committed = new LongAdder();
+        LongAdder released = new LongAdder();
+        LongAdder rejected = new LongAdder();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        CountDownLatch done = new CountDownLatch(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> {
+                try {
+                    long n = 0;
+                    while (System.nanoTime() < deadline) {
+                        try {
+                            Reservation reservation = inventory.reserve(Map.of(productId, 1));
+                            // Every tenth checkout is abandoned
+                            if (++n % 10 == 0) {
+                                inventory.release(reservation);
+                                released.increment();
+                            } else {
+                                inventory.commit(reservation);
+                                committed.increment();
+                            }
+                        } catch (InsufficientStockException e) {
+                            rejected.increment();
+                        }
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        while (!done.await(1, TimeUnit.SECONDS)) {
+            System.out.println(inventory.getStats());
+        }
+        executor.shutdown();
+        inventory.reconcile();
+
+        long reservations = committed.sum() + released.sum();
+        int dbStock = productDAO.read(productId).getStock();
+        System.out.printf("%d threads, %ds: %d reservations (%.0f/s), %d rejected%n",
+                threads, seconds, reservations, reservations / (double) seconds, rejected.sum());
+        System.out.printf("products.stock=%d, expected %d, in memory %d%n",
+                dbStock, initialStock - committed.sum(), inventory.getAvailable(productId));
+        System.out.println(inventory.getStats());
+        DatabaseConnection.shutdown();
+    }
+}
@@ -0,0 +1,70 @@
+package com.ecommerce;
+
+import com.ecommerce.dao.ProductDAO;
+import com.ecommerce.model.Order;
+import com.ecommerce.model.Product;
+import com.ecommerce.service.OrderService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Places orders for one or two random products through OrderService.placeOrderAsync
+ * as fast as admission allows and reports throughput and executor stats.
+ * Kept out of the packaged sources; run against the H2 stand-in with
+ * mvn -Ph2 test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.ecommerce.OrderBenchmark
+ * Optional args: orders
+ */
+public class OrderBenchmark {
+    public static void main(String[] args) throws Exception {
+        int orders = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+
+        ProductDAO productDAO = new ProductDAO();
+        for (Product product : productDAO.readAll()) {
+            product.setStock(1_000_000);
+            productDAO.update(product);
+        }
+        List<Product> products = productDAO.readAll();
+        OrderService orderService = new OrderService();
+        PaymentProcessor payment = new CreditCardPayment();
+
+        LongAdder placed = new LongAdder();
+        LongAdder failed = new LongAdder();
+        LongAdder rejected = new LongAdder();
+        List<CompletableFuture<Order>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < orders; i++) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Product a = products.get(random.nextInt(products.size()));
+            Product b = products.get(random.nextInt(products.size()));
+            Order order = new Order(0, 1, Arrays.asList(a, b), a.getPrice() + b.getPrice(), "pending");
+            try {
+                futures.add(orderService.placeOrderAsync(order, payment).whenComplete((o, e) -> {
+                    if (e == null) {
+                        placed.increment();
+                    } else {
+                        failed.increment();
+                    }
+                }));
+            } catch (RejectedExecutionException e) {
+                rejected.increment();
+                // Back off briefly, as a caller answering 503 would
+                Thread.sleep(1);
+            }
+        }
+        orderService.awaitInFlight(1, TimeUnit.MINUTES);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%d orders in %.2fs: %d placed (%.0f/s), %d failed, %d rejected%n",
+                orders, seconds, placed.sum(), placed.sum() / seconds, failed.sum(), rejected.sum());
+        System.out.println(OrderService.getExecutorStats());
+        System.out.println(OrderService.getIngestStats());
+        DatabaseConnection.shutdown();
+    }
+}
@@ -0,0 +1,58 @@
+package com.ecommerce;
+
+import com.ecommerce.dao.ProductDAO;
+
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hammers ProductDAO.read from many threads to measure pool throughput.
+ * Kept out of the packaged sources; run against the H2 stand-in with
+ * mvn -Ph2 test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.ecommerce.PoolBenchmark
+ * Optional args: threads seconds
+ */
+public class PoolBenchmark {
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        ProductDAO productDAO = new ProductDAO();
+        int productId = productDAO.readAll().get(0).getId();
+
+        LongAdder calls = new LongAdder();
+        LongAdder errors = new LongAdder();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        CountDownLatch done = new CountDownLatch(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> {
+                try {
+                    while (System.nanoTime() < deadline) {
+                        try {
+                            productDAO.read(productId);
+                            calls.increment();
+                        } catch (SQLException e) {
+                            errors.increment();
+                        }
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        while (!done.await(1, TimeUnit.SECONDS)) {
+            System.out.println(DatabaseConnection.poolStats());
+        }
+        executor.shutdown();
+
+        System.out.printf("%d threads, %ds: %d reads (%.0f/s), %d errors%n",
+                threads, seconds, calls.sum(), calls.sum() / (double) seconds, errors.sum());
+        DatabaseConnection.shutdown();
+    }
+}
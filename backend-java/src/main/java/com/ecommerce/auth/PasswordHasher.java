@@ -0,0 +1,202 @@
+package com.ecommerce.auth;
+
+import com.ecommerce.metrics.Histogram;
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs BCrypt on a small dedicated pool so login bursts queue here instead of
+ * occupying container threads. The queue is bounded; once it is full new work
+ * is rejected immediately with {@link RejectedExecutionException} and callers
+ * are expected to answer 503.
+ *
+ * The work factor is calibrated at startup so one hash takes roughly
+ * {@code auth.hashTargetMs} of CPU, and is nudged by one step whenever the
+ * observed average drifts more than 2x away from that target. Hashes are timed
+ * in thread CPU time, so a burst that leaves hashing threads waiting for a core
+ * does not read as slow hashing and drag the cost down. Stored hashes below the
+ * current cost are upgraded on the next successful login.
+ */
+public class PasswordHasher {
+    private static final int MIN_COST = Integer.getInteger("auth.bcryptMinCost", 10);
+    private static final int MAX_COST = Integer.getInteger("auth.bcryptMaxCost", 16);
+    private static final int ADJUST_EVERY = 32;
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private static final PasswordHasher INSTANCE = new PasswordHasher(
+            Integer.getInteger("auth.hashThreads", Math.max(1, Runtime.getRuntime().availableProcessors() / 2)),
+            Integer.getInteger("auth.hashQueue", 64),
+            Long.getLong("auth.hashTargetMs", 250L));
+
+    private final ThreadPoolExecutor executor;
+    private final long targetNanos;
+    private final boolean fixedCost;
+    private volatile int cost;
+    // Running average of hash time at the current cost, reset whenever the cost moves
+    private double averageNanos;
+    private int samples;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder rehashed = new LongAdder();
+    private final LongAdder costChanges = new LongAdder();
+    private final Histogram queueWaitMicros = new Histogram("us");
+    private final Histogram hashTimeMicros = new Histogram("us");
+
+    PasswordHasher(int threads, int queueSize, long targetMs) {
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), r -> {
+                    Thread t = new Thread(r, "bcrypt-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.targetNanos = TimeUnit.MILLISECONDS.toNanos(targetMs);
+        Integer fixed = Integer.getInteger("auth.bcryptCost");
+        this.fixedCost = fixed != null;
+        this.cost = fixedCost ? fixed : calibrate();
+    }
+
+    public static PasswordHasher getInstance() {
+        return INSTANCE;
+    }
+
+    public CompletableFuture<String> hash(String password) {
+        return submit(() -> timed(cost, () -> BCrypt.hashpw(password, BCrypt.gensalt(cost))));
+    }
+
+    public CompletableFuture<Boolean> verify(String password, String hash) {
+        return submit(() -> timed(costOf(hash), () -> BCrypt.checkpw(password, hash)));
+    }
+
+    /**
+     * Re-hashes a password whose stored hash is weaker than the current cost.
+     * Returns null when no upgrade is needed or the pool has no room for it;
+     * the upgrade is simply retried on a later login.
+     */
+    public CompletableFuture<String> upgrade(String password, String storedHash) {
+        if (costOf(storedHash) >= cost || executor.getQueue().remainingCapacity() == 0) {
+            return null;
+        }
+        try {
+            return hash(password).whenComplete((hash, error) -> {
+                if (error == null) {
+                    rehashed.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+    }
+
+    public int getCost() {
+        return cost;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("cost", cost);
+        stats.put("threads", executor.getMaximumPoolSize());
+        stats.put("active", executor.getActiveCount());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("submitted", submitted.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("rehashed", rehashed.sum());
+        stats.put("costChanges", costChanges.sum());
+        stats.put("queueWait", queueWaitMicros.snapshot());
+        stats.put("hashTime", hashTimeMicros.snapshot());
+        return stats;
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> work) {
+        long queuedAt = System.nanoTime();
+        try {
+            CompletableFuture<T> future = CompletableFuture.supplyAsync(() -> {
+                queueWaitMicros.record((System.nanoTime() - queuedAt) / 1_000);
+                return work.get();
+            }, executor);
+            submitted.increment();
+            return future;
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    private <T> T timed(int workFactor, Supplier<T> work) {
+        long start = System.nanoTime();
+        long cpuStart = threadCpuTime();
+        T result = work.get();
+        long cpu = threadCpuTime() - cpuStart;
+        hashTimeMicros.record((System.nanoTime() - start) / 1_000);
+        if (workFactor == cost) {
+            observe(workFactor, cpu);
+        }
+        return result;
+    }
+
+    private static long threadCpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    private synchronized void observe(int workFactor, long elapsedNanos) {
+        if (workFactor != cost || fixedCost) {
+            return;
+        }
+        samples++;
+        averageNanos += (elapsedNanos - averageNanos) / samples;
+        if (samples < ADJUST_EVERY) {
+            return;
+        }
+        int next = cost;
+        if (averageNanos > targetNanos * 2 && cost > MIN_COST) {
+            next = cost - 1;
+        } else if (averageNanos < targetNanos / 2 && cost < MAX_COST) {
+            next = cost + 1;
+        }
+        if (next != cost) {
+            cost = next;
+            costChanges.increment();
+        }
+        samples = 0;
+        averageNanos = 0;
+    }
+
+    /** Picks the cost whose hash time is closest to the target; each step doubles the work. */
+    private int calibrate() {
+        int probeCost = 8;
+        String salt = BCrypt.gensalt(probeCost);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = threadCpuTime();
+            BCrypt.hashpw("calibration", salt);
+            best = Math.min(best, threadCpuTime() - start);
+        }
+        int steps = (int) Math.round(Math.log((double) targetNanos / Math.max(1, best)) / Math.log(2));
+        return Math.max(MIN_COST, Math.min(MAX_COST, probeCost + steps));
+    }
+
+    static int costOf(String hash) {
+        // $2a$10$...
+        if (hash == null || hash.length() < 7 || hash.charAt(0) != '$') {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(hash.substring(4, 6));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.ecommerce.auth;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Issues and verifies stateless bearer tokens of the form
+ * {@code v1.<userId>.<expiresAtEpochSeconds>.<hmac>}. The HMAC-SHA256 signature
+ * covers everything before the last dot, so a valid token is proof of the user
+ * id without a database lookup.
+ *
+ * The key comes from the {@code auth.secret} system property. Without it a
+ * random key is generated at startup and tokens do not survive a restart.
+ */
+public class TokenService {
+    private static final String VERSION = "v1";
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final TokenService INSTANCE = new TokenService(secret(),
+            Long.getLong("auth.tokenTtlSeconds", 24 * 60 * 60L),
+            Integer.getInteger("auth.tokenCacheSize", 10_000));
+
+    private final SecretKeySpec key;
+    private final long ttlSeconds;
+    private final int cacheSize;
+    private final ThreadLocal<Mac> macs;
+    // Recently verified tokens -> Verified, so repeat requests skip the HMAC
+    private final Map<String, Verified> verified;
+
+    private final LongAdder issued = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder verifiedCount = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+
+    TokenService(byte[] secret, long ttlSeconds, int cacheSize) {
+        this.key = new SecretKeySpec(secret, ALGORITHM);
+        this.ttlSeconds = ttlSeconds;
+        this.cacheSize = cacheSize;
+        this.macs = ThreadLocal.withInitial(this::newMac);
+        this.verified = new LinkedHashMap<String, Verified>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Verified> eldest) {
+                return size() > TokenService.this.cacheSize;
+            }
+        };
+    }
+
+    public static TokenService getInstance() {
+        return INSTANCE;
+    }
+
+    public String issue(int userId) {
+        long expiresAt = System.currentTimeMillis() / 1000 + ttlSeconds;
+        String payload = VERSION + "." + userId + "." + expiresAt;
+        issued.increment();
+        return payload + "." + sign(payload);
+    }
+
+    /** Returns the user id carried by a valid, unexpired token, or -1. */
+    public int verify(String token) {
+        if (token == null) {
+            rejected.increment();
+            return -1;
+        }
+        long now = System.currentTimeMillis() / 1000;
+        Verified cached;
+        synchronized (verified) {
+            cached = verified.get(token);
+        }
+        if (cached != null) {
+            if (cached.expiresAt > now) {
+                cacheHits.increment();
+                return cached.userId;
+            }
+            synchronized (verified) {
+                verified.remove(token);
+            }
+            expired.increment();
+            return -1;
+        }
+
+        int sep = token.lastIndexOf('.');
+        String[] parts = sep < 0 ? new String[0] : token.substring(0, sep).split("\\.");
+        if (parts.length != 3 || !VERSION.equals(parts[0])) {
+            rejected.increment();
+            return -1;
+        }
+        byte[] expected = sign(token.substring(0, sep)).getBytes(StandardCharsets.US_ASCII);
+        byte[] actual = token.substring(sep + 1).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expected, actual)) {
+            rejected.increment();
+            return -1;
+        }
+        int userId;
+        long expiresAt;
+        try {
+            userId = Integer.parseInt(parts[1]);
+            expiresAt = Long.parseLong(parts[2]);
+        } catch (NumberFormatException e) {
+            rejected.increment();
+            return -1;
+        }
+        if (expiresAt <= now) {
+            expired.increment();
+            return -1;
+        }
+        verifiedCount.increment();
+        synchronized (verified) {
+            verified.put(token, new Verified(userId, expiresAt));
+        }
+        return userId;
+    }
+
+    public long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("issued", issued.sum());
+        stats.put("verified", verifiedCount.sum());
+        stats.put("cacheHits", cacheHits.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("expired", expired.sum());
+        synchronized (verified) {
+            stats.put("cachedTokens", verified.size());
+        }
+        return stats;
+    }
+
+    private String sign(String payload) {
+        byte[] mac = macs.get().doFinal(payload.getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(mac);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+
+    private static byte[] secret() {
+        String configured = System.getProperty("auth.secret");
+        if (configured != null && !configured.isEmpty()) {
+            return configured.getBytes(StandardCharsets.UTF_8);
+        }
+        byte[] random = new byte[32];
+        new SecureRandom().nextBytes(random);
+        return random;
+    }
+
+    private static class Verified {
+        final int userId;
+        final long expiresAt;
+
+        Verified(int userId, long expiresAt) {
+            this.userId = userId;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.ecommerce.bulk;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RFC 4180 CSV with a header row: comma separated, fields optionally quoted
+ * with doubled quotes as escapes, quoted fields may span lines. Reads through
+ * a fixed char buffer, so memory is bounded by the longest record, which is
+ * itself capped; an oversized record is reported and skipped.
+ */
+class CsvRecordSource implements RecordSource {
+    static final int MAX_RECORD_CHARS = Integer.getInteger("import.maxRecordChars", 1 << 20);
+
+    private final Reader in;
+    private final char[] buf = new char[8192];
+    private int pos;
+    private int limit;
+
+    private final Map<String, Integer> columns = new HashMap<>();
+    private final List<String> fields = new ArrayList<>();
+    private final StringBuilder field = new StringBuilder();
+    private int recordChars;
+    private long nextLine = 1;
+    private long line;
+    private String error;
+
+    CsvRecordSource(Reader in) throws IOException {
+        this.in = in;
+        // Spreadsheet exports often start with a UTF-8 byte order mark
+        if (peek() == '\uFEFF') {
+            read();
+        }
+        if (!readRecord()) {
+            throw new IllegalArgumentException("CSV input is empty; expected a header row");
+        }
+        if (error != null) {
+            throw new IllegalArgumentException("Unreadable CSV header: " + error);
+        }
+        for (int i = 0; i < fields.size(); i++) {
+            columns.put(fields.get(i).trim().toLowerCase(), i);
+        }
+    }
+
+    boolean hasColumn(String name) {
+        return columns.containsKey(name);
+    }
+
+    public boolean next() throws IOException {
+        while (readRecord()) {
+            if (error == null && fields.size() == 1 && fields.get(0).isEmpty()) {
+                continue; // blank line
+            }
+            if (error == null && fields.size() != columns.size()) {
+                error = "Expected " + columns.size() + " fields, found " + fields.size();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    public long line() {
+        return line;
+    }
+
+    public String error() {
+        return error;
+    }
+
+    public String get(String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(index);
+        return value.isEmpty() ? null : value;
+    }
+
+    private boolean readRecord() throws IOException {
+        fields.clear();
+        field.setLength(0);
+        recordChars = 0;
+        error = null;
+        line = nextLine;
+
+        int c = read();
+        if (c < 0) {
+            return false;
+        }
+        boolean inQuotes = false;
+        boolean fieldStart = true;
+        while (true) {
+            if (c < 0) {
+                if (inQuotes) {
+                    error = "Unterminated quoted field";
+                }
+                endField();
+                return true;
+            }
+            if (inQuotes) {
+                if (c == '"') {
+                    if (peek() == '"') {
+                        read();
+                        append('"');
+                    } else {
+                        inQuotes = false;
+                    }
+                } else {
+                    if (c == '\n') {
+                        nextLine++;
+                    }
+                    append((char) c);
+                }
+            } else if (c == '"' && fieldStart) {
+                inQuotes = true;
+                fieldStart = false;
+            } else if (c == ',') {
+                endField();
+                fieldStart = true;
+            } else if (c == '\n' || c == '\r') {
+                if (c == '\r' && peek() == '\n') {
+                    read();
+                }
+                nextLine++;
+                endField();
+                return true;
+            } else {
+                append((char) c);
+                fieldStart = false;
+            }
+            c = read();
+        }
+    }
+
+    private void append(char c) {
+        if (++recordChars > MAX_RECORD_CHARS) {
+            // Keep consuming to the end of the record, but stop buffering it
+            if (error == null) {
+                error = "Record longer than " + MAX_RECORD_CHARS + " characters";
+            }
+            return;
+        }
+        field.append(c);
+    }
+
+    private void endField() {
+        fields.add(field.toString());
+        field.setLength(0);
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buf[pos++];
+    }
+
+    private int peek() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buf[pos];
+    }
+
+    private boolean fill() throws IOException {
+        int n = in.read(buf, 0, buf.length);
+        if (n <= 0) {
+            return false;
+        }
+        pos = 0;
+        limit = n;
+        return true;
+    }
+}
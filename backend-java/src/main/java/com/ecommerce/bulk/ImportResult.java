@@ -0,0 +1,104 @@
+package com.ecommerce.bulk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Running totals of one import. Only the first few row errors are kept, so a
+ * file that is wrong on every line still reports in bounded memory.
+ */
+public class ImportResult {
+    private final transient int maxErrors;
+    private final transient long startedAt = System.currentTimeMillis();
+
+    private long rowsRead;
+    private long imported;
+    private long failed;
+    private long batches;
+    private long elapsedMs;
+    private long rowsPerSecond;
+    private boolean errorsTruncated;
+    private final List<RowError> errors = new ArrayList<>();
+
+    ImportResult(int maxErrors) {
+        this.maxErrors = maxErrors;
+    }
+
+    void rowRead() {
+        rowsRead++;
+    }
+
+    void batchCommitted(int rows) {
+        imported += rows;
+        batches++;
+    }
+
+    void rowImported() {
+        imported++;
+    }
+
+    void rowFailed(long line, String message) {
+        failed++;
+        if (errors.size() < maxErrors) {
+            errors.add(new RowError(line, message));
+        } else {
+            errorsTruncated = true;
+        }
+    }
+
+    void updateTiming() {
+        elapsedMs = System.currentTimeMillis() - startedAt;
+        rowsPerSecond = elapsedMs == 0 ? imported : imported * 1000 / elapsedMs;
+    }
+
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public long getBatches() {
+        return batches;
+    }
+
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    public long getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+
+    public boolean isErrorsTruncated() {
+        return errorsTruncated;
+    }
+
+    public List<RowError> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    public static class RowError {
+        private final long line;
+        private final String message;
+
+        RowError(long line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        public long getLine() {
+            return line;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+}
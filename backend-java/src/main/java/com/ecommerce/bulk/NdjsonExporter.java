@@ -0,0 +1,198 @@
+package com.ecommerce.bulk;
+
+import com.ecommerce.metrics.Histogram;
+import com.google.gson.stream.JsonWriter;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes full table dumps as NDJSON, one object per line, straight from a
+ * forward-only ResultSet into the output stream. Each row is serialized with
+ * a JsonWriter as it is read, so nothing is collected and memory stays flat
+ * however large the table is. H2 runs the query lazily for the duration of
+ * the export instead of materializing the result first.
+ *
+ * Output is flushed every {@code export.flushRows} rows so clients and any
+ * compression in between see steady progress.
+ */
+public class NdjsonExporter {
+    private static final int FETCH_SIZE = Integer.getInteger("export.fetchSize", 1000);
+    private static final int FLUSH_ROWS = Integer.getInteger("export.flushRows", 1000);
+
+    private static final String PRODUCTS_SQL = "SELECT id, name, description, price, image, brand, category, "
+            + "stock, rating, created_at FROM products WHERE id > ? ORDER BY id";
+    // Each order's items arrive together through the order_id index and are nested as they stream past.
+    // Ordering by o.id alone keeps the plan index-sorted; adding oi.id would force H2 to sort the whole join.
+    private static final String ORDERS_SQL = "SELECT o.id, o.user_id, o.total_amount, o.status, "
+            + "o.shipping_address, o.payment_method, o.created_at, "
+            + "oi.id AS item_id, oi.product_id, oi.quantity, oi.price "
+            + "FROM orders o LEFT JOIN order_items oi ON oi.order_id = o.id "
+            + "WHERE o.id > ? ORDER BY o.id";
+
+    private static final LongAdder exports = new LongAdder();
+    private static final LongAdder failures = new LongAdder();
+    private static final LongAdder rowsWritten = new LongAdder();
+    private static final Histogram exportMillis = new Histogram("ms");
+
+    private final DataSource dataSource;
+
+    public NdjsonExporter(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /** Streams products with id greater than afterId (0 for all); returns the number written. */
+    public long exportProducts(OutputStream out, int afterId) throws IOException, SQLException {
+        return export(out, PRODUCTS_SQL, afterId, (rs, output) -> {
+            JsonWriter json = output.json;
+            while (rs.next()) {
+                json.beginObject();
+                json.name("id").value(rs.getInt("id"));
+                json.name("name").value(rs.getString("name"));
+                json.name("description").value(rs.getString("description"));
+                json.name("price").value(rs.getBigDecimal("price"));
+                json.name("image").value(rs.getString("image"));
+                json.name("brand").value(rs.getString("brand"));
+                json.name("category").value(rs.getString("category"));
+                json.name("stock").value(rs.getInt("stock"));
+                json.name("rating").value(rs.getInt("rating"));
+                json.name("createdAt").value(timestamp(rs.getTimestamp("created_at")));
+                json.endObject();
+                output.endRow();
+            }
+        });
+    }
+
+    /** Streams orders with their items nested, for orders with id greater than afterId. */
+    public long exportOrders(OutputStream out, int afterId) throws IOException, SQLException {
+        return export(out, ORDERS_SQL, afterId, (rs, output) -> {
+            JsonWriter json = output.json;
+            int current = -1;
+            while (rs.next()) {
+                int orderId = rs.getInt("id");
+                if (orderId != current) {
+                    if (current != -1) {
+                        json.endArray().endObject();
+                        output.endRow();
+                    }
+                    current = orderId;
+                    json.beginObject();
+                    json.name("id").value(orderId);
+                    json.name("userId").value(rs.getInt("user_id"));
+                    json.name("totalAmount").value(rs.getBigDecimal("total_amount"));
+                    json.name("status").value(rs.getString("status"));
+                    json.name("shippingAddress").value(rs.getString("shipping_address"));
+                    json.name("paymentMethod").value(rs.getString("payment_method"));
+                    json.name("createdAt").value(timestamp(rs.getTimestamp("created_at")));
+                    json.name("items").beginArray();
+                }
+                int itemId = rs.getInt("item_id");
+                if (!rs.wasNull()) {
+                    json.beginObject();
+                    json.name("id").value(itemId);
+                    json.name("productId").value(rs.getInt("product_id"));
+                    json.name("quantity").value(rs.getInt("quantity"));
+                    json.name("price").value(rs.getBigDecimal("price"));
+                    json.endObject();
+                }
+            }
+            if (current != -1) {
+                json.endArray().endObject();
+                output.endRow();
+            }
+        });
+    }
+
+    private interface RowWriter {
+        void write(ResultSet rs, Output output) throws IOException, SQLException;
+    }
+
+    private static class Output {
+        private final Writer writer;
+        private final JsonWriter json;
+        private long rows;
+
+        Output(OutputStream out) {
+            writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 65536);
+            json = new JsonWriter(writer);
+            // Lenient mode allows a new top-level value on every line
+            json.setLenient(true);
+            json.setSerializeNulls(true);
+        }
+
+        void endRow() throws IOException {
+            writer.write('\n');
+            rows++;
+            rowsWritten.increment();
+            if (rows % FLUSH_ROWS == 0) {
+                writer.flush();
+            }
+        }
+    }
+
+    private long export(OutputStream out, String sql, int afterId, RowWriter rowWriter)
+            throws IOException, SQLException {
+        long start = System.currentTimeMillis();
+        exports.increment();
+        Output output = new Output(out);
+        try (Connection conn = dataSource.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            // An open transaction pins the MVStore version the lazy cursor reads, so background
+            // compaction cannot free chunks out from under a long export
+            conn.setAutoCommit(false);
+            setLazy(conn, true);
+            try (PreparedStatement stmt = conn.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                stmt.setFetchSize(FETCH_SIZE);
+                stmt.setInt(1, afterId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    rowWriter.write(rs, output);
+                    output.writer.flush();
+                    exportMillis.record(System.currentTimeMillis() - start);
+                    return output.rows;
+                }
+            } finally {
+                // Pooled connections are shared; don't leak the session setting
+                setLazy(conn, false);
+                conn.rollback();
+                conn.setAutoCommit(autoCommit);
+            }
+        } catch (IOException | SQLException | RuntimeException e) {
+            failures.increment();
+            throw e;
+        }
+    }
+
+    private static void setLazy(Connection conn, boolean lazy) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("SET LAZY_QUERY_EXECUTION " + lazy);
+        }
+    }
+
+    private static String timestamp(Timestamp ts) {
+        return ts == null ? null : ts.toInstant().toString();
+    }
+
+    public static Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("exports", exports.sum());
+        stats.put("failures", failures.sum());
+        stats.put("rowsWritten", rowsWritten.sum());
+        stats.put("duration", exportMillis.snapshot());
+        return stats;
+    }
+}
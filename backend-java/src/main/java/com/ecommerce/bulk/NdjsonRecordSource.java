@@ -0,0 +1,113 @@
+package com.ecommerce.bulk;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Newline-delimited JSON: one object per line, blank lines ignored. Lines are
+ * read through a fixed char buffer and capped at
+ * {@link CsvRecordSource#MAX_RECORD_CHARS}, so one runaway line cannot
+ * exhaust the heap.
+ */
+class NdjsonRecordSource implements RecordSource {
+    private final Reader in;
+    private final char[] buf = new char[8192];
+    private int pos;
+    private int limit;
+
+    private final StringBuilder text = new StringBuilder();
+    private long nextLine = 1;
+    private long line;
+    private JsonObject record;
+    private String error;
+
+    NdjsonRecordSource(Reader in) {
+        this.in = in;
+    }
+
+    public boolean next() throws IOException {
+        while (readLine()) {
+            record = null;
+            if (error != null) {
+                return true;
+            }
+            String json = text.toString().trim();
+            if (json.isEmpty()) {
+                continue;
+            }
+            try {
+                JsonElement element = JsonParser.parseString(json);
+                if (element.isJsonObject()) {
+                    record = element.getAsJsonObject();
+                } else {
+                    error = "Expected a JSON object";
+                }
+            } catch (JsonParseException e) {
+                error = "Malformed JSON: " + e.getMessage();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    public long line() {
+        return line;
+    }
+
+    public String error() {
+        return error;
+    }
+
+    public String get(String field) {
+        JsonElement value = record == null ? null : record.get(field);
+        if (value == null || value.isJsonNull()) {
+            return null;
+        }
+        String s = value.isJsonPrimitive() ? value.getAsString() : value.toString();
+        return s.isEmpty() ? null : s;
+    }
+
+    private boolean readLine() throws IOException {
+        text.setLength(0);
+        error = null;
+        line = nextLine;
+        if (pos == limit && !fill()) {
+            return false;
+        }
+        while (pos < limit || fill()) {
+            int start = pos;
+            while (pos < limit && buf[pos] != '\n') {
+                pos++;
+            }
+            if (text.length() + (pos - start) > CsvRecordSource.MAX_RECORD_CHARS) {
+                if (error == null) {
+                    error = "Line longer than " + CsvRecordSource.MAX_RECORD_CHARS + " characters";
+                }
+                text.setLength(0);
+            } else if (error == null) {
+                text.append(buf, start, pos - start);
+            }
+            if (pos < limit) {
+                pos++; // the newline
+                nextLine++;
+                return true;
+            }
+        }
+        return true;
+    }
+
+    private boolean fill() throws IOException {
+        int n = in.read(buf, 0, buf.length);
+        if (n <= 0) {
+            return false;
+        }
+        pos = 0;
+        limit = n;
+        return true;
+    }
+}
@@ -0,0 +1,253 @@
+package com.ecommerce.bulk;
+
+import com.ecommerce.dao.ProductCatalog;
+import com.ecommerce.model.Product;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Streams products from CSV or NDJSON into the products table. Rows are
+ * parsed one at a time and written as JDBC batches, each committed in its own
+ * transaction, so memory stays bounded by the batch size however large the
+ * input is. Invalid rows are skipped and reported by line; if a batch is
+ * rejected by the database it is replayed row by row to isolate the culprits.
+ * Batches committed before a failure (e.g. a dropped upload) stay committed.
+ *
+ * Recognized fields: name and price (required), description, image, brand,
+ * category, stock (default 10), rating (default 5). Other fields, including
+ * id, are ignored; imported products always get fresh ids.
+ */
+public class ProductImporter {
+    public static final int DEFAULT_BATCH_SIZE = Integer.getInteger("import.batchSize", 1000);
+    public static final int MAX_BATCH_SIZE = 10_000;
+    private static final int MAX_ERRORS = Integer.getInteger("import.maxErrors", 100);
+    private static final long PROGRESS_INTERVAL_MS = Long.getLong("import.progressIntervalMs", 1000L);
+
+    private static final String INSERT_SQL = "INSERT INTO products "
+            + "(name, description, price, image, brand, category, stock, rating) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final int MAX_TEXT = 255;
+    private static final double MAX_PRICE = 99_999_999.99; // DECIMAL(10, 2)
+
+    // Concurrent imports would only contend for the same table locks
+    private static final Semaphore RUNNING = new Semaphore(1);
+
+    private static final LongAdder imports = new LongAdder();
+    private static final LongAdder rowsImported = new LongAdder();
+    private static final LongAdder rowsFailed = new LongAdder();
+    private static volatile long lastRowsPerSecond;
+
+    /** Called on the importing thread after batches commit, at most once per progress interval. */
+    public interface ProgressListener {
+        void onProgress(ImportResult progress) throws IOException;
+    }
+
+    private final DataSource dataSource;
+    private final int batchSize;
+
+    public ProductImporter(DataSource dataSource, int batchSize) {
+        if (batchSize < 1 || batchSize > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("batchSize must be between 1 and " + MAX_BATCH_SIZE);
+        }
+        this.dataSource = dataSource;
+        this.batchSize = batchSize;
+    }
+
+    public ImportResult importCsv(Reader in, ProgressListener listener) throws IOException, SQLException {
+        CsvRecordSource source = new CsvRecordSource(in);
+        if (!source.hasColumn("name") || !source.hasColumn("price")) {
+            throw new IllegalArgumentException("CSV header must include name and price columns");
+        }
+        return run(source, listener);
+    }
+
+    public ImportResult importNdjson(Reader in, ProgressListener listener) throws IOException, SQLException {
+        return run(new NdjsonRecordSource(in), listener);
+    }
+
+    private ImportResult run(RecordSource source, ProgressListener listener) throws IOException, SQLException {
+        if (!RUNNING.tryAcquire()) {
+            throw new IllegalStateException("Another import is already running");
+        }
+        ImportResult result = new ImportResult(MAX_ERRORS);
+        imports.increment();
+        try (Connection conn = dataSource.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(INSERT_SQL)) {
+                List<Product> batch = new ArrayList<>(batchSize);
+                long[] lines = new long[batchSize];
+                long lastProgress = System.currentTimeMillis();
+                while (source.next()) {
+                    result.rowRead();
+                    String error = source.error();
+                    Product product = null;
+                    if (error == null) {
+                        try {
+                            product = toProduct(source);
+                        } catch (IllegalArgumentException e) {
+                            error = e.getMessage();
+                        }
+                    }
+                    if (error != null) {
+                        result.rowFailed(source.line(), error);
+                        rowsFailed.increment();
+                        continue;
+                    }
+                    lines[batch.size()] = source.line();
+                    batch.add(product);
+                    if (batch.size() == batchSize) {
+                        flush(conn, stmt, batch, lines, result);
+                        long now = System.currentTimeMillis();
+                        if (listener != null && now - lastProgress >= PROGRESS_INTERVAL_MS) {
+                            lastProgress = now;
+                            result.updateTiming();
+                            listener.onProgress(result);
+                        }
+                    }
+                }
+                flush(conn, stmt, batch, lines, result);
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        } finally {
+            RUNNING.release();
+            result.updateTiming();
+            lastRowsPerSecond = result.getRowsPerSecond();
+            if (result.getImported() > 0) {
+                ProductCatalog.getInstance().invalidate();
+            }
+        }
+        return result;
+    }
+
+    private void flush(Connection conn, PreparedStatement stmt, List<Product> batch, long[] lines,
+            ImportResult result) throws SQLException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            for (Product product : batch) {
+                bind(stmt, product);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+            conn.commit();
+            result.batchCommitted(batch.size());
+            rowsImported.add(batch.size());
+        } catch (SQLException e) {
+            conn.rollback();
+            stmt.clearBatch();
+            for (int i = 0; i < batch.size(); i++) {
+                try {
+                    bind(stmt, batch.get(i));
+                    stmt.executeUpdate();
+                    conn.commit();
+                    result.rowImported();
+                    rowsImported.increment();
+                } catch (SQLException rowError) {
+                    conn.rollback();
+                    result.rowFailed(lines[i], rowError.getMessage());
+                    rowsFailed.increment();
+                }
+            }
+        }
+        batch.clear();
+    }
+
+    private static void bind(PreparedStatement stmt, Product p) throws SQLException {
+        stmt.setString(1, p.getName());
+        stmt.setString(2, p.getDescription());
+        stmt.setDouble(3, p.getPrice());
+        stmt.setString(4, p.getImage());
+        stmt.setString(5, p.getBrand());
+        stmt.setString(6, p.getCategory());
+        stmt.setInt(7, p.getStock());
+        stmt.setInt(8, p.getRating());
+    }
+
+    private static Product toProduct(RecordSource source) {
+        Product p = new Product();
+        String name = text(source, "name");
+        if (name == null) {
+            throw new IllegalArgumentException("name is required");
+        }
+        p.setName(name);
+        p.setDescription(source.get("description"));
+        p.setImage(text(source, "image"));
+        p.setBrand(text(source, "brand"));
+        p.setCategory(text(source, "category"));
+
+        String price = source.get("price");
+        if (price == null) {
+            throw new IllegalArgumentException("price is required");
+        }
+        p.setPrice(number(price, "price", 0, MAX_PRICE));
+        p.setStock((int) integer(source.get("stock"), "stock", 10, 0, Integer.MAX_VALUE));
+        p.setRating((int) integer(source.get("rating"), "rating", 5, 0, 5));
+        return p;
+    }
+
+    private static String text(RecordSource source, String field) {
+        String value = source.get(field);
+        if (value == null) {
+            return null;
+        }
+        value = value.trim();
+        if (value.length() > MAX_TEXT) {
+            throw new IllegalArgumentException(field + " is longer than " + MAX_TEXT + " characters");
+        }
+        return value.isEmpty() ? null : value;
+    }
+
+    private static double number(String value, String field, double min, double max) {
+        double d;
+        try {
+            d = Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(field + " is not a number: " + value);
+        }
+        if (!(d >= min && d <= max)) {
+            throw new IllegalArgumentException(field + " must be between "
+                    + BigDecimal.valueOf(min).toPlainString() + " and " + BigDecimal.valueOf(max).toPlainString());
+        }
+        return d;
+    }
+
+    private static long integer(String value, String field, long defaultValue, long min, long max) {
+        if (value == null) {
+            return defaultValue;
+        }
+        long n;
+        try {
+            n = Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(field + " is not an integer: " + value);
+        }
+        if (n < min || n > max) {
+            throw new IllegalArgumentException(field + " must be between " + min + " and " + max);
+        }
+        return n;
+    }
+
+    public static Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("imports", imports.sum());
+        stats.put("running", RUNNING.availablePermits() == 0);
+        stats.put("rowsImported", rowsImported.sum());
+        stats.put("rowsFailed", rowsFailed.sum());
+        stats.put("lastRowsPerSecond", lastRowsPerSecond);
+        return stats;
+    }
+}
@@ -0,0 +1,18 @@
+package com.ecommerce.bulk;
+
+import java.io.IOException;
+
+/** Forward-only cursor over the records of an import stream; holds one record at a time. */
+interface RecordSource {
+    /** Advances to the next record; false at end of input. */
+    boolean next() throws IOException;
+
+    /** Line in the input where the current record starts, for error reports. */
+    long line();
+
+    /** Why the current record could not be read, or null if it was read cleanly. */
+    String error();
+
+    /** The named field of the current record, or null if absent or empty. */
+    String get(String field);
+}
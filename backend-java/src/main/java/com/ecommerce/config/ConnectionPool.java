@@ -0,0 +1,275 @@
+package com.ecommerce.config;
+
+import com.ecommerce.metrics.Histogram;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Bounded JDBC connection pool. A fair semaphore caps the number of borrowed
+ * connections at {@link PoolConfig#getMaxSize()}; idle connections are reused
+ * most-recently-used first so the least used ones age out and get evicted by the
+ * housekeeping thread.
+ */
+public class ConnectionPool implements DataSource {
+    private static final long HOUSEKEEPING_INTERVAL_MS = 5_000L;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final PoolConfig config;
+
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger total = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    private final Histogram waitTimeMicros = new Histogram("us");
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder destroyed = new LongAdder();
+    private final LongAdder leaks = new LongAdder();
+    private final LongAdder statementHits = new LongAdder();
+    private final LongAdder statementMisses = new LongAdder();
+
+    public ConnectionPool(String url, String user, String password, PoolConfig config) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.config = config;
+        this.permits = new Semaphore(config.getMaxSize(), true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep,
+                HOUSEKEEPING_INTERVAL_MS, HOUSEKEEPING_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(config.getBorrowTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                timeouts.increment();
+                throw new SQLTransientConnectionException("Timed out after " + config.getBorrowTimeoutMs()
+                        + "ms waiting for a connection (active=" + borrowed.size()
+                        + ", max=" + config.getMaxSize() + ", waiters=" + permits.getQueueLength() + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+
+        try {
+            PooledConnection pooled = takeIdle();
+            if (pooled == null) {
+                pooled = create();
+            }
+            borrowed.add(pooled);
+            borrows.increment();
+            waitTimeMicros.record((System.nanoTime() - start) / 1_000);
+            return pooled.borrow(config.getLeakDetectionThresholdMs() > 0);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pool is configured with fixed credentials");
+    }
+
+    private PooledConnection takeIdle() {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            long idleFor = System.currentTimeMillis() - pooled.getLastUsedAt();
+            if (idleFor < config.getValidationIntervalMs() || pooled.isValid(1)) {
+                return pooled;
+            }
+            destroy(pooled);
+        }
+        return null;
+    }
+
+    private PooledConnection create() throws SQLException {
+        PooledConnection pooled = open();
+        total.incrementAndGet();
+        return pooled;
+    }
+
+    // Opens a connection without counting it in total
+    private PooledConnection open() throws SQLException {
+        Connection raw = DriverManager.getConnection(url, user, password);
+        created.increment();
+        return new PooledConnection(this, raw, config.getStatementCacheSize());
+    }
+
+    private void destroy(PooledConnection pooled) {
+        total.decrementAndGet();
+        destroyed.increment();
+        pooled.closePhysically();
+    }
+
+    void release(PooledConnection pooled) {
+        borrowed.remove(pooled);
+        try {
+            if (!closed && pooled.reset()) {
+                idle.offerFirst(pooled);
+            } else {
+                destroy(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    void recordStatementHit() {
+        statementHits.increment();
+    }
+
+    void recordStatementMiss() {
+        statementMisses.increment();
+    }
+
+    private void housekeep() {
+        try {
+            evictIdle();
+            detectLeaks();
+            fillMinIdle();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - config.getIdleTimeoutMs();
+        Iterator<PooledConnection> it = idle.descendingIterator();
+        while (it.hasNext() && idle.size() > config.getMinIdle()) {
+            PooledConnection pooled = it.next();
+            if (pooled.getLastUsedAt() < cutoff && idle.removeLastOccurrence(pooled)) {
+                destroy(pooled);
+            }
+        }
+    }
+
+    private void detectLeaks() {
+        long threshold = config.getLeakDetectionThresholdMs();
+        if (threshold <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (PooledConnection pooled : borrowed) {
+            if (!pooled.isLeakReported() && now - pooled.getBorrowedAt() > threshold) {
+                pooled.setLeakReported(true);
+                leaks.increment();
+                System.err.println("Possible connection leak: connection held for "
+                        + (now - pooled.getBorrowedAt()) + "ms");
+                if (pooled.getBorrowTrace() != null) {
+                    pooled.getBorrowTrace().printStackTrace();
+                }
+            }
+        }
+    }
+
+    // Idle connections hold no permit, so the fill is bounded by total against maxSize instead
+    private void fillMinIdle() {
+        while (!closed && idle.size() < config.getMinIdle()) {
+            int current = total.get();
+            if (current >= config.getMaxSize()) {
+                return;
+            }
+            if (!total.compareAndSet(current, current + 1)) {
+                continue;
+            }
+            try {
+                idle.offerLast(open());
+            } catch (SQLException e) {
+                total.decrementAndGet();
+                e.printStackTrace();
+                return;
+            }
+        }
+    }
+
+    public PoolStats getStats() {
+        return new PoolStats(borrowed.size(), idle.size(), total.get(), config.getMaxSize(),
+                permits.getQueueLength(), borrows.sum(), timeouts.sum(), created.sum(), destroyed.sum(),
+                leaks.sum(), statementHits.sum(), statementMisses.sum(), waitTimeMicros.snapshot());
+    }
+
+    public PoolConfig getConfig() {
+        return config;
+    }
+
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return DriverManager.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        DriverManager.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        DriverManager.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return DriverManager.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+}
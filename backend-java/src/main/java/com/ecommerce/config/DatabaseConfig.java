@@ -1,76 +1,133 @@
 package com.ecommerce.config;
 
+import com.ecommerce.dao.QueryPlanCheck;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.io.InputStream;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.util.stream.Collectors;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public class DatabaseConfig {
-    private static final String URL = "jdbc:h2:mem:ecommerce;DB_CLOSE_DELAY=-1";
     private static final String USER = "sa";
     private static final String PASSWORD = "";
 
+    // Append new scripts here; applied scripts must never be edited
+    private static final List<String> MIGRATIONS = Arrays.asList(
+            "V1__baseline_schema.sql",
+            "V2__seed_products.sql",
+            "V3__secondary_indexes.sql");
+
+    private static final StoreConfig STORE = StoreConfig.fromSystemProperties();
+    private static final MigrationRunner MIGRATION_RUNNER = new MigrationRunner("/db/migration", MIGRATIONS);
+    private static final SnapshotScheduler SNAPSHOTS = new SnapshotScheduler(STORE);
+    private static final Map<String, Object> STARTUP = new LinkedHashMap<>();
+    private static final ConnectionPool POOL;
+
     static {
         try {
             Class.forName("org.h2.Driver");
-            initDatabase();
         } catch (ClassNotFoundException e) {
             e.printStackTrace();
         }
+        POOL = new ConnectionPool(STORE.getJdbcUrl(), USER, PASSWORD, PoolConfig.fromSystemProperties());
+        initDatabase();
     }
 
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(URL, USER, PASSWORD);
+        return POOL.getConnection();
     }
 
-    private static void initDatabase() {
-        try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement()) {
-            
-            // Execute schema.sql
-            executeScript(stmt, "/schema.sql");
-            
-            // Check if products exist, if not execute data.sql
-            if (!hasProducts(conn)) {
-                executeScript(stmt, "/data.sql");
-            }
-            
-        } catch (Exception e) {
-            e.printStackTrace();
+    public static DataSource getDataSource() {
+        return POOL;
+    }
+
+    public static PoolStats getPoolStats() {
+        return POOL.getStats();
+    }
+
+    public static Map<String, Object> getMigrationStats() {
+        return MIGRATION_RUNNER.getStats();
+    }
+
+    public static Map<String, Object> getStoreStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", STORE.getMode().name().toLowerCase());
+        if (STORE.isPersistent()) {
+            stats.put("path", STORE.getStoreFile().getPath());
+            stats.put("sizeBytes", STORE.getStoreFile().length());
+            stats.put("cacheSizeKb", STORE.getCacheSizeKb());
+            stats.put("snapshots", SNAPSHOTS.getStats());
+        }
+        synchronized (STARTUP) {
+            stats.put("startup", new LinkedHashMap<>(STARTUP));
         }
+        return stats;
     }
-    
-    private static boolean hasProducts(Connection conn) {
-        try (Statement stmt = conn.createStatement()) {
-            return stmt.executeQuery("SELECT COUNT(*) FROM products").next();
+
+    /** Takes a snapshot of a file-backed store immediately; returns the snapshot file. */
+    public static File snapshot() throws SQLException, IOException {
+        if (!STORE.isPersistent()) {
+            throw new IllegalStateException("Snapshots need db.mode=file or db.mode=mapped");
+        }
+        return SNAPSHOTS.snapshot(POOL);
+    }
+
+    /**
+     * Closes a file-backed store cleanly so H2 can spend up to
+     * db.maxCompactTimeMs compacting it; the next start then opens a smaller file.
+     */
+    public static void shutdown() {
+        SNAPSHOTS.stop();
+        POOL.close();
+        if (!STORE.isPersistent()) {
+            return;
+        }
+        try (Connection conn = DriverManager.getConnection(STORE.getJdbcUrl(), USER, PASSWORD);
+                Statement stmt = conn.createStatement()) {
+            stmt.execute("SHUTDOWN");
         } catch (SQLException e) {
-            return false;
+            e.printStackTrace();
         }
     }
 
-    private static void executeScript(Statement stmt, String resourcePath) {
-        try (InputStream is = DatabaseConfig.class.getResourceAsStream(resourcePath)) {
-            if (is == null) {
-                System.out.println("Script not found: " + resourcePath);
-                return;
-            }
-            String sql = new BufferedReader(new InputStreamReader(is))
-                .lines().collect(Collectors.joining("\n"));
-            
-            // Split by semicolon for multiple statements
-            String[] statements = sql.split(";");
-            for (String statement : statements) {
-                if (!statement.trim().isEmpty()) {
-                    stmt.execute(statement);
+    // Any failure here is fatal: serving requests against a half-migrated schema is worse than not starting
+    private static void initDatabase() {
+        long start = System.nanoTime();
+        try {
+            boolean restored = STORE.isPersistent() && SNAPSHOTS.restoreIfMissing();
+            long restoredAt = System.nanoTime();
+            boolean existing = STORE.isPersistent() && STORE.getStoreFile().exists();
+            try (Connection conn = getConnection()) {
+                long openedAt = System.nanoTime();
+                MIGRATION_RUNNER.migrate(conn);
+                long migratedAt = System.nanoTime();
+                if (!"false".equals(System.getProperty("db.planCheck"))) {
+                    QueryPlanCheck.verify(conn);
+                }
+                long checkedAt = System.nanoTime();
+                synchronized (STARTUP) {
+                    STARTUP.put("existingStore", existing);
+                    STARTUP.put("restoredFromSnapshot", restored);
+                    STARTUP.put("restoreMs", (restoredAt - start) / 1_000_000.0);
+                    STARTUP.put("openMs", (openedAt - restoredAt) / 1_000_000.0);
+                    STARTUP.put("migrateMs", (migratedAt - openedAt) / 1_000_000.0);
+                    STARTUP.put("planCheckMs", (checkedAt - migratedAt) / 1_000_000.0);
+                    STARTUP.put("totalMs", (checkedAt - start) / 1_000_000.0);
                 }
             }
-            System.out.println("Executed script: " + resourcePath);
-        } catch (Exception e) {
-            e.printStackTrace();
+        } catch (SQLException | IOException e) {
+            throw new IllegalStateException("Database initialization failed: " + e.getMessage(), e);
+        }
+        if (STORE.isPersistent()) {
+            SNAPSHOTS.start(POOL);
         }
+        System.out.println("Database ready (" + STORE.getMode().name().toLowerCase() + "): " + STARTUP);
     }
 }
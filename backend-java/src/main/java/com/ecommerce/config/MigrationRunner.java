@@ -0,0 +1,226 @@
+package com.ecommerce.config;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+/**
+ * Applies versioned SQL scripts (V&lt;n&gt;__&lt;description&gt;.sql) exactly once, in
+ * version order, and records each one in schema_history together with a CRC32
+ * of its text. Startup fails if an applied script has since been edited or the
+ * database has seen a version this build does not know about, so environments
+ * cannot silently drift apart.
+ *
+ * Each script runs in one transaction with its history row, but DDL commits
+ * implicitly in most engines; a script that fails halfway may need manual
+ * cleanup before it can be retried.
+ */
+public class MigrationRunner {
+    private static final Pattern SCRIPT_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+
+    private static final String HISTORY_DDL = "CREATE TABLE IF NOT EXISTS schema_history ("
+            + "version INT PRIMARY KEY, "
+            + "description VARCHAR(200) NOT NULL, "
+            + "script VARCHAR(255) NOT NULL, "
+            + "checksum INT NOT NULL, "
+            + "execution_ms BIGINT NOT NULL, "
+            + "installed_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)";
+
+    private final String location;
+    private final List<String> scripts;
+
+    private int applied;
+    private int upToDate;
+    private long elapsedMs;
+    private int currentVersion;
+
+    public MigrationRunner(String location, List<String> scripts) {
+        this.location = location.endsWith("/") ? location : location + "/";
+        this.scripts = scripts;
+    }
+
+    public synchronized void migrate(Connection conn) throws SQLException {
+        long start = System.currentTimeMillis();
+        Map<Integer, String> pending = resolve();
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(HISTORY_DDL);
+        }
+        Map<Integer, Integer> checksums = new TreeMap<>();
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT version, checksum FROM schema_history ORDER BY version")) {
+            while (rs.next()) {
+                checksums.put(rs.getInt(1), rs.getInt(2));
+            }
+        }
+
+        for (Map.Entry<Integer, Integer> entry : checksums.entrySet()) {
+            String script = pending.get(entry.getKey());
+            if (script == null) {
+                throw new SQLException("Database is at migration V" + entry.getKey()
+                        + ", which this build does not contain");
+            }
+            int checksum = checksum(read(script));
+            if (checksum != entry.getValue()) {
+                throw new SQLException("Migration " + script + " was modified after it was applied (checksum "
+                        + entry.getValue() + " in schema_history, " + checksum + " on the classpath)");
+            }
+            pending.remove(entry.getKey());
+            upToDate++;
+            currentVersion = entry.getKey();
+        }
+
+        for (Map.Entry<Integer, String> entry : pending.entrySet()) {
+            apply(conn, entry.getKey(), entry.getValue());
+            applied++;
+            currentVersion = entry.getKey();
+        }
+        elapsedMs = System.currentTimeMillis() - start;
+        System.out.println("Schema at V" + currentVersion + " (" + applied + " migrations applied, "
+                + upToDate + " already up to date, " + elapsedMs + " ms)");
+    }
+
+    private Map<Integer, String> resolve() throws SQLException {
+        Map<Integer, String> byVersion = new TreeMap<>();
+        for (String script : scripts) {
+            Matcher m = SCRIPT_NAME.matcher(script);
+            if (!m.matches()) {
+                throw new SQLException("Migration script name must look like V1__description.sql: " + script);
+            }
+            String previous = byVersion.put(Integer.parseInt(m.group(1)), script);
+            if (previous != null) {
+                throw new SQLException("Migrations " + previous + " and " + script + " share a version");
+            }
+        }
+        return byVersion;
+    }
+
+    private void apply(Connection conn, int version, String script) throws SQLException {
+        String sql = read(script);
+        long start = System.currentTimeMillis();
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            try (Statement stmt = conn.createStatement()) {
+                for (String statement : split(sql)) {
+                    stmt.execute(statement);
+                }
+            }
+            try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO schema_history "
+                    + "(version, description, script, checksum, execution_ms) VALUES (?, ?, ?, ?, ?)")) {
+                stmt.setInt(1, version);
+                stmt.setString(2, describe(script));
+                stmt.setString(3, script);
+                stmt.setInt(4, checksum(sql));
+                stmt.setLong(5, System.currentTimeMillis() - start);
+                stmt.executeUpdate();
+            }
+            conn.commit();
+            System.out.println("Applied migration " + script);
+        } catch (SQLException e) {
+            conn.rollback();
+            throw new SQLException("Migration " + script + " failed: " + e.getMessage(), e);
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private String read(String script) throws SQLException {
+        try (InputStream is = MigrationRunner.class.getResourceAsStream(location + script)) {
+            if (is == null) {
+                throw new SQLException("Migration script not found: " + location + script);
+            }
+            return new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))
+                    .lines().collect(Collectors.joining("\n"));
+        } catch (IOException e) {
+            throw new SQLException("Could not read migration " + script, e);
+        }
+    }
+
+    private static String describe(String script) {
+        Matcher m = SCRIPT_NAME.matcher(script);
+        return m.matches() ? m.group(2).replace('_', ' ') : script;
+    }
+
+    // Line endings are normalized by read(), so a checkout with CRLF files gets the same checksum
+    static int checksum(String sql) {
+        CRC32 crc = new CRC32();
+        crc.update(sql.getBytes(StandardCharsets.UTF_8));
+        return (int) crc.getValue();
+    }
+
+    /** Splits on semicolons outside string literals, quoted identifiers and comments. */
+    static List<String> split(String sql) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int i = 0;
+        int n = sql.length();
+        while (i < n) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"') {
+                int end = i + 1;
+                while (end < n) {
+                    if (sql.charAt(end) == c) {
+                        // A doubled quote is an escaped quote inside the literal
+                        if (end + 1 < n && sql.charAt(end + 1) == c) {
+                            end += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    end++;
+                }
+                end = Math.min(end + 1, n);
+                current.append(sql, i, end);
+                i = end;
+            } else if (c == '-' && i + 1 < n && sql.charAt(i + 1) == '-') {
+                int end = sql.indexOf('\n', i);
+                i = end < 0 ? n : end;
+            } else if (c == '/' && i + 1 < n && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? n : end + 2;
+            } else if (c == ';') {
+                addStatement(statements, current);
+                i++;
+            } else {
+                current.append(c);
+                i++;
+            }
+        }
+        addStatement(statements, current);
+        return statements;
+    }
+
+    private static void addStatement(List<String> statements, StringBuilder current) {
+        String statement = current.toString().trim();
+        if (!statement.isEmpty()) {
+            statements.add(statement);
+        }
+        current.setLength(0);
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("version", currentVersion);
+        stats.put("applied", applied);
+        stats.put("upToDate", upToDate);
+        stats.put("elapsedMs", elapsedMs);
+        return stats;
+    }
+}
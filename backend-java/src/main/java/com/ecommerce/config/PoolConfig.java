@@ -0,0 +1,92 @@
+package com.ecommerce.config;
+
+/**
+ * Connection pool settings. Defaults can be overridden with system properties,
+ * e.g. {@code -Ddb.pool.maxSize=32}.
+ */
+public class PoolConfig {
+    private int maxSize = 16;
+    private int minIdle = 2;
+    private long idleTimeoutMs = 5 * 60 * 1000L;
+    private long borrowTimeoutMs = 5_000L;
+    private long leakDetectionThresholdMs = 30_000L;
+    private long validationIntervalMs = 30_000L;
+    private int statementCacheSize = 64;
+
+    public static PoolConfig fromSystemProperties() {
+        PoolConfig config = new PoolConfig();
+        config.setMaxSize(Integer.getInteger("db.pool.maxSize", config.getMaxSize()));
+        config.setMinIdle(Integer.getInteger("db.pool.minIdle", config.getMinIdle()));
+        config.setIdleTimeoutMs(Long.getLong("db.pool.idleTimeoutMs", config.getIdleTimeoutMs()));
+        config.setBorrowTimeoutMs(Long.getLong("db.pool.borrowTimeoutMs", config.getBorrowTimeoutMs()));
+        config.setLeakDetectionThresholdMs(
+                Long.getLong("db.pool.leakDetectionThresholdMs", config.getLeakDetectionThresholdMs()));
+        config.setValidationIntervalMs(
+                Long.getLong("db.pool.validationIntervalMs", config.getValidationIntervalMs()));
+        config.setStatementCacheSize(
+                Integer.getInteger("db.pool.statementCacheSize", config.getStatementCacheSize()));
+        return config;
+    }
+
+    // Getters and Setters
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1");
+        }
+        this.maxSize = maxSize;
+    }
+
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    public void setMinIdle(int minIdle) {
+        this.minIdle = Math.max(0, minIdle);
+    }
+
+    public long getIdleTimeoutMs() {
+        return idleTimeoutMs;
+    }
+
+    public void setIdleTimeoutMs(long idleTimeoutMs) {
+        this.idleTimeoutMs = idleTimeoutMs;
+    }
+
+    public long getBorrowTimeoutMs() {
+        return borrowTimeoutMs;
+    }
+
+    public void setBorrowTimeoutMs(long borrowTimeoutMs) {
+        this.borrowTimeoutMs = borrowTimeoutMs;
+    }
+
+    public long getLeakDetectionThresholdMs() {
+        return leakDetectionThresholdMs;
+    }
+
+    /** Zero disables leak detection. */
+    public void setLeakDetectionThresholdMs(long leakDetectionThresholdMs) {
+        this.leakDetectionThresholdMs = leakDetectionThresholdMs;
+    }
+
+    public long getValidationIntervalMs() {
+        return validationIntervalMs;
+    }
+
+    public void setValidationIntervalMs(long validationIntervalMs) {
+        this.validationIntervalMs = validationIntervalMs;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    /** Zero disables prepared statement caching. */
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = Math.max(0, statementCacheSize);
+    }
+}
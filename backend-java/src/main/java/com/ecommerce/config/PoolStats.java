@@ -0,0 +1,98 @@
+package com.ecommerce.config;
+
+import java.util.Map;
+
+/** Point-in-time view of {@link ConnectionPool} counters. */
+public class PoolStats {
+    private final int active;
+    private final int idle;
+    private final int total;
+    private final int maxSize;
+    private final int waiters;
+    private final long borrows;
+    private final long timeouts;
+    private final long created;
+    private final long destroyed;
+    private final long leaksDetected;
+    private final long statementCacheHits;
+    private final long statementCacheMisses;
+    private final Map<String, Object> waitTime;
+
+    public PoolStats(int active, int idle, int total, int maxSize, int waiters, long borrows, long timeouts,
+            long created, long destroyed, long leaksDetected, long statementCacheHits, long statementCacheMisses,
+            Map<String, Object> waitTime) {
+        this.active = active;
+        this.idle = idle;
+        this.total = total;
+        this.maxSize = maxSize;
+        this.waiters = waiters;
+        this.borrows = borrows;
+        this.timeouts = timeouts;
+        this.created = created;
+        this.destroyed = destroyed;
+        this.leaksDetected = leaksDetected;
+        this.statementCacheHits = statementCacheHits;
+        this.statementCacheMisses = statementCacheMisses;
+        this.waitTime = waitTime;
+    }
+
+    // Getters
+    public int getActive() {
+        return active;
+    }
+
+    public int getIdle() {
+        return idle;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getWaiters() {
+        return waiters;
+    }
+
+    public long getBorrows() {
+        return borrows;
+    }
+
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public long getDestroyed() {
+        return destroyed;
+    }
+
+    public long getLeaksDetected() {
+        return leaksDetected;
+    }
+
+    public long getStatementCacheHits() {
+        return statementCacheHits;
+    }
+
+    public long getStatementCacheMisses() {
+        return statementCacheMisses;
+    }
+
+    public Map<String, Object> getWaitTime() {
+        return waitTime;
+    }
+
+    @Override
+    public String toString() {
+        return "PoolStats{active=" + active + ", idle=" + idle + ", total=" + total + ", max=" + maxSize
+                + ", waiters=" + waiters + ", borrows=" + borrows + ", timeouts=" + timeouts
+                + ", leaks=" + leaksDetected + "}";
+    }
+}
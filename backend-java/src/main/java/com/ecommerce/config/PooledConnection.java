@@ -0,0 +1,329 @@
+package com.ecommerce.config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A physical connection owned by {@link ConnectionPool}. Each borrow hands out a
+ * fresh proxy whose {@code close()} returns the connection to the pool instead of
+ * closing it, and whose {@code prepareStatement} calls are served from a small
+ * per-connection LRU statement cache.
+ */
+class PooledConnection {
+    // Statement settings that would outlive the borrower; a statement that had any of them
+    // changed is closed instead of going back into the cache
+    private static final Set<String> STATEMENT_SETTINGS = Set.of("setFetchSize", "setFetchDirection",
+            "setMaxRows", "setLargeMaxRows", "setMaxFieldSize", "setQueryTimeout", "setEscapeProcessing",
+            "setCursorName", "setPoolable", "closeOnCompletion");
+
+    private final ConnectionPool pool;
+    private final Connection raw;
+    private final int statementCacheSize;
+    private final int defaultIsolation;
+    private final int defaultHoldability;
+    private final Map<String, CachedStatement> statementCache = new LinkedHashMap<>(16, 0.75f, true);
+    private final long createdAt = System.currentTimeMillis();
+
+    private volatile long lastUsedAt = createdAt;
+    private volatile long borrowedAt;
+    private volatile Throwable borrowTrace;
+    private volatile boolean leakReported;
+
+    PooledConnection(ConnectionPool pool, Connection raw, int statementCacheSize) throws SQLException {
+        this.pool = pool;
+        this.raw = raw;
+        this.statementCacheSize = statementCacheSize;
+        this.defaultIsolation = raw.getTransactionIsolation();
+        this.defaultHoldability = raw.getHoldability();
+    }
+
+    Connection borrow(boolean captureTrace) {
+        borrowedAt = System.currentTimeMillis();
+        borrowTrace = captureTrace ? new Throwable("Connection borrowed here") : null;
+        leakReported = false;
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, new Handle());
+    }
+
+    /** Puts the physical connection back into a clean state. Returns false if it is no longer usable. */
+    boolean reset() {
+        try {
+            if (raw.isClosed()) {
+                return false;
+            }
+            if (!raw.getAutoCommit()) {
+                raw.rollback();
+                raw.setAutoCommit(true);
+            }
+            if (raw.isReadOnly()) {
+                raw.setReadOnly(false);
+            }
+            if (raw.getTransactionIsolation() != defaultIsolation) {
+                raw.setTransactionIsolation(defaultIsolation);
+            }
+            if (raw.getHoldability() != defaultHoldability) {
+                raw.setHoldability(defaultHoldability);
+            }
+            raw.clearWarnings();
+            lastUsedAt = System.currentTimeMillis();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    boolean isValid(int timeoutSeconds) {
+        try {
+            return raw.isValid(timeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    void closePhysically() {
+        synchronized (statementCache) {
+            for (CachedStatement cached : statementCache.values()) {
+                closeQuietly(cached.statement);
+            }
+            statementCache.clear();
+        }
+        try {
+            raw.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    long getCreatedAt() {
+        return createdAt;
+    }
+
+    long getLastUsedAt() {
+        return lastUsedAt;
+    }
+
+    long getBorrowedAt() {
+        return borrowedAt;
+    }
+
+    Throwable getBorrowTrace() {
+        return borrowTrace;
+    }
+
+    boolean isLeakReported() {
+        return leakReported;
+    }
+
+    void setLeakReported(boolean leakReported) {
+        this.leakReported = leakReported;
+    }
+
+    int getCachedStatementCount() {
+        synchronized (statementCache) {
+            return statementCache.size();
+        }
+    }
+
+    private PreparedStatement prepare(Handle handle, Connection proxy, String sql, int generatedKeys)
+            throws SQLException {
+        if (statementCacheSize == 0) {
+            return raw.prepareStatement(sql, generatedKeys);
+        }
+        String key = generatedKeys + "|" + sql;
+        CachedStatement cached;
+        synchronized (statementCache) {
+            cached = statementCache.get(key);
+            if (cached != null && cached.inUse) {
+                // Same SQL open twice on one connection: fall back to an uncached statement.
+                pool.recordStatementMiss();
+                return raw.prepareStatement(sql, generatedKeys);
+            }
+            if (cached == null) {
+                pool.recordStatementMiss();
+                cached = new CachedStatement(raw.prepareStatement(sql, generatedKeys));
+                statementCache.put(key, cached);
+                evictStatements();
+            } else {
+                pool.recordStatementHit();
+            }
+            cached.inUse = true;
+        }
+        StatementHandle statementHandle = new StatementHandle(cached, handle, proxy);
+        handle.openStatements.add(statementHandle);
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, statementHandle);
+    }
+
+    private void evictStatements() {
+        Iterator<CachedStatement> it = statementCache.values().iterator();
+        while (statementCache.size() > statementCacheSize && it.hasNext()) {
+            CachedStatement eldest = it.next();
+            if (!eldest.inUse) {
+                it.remove();
+                closeQuietly(eldest.statement);
+            }
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception ignored) {
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static class CachedStatement {
+        final PreparedStatement statement;
+        boolean inUse;
+
+        CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+        }
+    }
+
+    private class Handle implements InvocationHandler {
+        private final List<StatementHandle> openStatements = new ArrayList<>();
+        private boolean closed;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        for (StatementHandle statement : new ArrayList<>(openStatements)) {
+                            statement.release();
+                        }
+                        openStatements.clear();
+                        pool.release(PooledConnection.this);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || raw.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + raw;
+                case "unwrap":
+                    return ((Class<?>) args[0]).isInstance(raw) ? raw : raw.unwrap((Class<?>) args[0]);
+                case "isWrapperFor":
+                    return ((Class<?>) args[0]).isInstance(raw) || raw.isWrapperFor((Class<?>) args[0]);
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Connection is closed");
+            }
+            if ("prepareStatement".equals(name) && args.length <= 2
+                    && (args.length == 1 || args[1] instanceof Integer)) {
+                int generatedKeys = args.length == 2 ? (Integer) args[1] : java.sql.Statement.NO_GENERATED_KEYS;
+                return prepare(this, (Connection) proxy, (String) args[0], generatedKeys);
+            }
+            return PooledConnection.invoke(raw, method, args);
+        }
+    }
+
+    private class StatementHandle implements InvocationHandler {
+        private final CachedStatement cached;
+        private final Handle owner;
+        private final Connection connection;
+        private final List<ResultSet> resultSets = new ArrayList<>(2);
+        private boolean closed;
+        private boolean modified;
+        // H2 keeps the query timeout per session, so it is put back even though the statement is dropped
+        private Integer originalQueryTimeout;
+
+        StatementHandle(CachedStatement cached, Handle owner, Connection connection) {
+            this.cached = cached;
+            this.owner = owner;
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    if (!closed) {
+                        release();
+                        owner.openStatements.remove(this);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "getConnection":
+                    return connection;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached" + cached.statement;
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Statement is closed");
+            }
+            if (STATEMENT_SETTINGS.contains(name)) {
+                modified = true;
+                if ("setQueryTimeout".equals(name) && originalQueryTimeout == null) {
+                    originalQueryTimeout = cached.statement.getQueryTimeout();
+                }
+            }
+            Object result = PooledConnection.invoke(cached.statement, method, args);
+            if (result instanceof ResultSet) {
+                resultSets.add((ResultSet) result);
+            }
+            return result;
+        }
+
+        void release() {
+            closed = true;
+            for (ResultSet rs : resultSets) {
+                closeQuietly(rs);
+            }
+            resultSets.clear();
+            boolean reusable = !modified;
+            try {
+                if (originalQueryTimeout != null) {
+                    cached.statement.setQueryTimeout(originalQueryTimeout);
+                }
+                cached.statement.clearParameters();
+                cached.statement.clearBatch();
+            } catch (SQLException e) {
+                reusable = false;
+            }
+            synchronized (statementCache) {
+                cached.inUse = false;
+                if (!reusable) {
+                    statementCache.values().remove(cached);
+                    closeQuietly(cached.statement);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.ecommerce.config;
+
+import org.h2.mvstore.MVStoreTool;
+import org.h2.tools.Restore;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodic compacted copies of a file-backed store. BACKUP TO takes a
+ * consistent copy while writers carry on; the copy is then compacted offline
+ * into a store file that is ready to open as-is, so restoring one is a file
+ * copy rather than a SQL replay. When the store file is missing at startup the
+ * newest snapshot is copied into place before the database opens.
+ */
+public class SnapshotScheduler {
+    private static final String SUFFIX = ".mv.db";
+
+    private final StoreConfig config;
+    private final String prefix;
+    private ScheduledExecutorService scheduler;
+
+    private long snapshots;
+    private long failures;
+    private long lastSnapshotAt;
+    private long lastDurationMs;
+    private long lastSizeBytes;
+    private String restoredFrom;
+
+    public SnapshotScheduler(StoreConfig config) {
+        this.config = config;
+        this.prefix = new File(config.getStoreBase()).getName() + "-";
+    }
+
+    /** Copies the newest snapshot into place if the store file does not exist yet. */
+    public synchronized boolean restoreIfMissing() throws IOException {
+        File store = config.getStoreFile();
+        if (store.exists()) {
+            return false;
+        }
+        List<File> existing = list();
+        if (existing.isEmpty()) {
+            return false;
+        }
+        File latest = existing.get(existing.size() - 1);
+        Files.createDirectories(store.getParentFile().toPath());
+        Files.copy(latest.toPath(), store.toPath());
+        restoredFrom = latest.getName();
+        System.out.println("Restored database from snapshot " + latest);
+        return true;
+    }
+
+    public synchronized void start(DataSource dataSource) {
+        if (scheduler != null || config.getSnapshotIntervalMs() <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = config.getSnapshotIntervalMs();
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot(dataSource);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /** Takes one snapshot now and prunes all but the newest snapshotRetain. */
+    public File snapshot(DataSource dataSource) throws SQLException, IOException {
+        long start = System.currentTimeMillis();
+        Path dir = Files.createDirectories(new File(config.getSnapshotDir()).getAbsoluteFile().toPath());
+        String name = prefix + new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date(start));
+        Path work = Files.createTempDirectory(dir, ".work-");
+        Path zip = work.resolve("backup.zip");
+        try {
+            try (Connection conn = dataSource.getConnection();
+                    PreparedStatement stmt = conn.prepareStatement("BACKUP TO ?")) {
+                stmt.setString(1, zip.toString());
+                stmt.execute();
+            }
+            String dbName = new File(config.getStoreBase()).getName();
+            Restore.execute(zip.toString(), work.toString(), dbName);
+            Path compacted = work.resolve(name + SUFFIX);
+            MVStoreTool.compact(work.resolve(dbName + SUFFIX).toString(), compacted.toString(), false);
+
+            // Only complete snapshots ever carry the final name, so restore never picks up a partial one
+            Path target = dir.resolve(name + SUFFIX);
+            Files.move(compacted, target, StandardCopyOption.ATOMIC_MOVE);
+            synchronized (this) {
+                snapshots++;
+                lastSnapshotAt = System.currentTimeMillis();
+                lastDurationMs = lastSnapshotAt - start;
+                lastSizeBytes = Files.size(target);
+            }
+            prune();
+            return target.toFile();
+        } catch (SQLException | IOException | RuntimeException e) {
+            synchronized (this) {
+                failures++;
+            }
+            throw e;
+        } finally {
+            deleteRecursively(work.toFile());
+        }
+    }
+
+    private void prune() {
+        List<File> existing = list();
+        for (int i = 0; i < existing.size() - config.getSnapshotRetain(); i++) {
+            if (!existing.get(i).delete()) {
+                System.out.println("Could not delete old snapshot " + existing.get(i));
+            }
+        }
+    }
+
+    // Oldest first: the timestamped names sort chronologically
+    private List<File> list() {
+        File[] files = new File(config.getSnapshotDir()).getAbsoluteFile()
+                .listFiles((d, n) -> n.startsWith(prefix) && n.endsWith(SUFFIX));
+        if (files == null) {
+            return Collections.emptyList();
+        }
+        List<File> sorted = new ArrayList<>(List.of(files));
+        sorted.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return sorted;
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("intervalMs", config.getSnapshotIntervalMs());
+        stats.put("snapshots", snapshots);
+        stats.put("failures", failures);
+        stats.put("retained", list().size());
+        stats.put("lastSnapshotAt", lastSnapshotAt);
+        stats.put("lastDurationMs", lastDurationMs);
+        stats.put("lastSizeBytes", lastSizeBytes);
+        stats.put("restoredFrom", restoredFrom);
+        return stats;
+    }
+}
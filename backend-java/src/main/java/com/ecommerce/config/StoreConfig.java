@@ -0,0 +1,131 @@
+package com.ecommerce.config;
+
+import java.io.File;
+
+/**
+ * Where the H2 database lives. The default in-memory store is rebuilt from the
+ * migrations on every boot; the file-backed modes keep carts, orders and the
+ * catalog across restarts and reopen the existing MVStore file without replaying
+ * any SQL. Overridable with system properties, e.g. {@code -Ddb.mode=file}.
+ *
+ * <ul>
+ * <li>{@code mem}: in-memory, lost on shutdown (default)</li>
+ * <li>{@code file}: MVStore file read through a FileChannel</li>
+ * <li>{@code mapped}: MVStore file memory-mapped, so reopening a large store
+ * lets the OS page cache serve it instead of copying chunks onto the heap</li>
+ * </ul>
+ */
+public class StoreConfig {
+    public enum Mode { MEM, FILE, MAPPED }
+
+    private Mode mode = Mode.MEM;
+    private String path = "./data/ecommerce";
+    // H2's page cache, in KB; the engine default is 64 MB per GB of heap
+    private int cacheSizeKb = 64 * 1024;
+    // Time H2 may spend compacting the store file on close
+    private int maxCompactTimeMs = 2_000;
+    private long snapshotIntervalMs = 15 * 60 * 1000L;
+    private String snapshotDir = "./data/snapshots";
+    private int snapshotRetain = 3;
+
+    public static StoreConfig fromSystemProperties() {
+        StoreConfig config = new StoreConfig();
+        config.setMode(Mode.valueOf(System.getProperty("db.mode", config.getMode().name()).toUpperCase()));
+        config.setPath(System.getProperty("db.path", config.getPath()));
+        config.setCacheSizeKb(Integer.getInteger("db.cacheSizeKb", config.getCacheSizeKb()));
+        config.setMaxCompactTimeMs(Integer.getInteger("db.maxCompactTimeMs", config.getMaxCompactTimeMs()));
+        config.setSnapshotIntervalMs(Long.getLong("db.snapshotIntervalMs", config.getSnapshotIntervalMs()));
+        config.setSnapshotDir(System.getProperty("db.snapshotDir", config.getSnapshotDir()));
+        config.setSnapshotRetain(Integer.getInteger("db.snapshotRetain", config.getSnapshotRetain()));
+        return config;
+    }
+
+    public String getJdbcUrl() {
+        switch (mode) {
+            case FILE:
+                return "jdbc:h2:file:" + getStoreBase() + fileSettings();
+            case MAPPED:
+                return "jdbc:h2:nioMapped:" + getStoreBase() + fileSettings();
+            default:
+                return "jdbc:h2:mem:ecommerce;DB_CLOSE_DELAY=-1";
+        }
+    }
+
+    // Closed explicitly by DatabaseConfig.shutdown() so the compaction on close is not cut short
+    private String fileSettings() {
+        return ";CACHE_SIZE=" + cacheSizeKb + ";MAX_COMPACT_TIME=" + maxCompactTimeMs + ";DB_CLOSE_ON_EXIT=FALSE";
+    }
+
+    public boolean isPersistent() {
+        return mode != Mode.MEM;
+    }
+
+    /** Absolute path of the store without H2's .mv.db extension. */
+    public String getStoreBase() {
+        return new File(path).getAbsolutePath();
+    }
+
+    public File getStoreFile() {
+        return new File(getStoreBase() + ".mv.db");
+    }
+
+    // Getters and Setters
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public int getCacheSizeKb() {
+        return cacheSizeKb;
+    }
+
+    public void setCacheSizeKb(int cacheSizeKb) {
+        if (cacheSizeKb < 1024) {
+            throw new IllegalArgumentException("cacheSizeKb must be at least 1024");
+        }
+        this.cacheSizeKb = cacheSizeKb;
+    }
+
+    public int getMaxCompactTimeMs() {
+        return maxCompactTimeMs;
+    }
+
+    public void setMaxCompactTimeMs(int maxCompactTimeMs) {
+        this.maxCompactTimeMs = Math.max(0, maxCompactTimeMs);
+    }
+
+    public long getSnapshotIntervalMs() {
+        return snapshotIntervalMs;
+    }
+
+    public void setSnapshotIntervalMs(long snapshotIntervalMs) {
+        this.snapshotIntervalMs = snapshotIntervalMs;
+    }
+
+    public String getSnapshotDir() {
+        return snapshotDir;
+    }
+
+    public void setSnapshotDir(String snapshotDir) {
+        this.snapshotDir = snapshotDir;
+    }
+
+    public int getSnapshotRetain() {
+        return snapshotRetain;
+    }
+
+    public void setSnapshotRetain(int snapshotRetain) {
+        this.snapshotRetain = Math.max(1, snapshotRetain);
+    }
+}
@@ -8,77 +8,139 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class CartDAO {
+    // One statement for every mutation, so a whole batch shares a single prepared statement
+    private static final String MERGE_SQL = "MERGE INTO cart_items c "
+            + "USING (VALUES (CAST(? AS INT), CAST(? AS INT), CAST(? AS INT), CAST(? AS BOOLEAN))) "
+            + "AS s(user_id, product_id, quantity, replace_quantity) "
+            + "ON c.user_id = s.user_id AND c.product_id = s.product_id "
+            + "WHEN MATCHED AND (CASE WHEN s.replace_quantity THEN s.quantity ELSE c.quantity + s.quantity END) <= 0 "
+            + "THEN DELETE "
+            + "WHEN MATCHED THEN UPDATE SET quantity = "
+            + "CASE WHEN s.replace_quantity THEN s.quantity ELSE c.quantity + s.quantity END "
+            + "WHEN NOT MATCHED AND s.quantity > 0 THEN "
+            + "INSERT (user_id, product_id, quantity) VALUES (s.user_id, s.product_id, s.quantity)";
+
+    // Two first adds of the same product can both miss in the MERGE and race on unique_cart_item;
+    // retried once, the loser finds the winner's row and updates it
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    static final String FIND_BY_USER_SQL = "SELECT c.id AS cart_id, c.user_id, c.product_id, c.quantity, "
+            + "p.name, p.price, p.image "
+            + "FROM cart_items c JOIN products p ON c.product_id = p.id WHERE c.user_id = ? ORDER BY c.id";
+
     public List<CartItem> findByUserId(int userId) {
-        List<CartItem> items = new ArrayList<>();
-        String sql = "SELECT c.*, p.* FROM cart_items c JOIN products p ON c.product_id = p.id WHERE c.user_id = ?";
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            return findByUserId(conn, userId);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return new ArrayList<>();
+    }
 
-        try (Connection conn = DatabaseConfig.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
+    List<CartItem> findByUserId(Connection conn, int userId) throws SQLException {
+        List<CartItem> items = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(FIND_BY_USER_SQL)) {
             stmt.setInt(1, userId);
             ResultSet rs = stmt.executeQuery();
             while (rs.next()) {
                 CartItem item = new CartItem();
-                item.setId(rs.getInt("c.id"));
-                item.setUserId(rs.getInt("c.user_id"));
-                item.setProductId(rs.getInt("c.product_id"));
-                item.setQuantity(rs.getInt("c.quantity"));
+                item.setId(rs.getInt("cart_id"));
+                item.setUserId(rs.getInt("user_id"));
+                item.setProductId(rs.getInt("product_id"));
+                item.setQuantity(rs.getInt("quantity"));
 
                 Product p = new Product();
-                p.setId(rs.getInt("p.id"));
-                p.setName(rs.getString("p.name"));
-                p.setPrice(rs.getDouble("p.price"));
-                p.setImage(rs.getString("p.image"));
+                p.setId(rs.getInt("product_id"));
+                p.setName(rs.getString("name"));
+                p.setPrice(rs.getDouble("price"));
+                p.setImage(rs.getString("image"));
                 item.setProduct(p);
 
                 items.add(item);
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
         return items;
     }
 
     public void addToCart(int userId, int productId, int quantity) {
-        // Check if exists first
-        String checkSql = "SELECT quantity FROM cart_items WHERE user_id = ? AND product_id = ?";
-        try (Connection conn = DatabaseConfig.getConnection();
-                PreparedStatement checkStmt = conn.prepareStatement(checkSql)) {
-            checkStmt.setInt(1, userId);
-            checkStmt.setInt(2, productId);
-            ResultSet rs = checkStmt.executeQuery();
-
-            if (rs.next()) {
-                // Update
-                int currentQty = rs.getInt("quantity");
-                updateQuantity(userId, productId, currentQty + quantity);
-            } else {
-                // Insert
-                String insertSql = "INSERT INTO cart_items (user_id, product_id, quantity) VALUES (?, ?, ?)";
-                try (PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
-                    insertStmt.setInt(1, userId);
-                    insertStmt.setInt(2, productId);
-                    insertStmt.setInt(3, quantity);
-                    insertStmt.executeUpdate();
+        apply(userId, CartOperation.add(productId, quantity));
+    }
+
+    public void updateQuantity(int userId, int productId, int quantity) {
+        apply(userId, CartOperation.set(productId, quantity));
+    }
+
+    private void apply(int userId, CartOperation op) {
+        for (int attempt = 1;; attempt++) {
+            try (Connection conn = DatabaseConfig.getConnection();
+                    PreparedStatement stmt = conn.prepareStatement(MERGE_SQL)) {
+                bind(stmt, userId, op);
+                stmt.executeUpdate();
+                return;
+            } catch (SQLException e) {
+                if (attempt == 1 && isUniqueViolation(e)) {
+                    continue;
                 }
+                e.printStackTrace();
+                return;
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
     }
 
-    public void updateQuantity(int userId, int productId, int quantity) {
-        try (Connection conn = DatabaseConfig.getConnection();
-                PreparedStatement stmt = conn
-                        .prepareStatement("UPDATE cart_items SET quantity = ? WHERE user_id = ? AND product_id = ?")) {
-            stmt.setInt(1, quantity);
-            stmt.setInt(2, userId);
-            stmt.setInt(3, productId);
-            stmt.executeUpdate();
+    /**
+     * Applies all operations in order as one JDBC batch inside one transaction
+     * and returns the resulting cart. Nothing is applied if any operation fails.
+     */
+    public List<CartItem> applyBatch(int userId, List<CartOperation> ops) throws SQLException {
+        try {
+            return applyBatchOnce(userId, ops);
         } catch (SQLException e) {
-            e.printStackTrace();
+            if (!isUniqueViolation(e)) {
+                throw e;
+            }
+            return applyBatchOnce(userId, ops);
+        }
+    }
+
+    private List<CartItem> applyBatchOnce(int userId, List<CartOperation> ops) throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(MERGE_SQL)) {
+                for (CartOperation op : ops) {
+                    bind(stmt, userId, op);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                List<CartItem> items = findByUserId(conn, userId);
+                conn.commit();
+                return items;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
         }
     }
 
+    // Batch failures carry the statement's error as the next exception
+    private static boolean isUniqueViolation(SQLException e) {
+        for (SQLException cause = e; cause != null; cause = cause.getNextException()) {
+            if (UNIQUE_VIOLATION.equals(cause.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void bind(PreparedStatement stmt, int userId, CartOperation op) throws SQLException {
+        stmt.setInt(1, userId);
+        stmt.setInt(2, op.getProductId());
+        stmt.setInt(3, op.getQuantity());
+        stmt.setBoolean(4, op.isReplace());
+    }
+
     public void removeItem(int userId, int productId) {
         try (Connection conn = DatabaseConfig.getConnection();
                 PreparedStatement stmt = conn
@@ -0,0 +1,41 @@
+package com.ecommerce.dao;
+
+/**
+ * One cart mutation. Adds are relative to the current quantity, sets replace it;
+ * any operation that leaves a quantity of zero or less removes the line.
+ */
+public class CartOperation {
+    private final int productId;
+    private final int quantity;
+    private final boolean replace;
+
+    private CartOperation(int productId, int quantity, boolean replace) {
+        this.productId = productId;
+        this.quantity = quantity;
+        this.replace = replace;
+    }
+
+    public static CartOperation add(int productId, int quantity) {
+        return new CartOperation(productId, quantity, false);
+    }
+
+    public static CartOperation set(int productId, int quantity) {
+        return new CartOperation(productId, quantity, true);
+    }
+
+    public static CartOperation remove(int productId) {
+        return new CartOperation(productId, 0, true);
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public boolean isReplace() {
+        return replace;
+    }
+}
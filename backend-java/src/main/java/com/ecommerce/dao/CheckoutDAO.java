@@ -0,0 +1,234 @@
+package com.ecommerce.dao;
+
+import com.ecommerce.config.DatabaseConfig;
+import com.ecommerce.metrics.Histogram;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Checkout as one transaction on one connection: lock and read the cart,
+ * decrement stock, insert the order and its items, record the idempotency key
+ * and clear the cart. Any failure rolls everything back, so a client never
+ * sees a partial order.
+ *
+ * A request carrying an idempotency key that was already used by the same
+ * user returns the original order instead of creating another one. Two
+ * concurrent retries race on the key's primary key; the loser rolls back and
+ * replays the winner's order.
+ */
+public class CheckoutDAO {
+    private static final int ITEMS_PER_INSERT = 100;
+    private static final String[] STAGES = {"connection", "idempotency", "cart", "stock", "order", "items", "clear", "commit"};
+    private static final Map<String, Histogram> STAGE_MICROS = new ConcurrentHashMap<>();
+
+    // Locked in product id order so concurrent checkouts touch rows in the same order
+    static final String LOCK_CART_SQL = "SELECT c.product_id, c.quantity, p.price FROM cart_items c "
+            + "JOIN products p ON c.product_id = p.id WHERE c.user_id = ? ORDER BY c.product_id FOR UPDATE";
+    static final String RESERVE_STOCK_SQL = "UPDATE products SET stock = stock - ? WHERE id = ? AND stock >= ?";
+    static final String FIND_IDEMPOTENCY_SQL =
+            "SELECT order_id FROM order_idempotency WHERE user_id = ? AND idempotency_key = ?";
+
+    static {
+        for (String stage : STAGES) {
+            STAGE_MICROS.put(stage, new Histogram("us"));
+        }
+    }
+
+    public CheckoutResult checkout(int userId, String address, String paymentMethod, String idempotencyKey) {
+        Timer timer = new Timer();
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            timer.stage("connection");
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                List<int[]> lines = new ArrayList<>();
+                CheckoutResult result = checkout(conn, userId, address, paymentMethod, idempotencyKey, lines, timer);
+                if (result.getStatus() == CheckoutResult.Status.CREATED) {
+                    conn.commit();
+                    timer.stage("commit");
+                    int[] productIds = new int[lines.size()];
+                    for (int i = 0; i < productIds.length; i++) {
+                        productIds[i] = lines.get(i)[0];
+                    }
+                    RelatedProductsIndex.getInstance().record(result.getOrderId(), productIds);
+                    // Stock and sales counts changed; picked up by the next coalesced catalog reload
+                    ProductCatalog.getInstance().stockChanged();
+                } else {
+                    conn.rollback();
+                }
+                return timer.result(result.getStatus(), result.getOrderId(), result.getUnavailableProductIds());
+            } catch (SQLException e) {
+                conn.rollback();
+                if (idempotencyKey != null) {
+                    // A concurrent request with the same key may have committed first
+                    int existing = findByIdempotencyKey(conn, userId, idempotencyKey);
+                    if (existing != -1) {
+                        return timer.result(CheckoutResult.Status.REPLAYED, existing, Collections.emptyList());
+                    }
+                }
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return timer.result(CheckoutResult.Status.FAILED, -1, Collections.emptyList());
+        }
+    }
+
+    // Fills lines with the locked cart as {productId, quantity}
+    private CheckoutResult checkout(Connection conn, int userId, String address, String paymentMethod,
+            String idempotencyKey, List<int[]> lines, Timer timer) throws SQLException {
+        if (idempotencyKey != null) {
+            int existing = findByIdempotencyKey(conn, userId, idempotencyKey);
+            timer.stage("idempotency");
+            if (existing != -1) {
+                return new CheckoutResult(CheckoutResult.Status.REPLAYED, existing, Collections.emptyList(), Map.of());
+            }
+        }
+
+        List<Double> prices = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(LOCK_CART_SQL)) {
+            stmt.setInt(1, userId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    lines.add(new int[]{rs.getInt("product_id"), rs.getInt("quantity")});
+                    prices.add(rs.getDouble("price"));
+                }
+            }
+        }
+        timer.stage("cart");
+        if (lines.isEmpty()) {
+            if (idempotencyKey != null) {
+                // A concurrent retry held the cart lock and may just have committed under this key
+                int existing = findByIdempotencyKey(conn, userId, idempotencyKey);
+                if (existing != -1) {
+                    return new CheckoutResult(CheckoutResult.Status.REPLAYED, existing, Collections.emptyList(), Map.of());
+                }
+            }
+            return new CheckoutResult(CheckoutResult.Status.EMPTY_CART, -1, Collections.emptyList(), Map.of());
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement(RESERVE_STOCK_SQL)) {
+            for (int[] line : lines) {
+                stmt.setInt(1, line[1]);
+                stmt.setInt(2, line[0]);
+                stmt.setInt(3, line[1]);
+                stmt.addBatch();
+            }
+            int[] counts = stmt.executeBatch();
+            List<Integer> unavailable = new ArrayList<>();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) {
+                    unavailable.add(lines.get(i)[0]);
+                }
+            }
+            timer.stage("stock");
+            if (!unavailable.isEmpty()) {
+                return new CheckoutResult(CheckoutResult.Status.OUT_OF_STOCK, -1, unavailable, Map.of());
+            }
+        }
+
+        double totalAmount = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            totalAmount += prices.get(i) * lines.get(i)[1];
+        }
+        int orderId;
+        String orderSql = "INSERT INTO orders (user_id, total_amount, shipping_address, payment_method) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(orderSql, Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setInt(1, userId);
+            stmt.setDouble(2, totalAmount);
+            stmt.setString(3, address);
+            stmt.setString(4, paymentMethod);
+            stmt.executeUpdate();
+            try (ResultSet rs = stmt.getGeneratedKeys()) {
+                if (!rs.next()) {
+                    throw new SQLException("No id generated for order");
+                }
+                orderId = rs.getInt(1);
+            }
+        }
+        timer.stage("order");
+
+        insertItems(conn, orderId, lines, prices);
+        timer.stage("items");
+
+        if (idempotencyKey != null) {
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "INSERT INTO order_idempotency (user_id, idempotency_key, order_id) VALUES (?, ?, ?)")) {
+                stmt.setInt(1, userId);
+                stmt.setString(2, idempotencyKey);
+                stmt.setInt(3, orderId);
+                stmt.executeUpdate();
+            }
+        }
+        try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM cart_items WHERE user_id = ?")) {
+            stmt.setInt(1, userId);
+            stmt.executeUpdate();
+        }
+        timer.stage("clear");
+        return new CheckoutResult(CheckoutResult.Status.CREATED, orderId, Collections.emptyList(), Map.of());
+    }
+
+    /** Multi-row INSERTs of up to ITEMS_PER_INSERT rows each: one round trip for a typical cart. */
+    private void insertItems(Connection conn, int orderId, List<int[]> lines, List<Double> prices) throws SQLException {
+        for (int from = 0; from < lines.size(); from += ITEMS_PER_INSERT) {
+            int to = Math.min(lines.size(), from + ITEMS_PER_INSERT);
+            StringBuilder sql = new StringBuilder("INSERT INTO order_items (order_id, product_id, quantity, price) VALUES ");
+            for (int i = from; i < to; i++) {
+                sql.append(i == from ? "(?, ?, ?, ?)" : ", (?, ?, ?, ?)");
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+                int p = 1;
+                for (int i = from; i < to; i++) {
+                    stmt.setInt(p++, orderId);
+                    stmt.setInt(p++, lines.get(i)[0]);
+                    stmt.setInt(p++, lines.get(i)[1]);
+                    stmt.setDouble(p++, prices.get(i));
+                }
+                stmt.executeUpdate();
+            }
+        }
+    }
+
+    private int findByIdempotencyKey(Connection conn, int userId, String idempotencyKey) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(FIND_IDEMPOTENCY_SQL)) {
+            stmt.setInt(1, userId);
+            stmt.setString(2, idempotencyKey);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : -1;
+            }
+        }
+    }
+
+    public static Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (String stage : STAGES) {
+            stats.put(stage, STAGE_MICROS.get(stage).snapshot());
+        }
+        return stats;
+    }
+
+    private static class Timer {
+        private final Map<String, Long> stages = new LinkedHashMap<>();
+        private long last = System.nanoTime();
+
+        void stage(String name) {
+            long now = System.nanoTime();
+            long micros = (now - last) / 1_000;
+            stages.put(name, micros);
+            STAGE_MICROS.get(name).record(micros);
+            last = now;
+        }
+
+        CheckoutResult result(CheckoutResult.Status status, int orderId, List<Integer> unavailable) {
+            return new CheckoutResult(status, orderId, unavailable, stages);
+        }
+    }
+}
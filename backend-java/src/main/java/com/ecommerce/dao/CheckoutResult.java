@@ -0,0 +1,40 @@
+package com.ecommerce.dao;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class CheckoutResult {
+    public enum Status {
+        CREATED, REPLAYED, EMPTY_CART, OUT_OF_STOCK, FAILED
+    }
+
+    private final Status status;
+    private final int orderId;
+    private final List<Integer> unavailableProductIds;
+    private final Map<String, Long> stageMicros;
+
+    CheckoutResult(Status status, int orderId, List<Integer> unavailableProductIds, Map<String, Long> stageMicros) {
+        this.status = status;
+        this.orderId = orderId;
+        this.unavailableProductIds = unavailableProductIds;
+        this.stageMicros = Collections.unmodifiableMap(stageMicros);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public int getOrderId() {
+        return orderId;
+    }
+
+    public List<Integer> getUnavailableProductIds() {
+        return unavailableProductIds;
+    }
+
+    /** Time spent in each checkout stage, in execution order. */
+    public Map<String, Long> getStageMicros() {
+        return stageMicros;
+    }
+}
@@ -0,0 +1,756 @@
+package com.ecommerce.dao;
+
+import com.ecommerce.metrics.Histogram;
+import com.ecommerce.model.Product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bitset facets over one catalog snapshot, answering category, brand, rating
+ * and price filters plus their counts without touching the database.
+ * Products are numbered by their position in id order, and every category,
+ * brand and rating threshold keeps a bitset of the positions it covers. A
+ * filter is the AND of the OR of each facet's selected values, so a query
+ * costs a few word-wise passes over n/64 longs.
+ *
+ * Price ranges use prefix bitsets over the products in price order, so a range
+ * is one prefix minus another plus an exact fix-up of at most one block at each
+ * end.
+ *
+ * Counts are disjunctive: each facet's counts apply every filter except its
+ * own, so after picking one brand the other brands still show what they would
+ * add. Without a price range or search they come from a precomputed
+ * category x brand x rating table instead of the bitsets.
+ *
+ * Selections are plain long[] bitsets where null means "everything". Instances
+ * are immutable and rebuilt whenever the catalog version changes. Everything
+ * is read from the catalog columns; products are only materialized for pages.
+ */
+public class FacetIndex {
+    private static final int MAX_VALUES = Integer.getInteger("facets.maxValues", 50);
+    // More blocks shorten the exact fix-up at the ends of a price range but cost n/64 longs each
+    private static final int PRICE_BLOCKS = 64;
+    // Above this many category x brand x rating cells counts fall back to the bitsets
+    private static final int MAX_CUBE_CELLS = 1 << 20;
+
+    private static final int ALL = -1;
+    private static final int CATEGORY = 0;
+    private static final int BRAND = 1;
+    private static final int RATING = 2;
+    private static final int PRICE = 3;
+
+    private static final LongAdder queries = new LongAdder();
+    private static final Histogram queryMicros = new Histogram("us");
+    private static volatile long lastBuildMs;
+
+    private final ProductColumns columns;
+    private final int n;
+    private final int words;
+    private final Facet categories;
+    private final Facet brands;
+    // ratingAtLeast[r] holds every product rated r or better
+    private final long[][] ratingAtLeast;
+    private final int[] priceOrder;
+    private final double[] sortedPrices;
+    private final int priceBlock;
+    // pricePrefix[k] holds the first k * priceBlock products in price order
+    private final long[][] pricePrefix;
+    // Product count and price range per (category, brand, rating) cell; the last category
+    // and brand slots hold products without one. Null when the catalog has too many values
+    private final int[] cube;
+    private final double[] cubeMinPrice;
+    private final double[] cubeMaxPrice;
+
+    public FacetIndex(ProductColumns columns) {
+        long start = System.currentTimeMillis();
+        this.columns = columns;
+        n = columns.size();
+        words = (n + 63) >>> 6;
+        categories = new Facet(columns.categoryValues(), n, words);
+        brands = new Facet(columns.brandValues(), n, words);
+
+        int maxRating = 0;
+        for (int i = 0; i < n; i++) {
+            maxRating = Math.max(maxRating, columns.rating(i));
+        }
+        ratingAtLeast = new long[maxRating + 1][words];
+        for (int i = 0; i < n; i++) {
+            categories.add(i, columns.categoryCode(i));
+            brands.add(i, columns.brandCode(i));
+            for (int r = 0; r <= columns.rating(i); r++) {
+                set(ratingAtLeast[r], i);
+            }
+        }
+
+        priceOrder = columns.order(ProductSort.PRICE, false);
+        sortedPrices = new double[n];
+        for (int i = 0; i < n; i++) {
+            sortedPrices[i] = columns.price(priceOrder[i]);
+        }
+        priceBlock = Math.max(1, (n + PRICE_BLOCKS - 1) / PRICE_BLOCKS);
+        pricePrefix = new long[n / priceBlock + 1][];
+        long[] prefix = new long[words];
+        for (int i = 0; i <= n; i++) {
+            if (i % priceBlock == 0) {
+                pricePrefix[i / priceBlock] = prefix.clone();
+            }
+            if (i < n) {
+                set(prefix, priceOrder[i]);
+            }
+        }
+
+        long cells = (long) (categories.size() + 1) * (brands.size() + 1) * ratingAtLeast.length;
+        if (cells <= MAX_CUBE_CELLS) {
+            cube = new int[(int) cells];
+            cubeMinPrice = new double[cube.length];
+            cubeMaxPrice = new double[cube.length];
+            Arrays.fill(cubeMinPrice, Double.MAX_VALUE);
+            Arrays.fill(cubeMaxPrice, -Double.MAX_VALUE);
+            for (int i = 0; i < n; i++) {
+                int cell = cell(categories.valueOf[i], brands.valueOf[i], Math.max(0, columns.rating(i)));
+                double price = columns.price(i);
+                cube[cell]++;
+                cubeMinPrice[cell] = Math.min(cubeMinPrice[cell], price);
+                cubeMaxPrice[cell] = Math.max(cubeMaxPrice[cell], price);
+            }
+        } else {
+            cube = null;
+            cubeMinPrice = null;
+            cubeMaxPrice = null;
+        }
+        lastBuildMs = System.currentTimeMillis() - start;
+    }
+
+    /**
+     * Positions of products matching the filter within base (null for the whole
+     * catalog). Null means everything; the result may be shared and must not be modified.
+     */
+    public long[] select(ProductFilter filter, long[] base) {
+        return combine(base, dimensions(filter), ALL);
+    }
+
+    /** Positions of the given product ids, e.g. search matches, to use as a base selection. */
+    public long[] positionsOf(int[] productIds) {
+        long[] bits = new long[words];
+        for (int id : productIds) {
+            int pos = columns.positionOf(id);
+            if (pos >= 0) {
+                set(bits, pos);
+            }
+        }
+        return bits;
+    }
+
+    public boolean contains(long[] selection, int productId) {
+        int pos = columns.positionOf(productId);
+        return pos >= 0 && (selection == null || get(selection, pos));
+    }
+
+    public int count(long[] selection) {
+        return selection == null ? n : cardinality(selection);
+    }
+
+    /**
+     * Keyset page over the selection made for filter. In id order the matches
+     * are read straight off the bitset. Other orders walk the sort order from
+     * the cursor, narrowed to the filter's own price or rating bounds, testing
+     * bits; sparse selections, or walks that run long, use a heap over the
+     * matches instead.
+     */
+    public ProductPage page(ProductFilter filter, long[] selection, PageRequest request) {
+        long start = System.nanoTime();
+        int limit = request.getLimit();
+        ProductSort sort = request.getSort();
+        // Positions of the page plus one more to tell whether another page follows
+        int[] page = new int[Math.min(limit + 1, n)];
+        int size = 0;
+
+        if (sort == ProductSort.ID) {
+            // Positions follow ids, so the bitset already lists the matches in sort order
+            boolean descending = request.isDescending();
+            int pos = descending ? prevMatch(selection, firstAfterCursor(null, true, request) - 1)
+                    : nextMatch(selection, firstAfterCursor(null, false, request));
+            while (pos >= 0 && pos < n && size <= limit) {
+                page[size++] = pos;
+                pos = descending ? prevMatch(selection, pos - 1) : nextMatch(selection, pos + 1);
+            }
+        } else {
+            int[] order = columns.order(sort, request.isDescending());
+            int total = count(selection);
+            int from = Math.max(firstAfterCursor(order, false, request), boundary(order, request, filter, true));
+            int to = boundary(order, request, filter, false);
+            // Testing a position costs about as much as offering a match to the heap
+            long budget = 2L * total;
+            boolean done = false;
+            if (selection == null || (long) (limit + 1) * (to - from) / Math.max(total, 1) <= budget) {
+                int i = from;
+                for (long end = selection == null ? to : Math.min(to, from + budget); i < end; i++) {
+                    int pos = order[i];
+                    if (selection == null || get(selection, pos)) {
+                        page[size++] = pos;
+                        if (size > limit) {
+                            break;
+                        }
+                    }
+                }
+                done = size > limit || i >= to;
+            }
+            if (!done) {
+                size = top(selection, request, page);
+            }
+        }
+
+        String next = null;
+        if (size > limit) {
+            size = limit;
+            int last = page[limit - 1];
+            next = request.cursorAfter(columns.key(sort, last), columns.id(last));
+        }
+        List<Product> products = Collections.unmodifiableList(columns.products(page, 0, size));
+        record(start);
+        return new ProductPage(products, next);
+    }
+
+    // The first limit + 1 matches after the cursor, in sort order, written to out; returns how many
+    private int top(long[] selection, PageRequest request, int[] out) {
+        ProductSort sort = request.getSort();
+        int keep = request.getLimit() + 1;
+        Comparator<Integer> order = (a, b) -> request.compare(columns.key(sort, a), columns.id(a),
+                columns.key(sort, b), columns.id(b));
+        PriorityQueue<Integer> top = new PriorityQueue<>(keep + 1, order.reversed());
+        for (int w = 0; w < words; w++) {
+            for (long word = selection[w]; word != 0; word &= word - 1) {
+                int pos = (w << 6) | Long.numberOfTrailingZeros(word);
+                if (!request.isAfterCursor(columns.key(sort, pos), columns.id(pos))
+                        || (top.size() == keep && order.compare(pos, top.peek()) >= 0)) {
+                    continue;
+                }
+                top.add(pos);
+                if (top.size() > keep) {
+                    top.poll();
+                }
+            }
+        }
+        int size = top.size();
+        for (int i = size - 1; i >= 0; i--) {
+            out[i] = top.poll();
+        }
+        return size;
+    }
+
+    // First index in the sort order (id order when order is null) that comes after the request's cursor
+    private int firstAfterCursor(int[] order, boolean reverse, PageRequest request) {
+        ProductSort sort = request.getSort();
+        int lo = 0;
+        int hi = n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int pos = order != null ? order[mid] : reverse ? n - 1 - mid : mid;
+            if (request.isAfterCursor(columns.key(sort, pos), columns.id(pos))) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return reverse ? n - lo : lo;
+    }
+
+    /**
+     * Where the filter's own bounds on the sort key (price range, minimum rating)
+     * start or end within the sort order, so walks skip products that cannot match.
+     */
+    private int boundary(int[] order, PageRequest request, ProductFilter filter, boolean start) {
+        ProductSort sort = request.getSort();
+        double low = Double.NEGATIVE_INFINITY;
+        double high = Double.POSITIVE_INFINITY;
+        if (sort == ProductSort.PRICE) {
+            low = filter.getMinPrice() == null ? low : filter.getMinPrice();
+            high = filter.getMaxPrice() == null ? high : filter.getMaxPrice();
+        } else if (sort == ProductSort.RATING && filter.getMinRating() > 0) {
+            low = filter.getMinRating();
+        }
+        boolean descending = request.isDescending();
+        // Ascending orders start at the low bound and end past the high one; descending the reverse
+        double bound = start != descending ? low : high;
+        if (bound == (start != descending ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY)) {
+            return start ? 0 : order.length;
+        }
+        int lo = 0;
+        int hi = order.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            double key = columns.key(sort, order[mid]);
+            boolean reached = descending ? (start ? key <= bound : key < bound) : (start ? key >= bound : key > bound);
+            if (reached) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return lo;
+    }
+
+    private int nextMatch(long[] selection, int from) {
+        if (selection == null || from >= n) {
+            return from;
+        }
+        int w = from >>> 6;
+        long word = selection[w] & (-1L << from);
+        while (word == 0) {
+            if (++w == words) {
+                return -1;
+            }
+            word = selection[w];
+        }
+        return (w << 6) | Long.numberOfTrailingZeros(word);
+    }
+
+    private int prevMatch(long[] selection, int from) {
+        if (selection == null || from < 0) {
+            return from;
+        }
+        int w = from >>> 6;
+        long word = selection[w] & (-1L >>> (63 - (from & 63)));
+        while (word == 0) {
+            if (--w < 0) {
+                return -1;
+            }
+            word = selection[w];
+        }
+        return (w << 6) | (63 - Long.numberOfLeadingZeros(word));
+    }
+
+    /** Facet counts for the filter within base (null for the whole catalog). */
+    public Map<String, Object> counts(ProductFilter filter, long[] base) {
+        long start = System.nanoTime();
+        Map<String, Object> facets = base == null && filter.getMinPrice() == null && filter.getMaxPrice() == null
+                && cube != null ? cubeCounts(filter) : bitsetCounts(filter, base);
+        record(start);
+        return facets;
+    }
+
+    private Map<String, Object> bitsetCounts(ProductFilter filter, long[] base) {
+        long[][] dimensions = dimensions(filter);
+        Map<String, Object> facets = new LinkedHashMap<>();
+        facets.put("category", values(categories, categories.count(combine(base, dimensions, CATEGORY)),
+                filter.getCategories()));
+        facets.put("brand", values(brands, brands.count(combine(base, dimensions, BRAND)), filter.getBrands()));
+        facets.put("rating", ratings(ratingCounts(combine(base, dimensions, RATING))));
+        facets.put("price", priceRange(combine(base, dimensions, PRICE)));
+        return facets;
+    }
+
+    // One pass over the category x brand x rating cells accumulates every facet's counts at once
+    private Map<String, Object> cubeCounts(ProductFilter filter) {
+        boolean[] inCategory = categories.mask(filter.getCategories());
+        boolean[] inBrand = brands.mask(filter.getBrands());
+        int minRating = filter.getMinRating();
+        int ratingSlots = ratingAtLeast.length;
+        int[] categoryCounts = new int[categories.size() + 1];
+        int[] brandCounts = new int[brands.size() + 1];
+        int[] atLeast = new int[ratingSlots];
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        int cell = 0;
+        for (int c = 0; c < categoryCounts.length; c++) {
+            boolean categoryMatches = inCategory == null || inCategory[c];
+            for (int b = 0; b < brandCounts.length; b++) {
+                boolean brandMatches = inBrand == null || inBrand[b];
+                for (int r = 0; r < ratingSlots; r++, cell++) {
+                    int count = cube[cell];
+                    if (count == 0) {
+                        continue;
+                    }
+                    boolean ratingMatches = r >= minRating;
+                    if (brandMatches && ratingMatches) {
+                        categoryCounts[c] += count;
+                    }
+                    if (categoryMatches && ratingMatches) {
+                        brandCounts[b] += count;
+                    }
+                    if (categoryMatches && brandMatches) {
+                        atLeast[r] += count;
+                        if (ratingMatches) {
+                            min = Math.min(min, cubeMinPrice[cell]);
+                            max = Math.max(max, cubeMaxPrice[cell]);
+                        }
+                    }
+                }
+            }
+        }
+        for (int r = ratingSlots - 2; r >= 0; r--) {
+            atLeast[r] += atLeast[r + 1];
+        }
+
+        Map<String, Object> facets = new LinkedHashMap<>();
+        facets.put("category", values(categories, categoryCounts, filter.getCategories()));
+        facets.put("brand", values(brands, brandCounts, filter.getBrands()));
+        facets.put("rating", ratings(atLeast));
+        facets.put("price", min > max ? null : range(min, max));
+        return facets;
+    }
+
+    // Selection of each facet on its own, indexed by CATEGORY..PRICE; null where the filter leaves it open
+    private long[][] dimensions(ProductFilter filter) {
+        return new long[][] { categories.union(filter.getCategories()), brands.union(filter.getBrands()),
+                ratingBits(filter.getMinRating()), priceBits(filter.getMinPrice(), filter.getMaxPrice()) };
+    }
+
+    // AND of base and every dimension but skip. A lone input is returned as is, so results are read-only
+    private long[] combine(long[] base, long[][] dimensions, int skip) {
+        long[] result = base;
+        boolean owned = false;
+        for (int d = 0; d < dimensions.length; d++) {
+            long[] bits = dimensions[d];
+            if (d == skip || bits == null) {
+                continue;
+            }
+            if (result == null) {
+                result = bits;
+            } else if (owned) {
+                for (int w = 0; w < words; w++) {
+                    result[w] &= bits[w];
+                }
+            } else {
+                long[] and = new long[words];
+                for (int w = 0; w < words; w++) {
+                    and[w] = result[w] & bits[w];
+                }
+                result = and;
+                owned = true;
+            }
+        }
+        return result;
+    }
+
+    private long[] ratingBits(int minRating) {
+        if (minRating <= 0) {
+            return null;
+        }
+        return minRating < ratingAtLeast.length ? ratingAtLeast[minRating] : new long[words];
+    }
+
+    private long[] priceBits(Double minPrice, Double maxPrice) {
+        if (minPrice == null && maxPrice == null) {
+            return null;
+        }
+        int from = minPrice == null ? 0 : firstAtLeast(minPrice, false);
+        int to = maxPrice == null ? n : firstAtLeast(maxPrice, true);
+        if (from >= to) {
+            return new long[words];
+        }
+        // Everything before 'to' in price order, minus everything before 'from'
+        int toBlock = to / priceBlock;
+        long[] bits = pricePrefix[toBlock].clone();
+        for (int i = toBlock * priceBlock; i < to; i++) {
+            set(bits, priceOrder[i]);
+        }
+        int fromBlock = from / priceBlock;
+        long[] below = pricePrefix[fromBlock];
+        for (int w = 0; w < words; w++) {
+            bits[w] &= ~below[w];
+        }
+        for (int i = fromBlock * priceBlock; i < from; i++) {
+            clear(bits, priceOrder[i]);
+        }
+        return bits;
+    }
+
+    // First index in price order whose price is >= price, or > price when strict
+    private int firstAtLeast(double price, boolean strict) {
+        int lo = 0;
+        int hi = sortedPrices.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (strict ? sortedPrices[mid] > price : sortedPrices[mid] >= price) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return lo;
+    }
+
+    private List<Map<String, Object>> values(Facet facet, int[] counts, Set<String> selected) {
+        List<Integer> ordinals = new ArrayList<>();
+        for (int ord = 0; ord < facet.size(); ord++) {
+            if (counts[ord] > 0 || selected.contains(facet.keys.get(ord))) {
+                ordinals.add(ord);
+            }
+        }
+        ordinals.sort((a, b) -> counts[a] != counts[b] ? Integer.compare(counts[b], counts[a])
+                : facet.labels.get(a).compareTo(facet.labels.get(b)));
+
+        List<Map<String, Object>> values = new ArrayList<>();
+        for (int ord : ordinals) {
+            boolean isSelected = selected.contains(facet.keys.get(ord));
+            // Selected values are always listed so they can be deselected
+            if (values.size() < MAX_VALUES || isSelected) {
+                Map<String, Object> value = new LinkedHashMap<>();
+                value.put("value", facet.labels.get(ord));
+                value.put("count", counts[ord]);
+                value.put("selected", isSelected);
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+    // Products rated at least r, for every r
+    private int[] ratingCounts(long[] selection) {
+        int[] atLeast = new int[ratingAtLeast.length];
+        if (selection == null) {
+            for (int r = 1; r < atLeast.length; r++) {
+                atLeast[r] = cardinality(ratingAtLeast[r]);
+            }
+        } else if ((long) cardinality(selection) * 4 < (long) atLeast.length * words) {
+            // Sparse: histogram the matches' ratings instead of one AND per threshold
+            for (int w = 0; w < words; w++) {
+                for (long word = selection[w]; word != 0; word &= word - 1) {
+                    int rating = columns.rating((w << 6) | Long.numberOfTrailingZeros(word));
+                    if (rating > 0) {
+                        atLeast[rating]++;
+                    }
+                }
+            }
+            for (int r = atLeast.length - 2; r > 0; r--) {
+                atLeast[r] += atLeast[r + 1];
+            }
+        } else {
+            for (int r = 1; r < atLeast.length; r++) {
+                atLeast[r] = andCardinality(selection, ratingAtLeast[r]);
+            }
+        }
+        return atLeast;
+    }
+
+    private List<Map<String, Object>> ratings(int[] atLeast) {
+        List<Map<String, Object>> ratings = new ArrayList<>();
+        for (int r = 1; r < atLeast.length; r++) {
+            Map<String, Object> rating = new LinkedHashMap<>();
+            rating.put("minRating", r);
+            rating.put("count", atLeast[r]);
+            ratings.add(rating);
+        }
+        return ratings;
+    }
+
+    private Map<String, Object> priceRange(long[] selection) {
+        int total = count(selection);
+        if (total == 0) {
+            return null;
+        }
+        if (selection == null) {
+            return range(sortedPrices[0], sortedPrices[n - 1]);
+        }
+        if ((long) total * 64 < n) {
+            // Sparse: visiting the matches is cheaper than searching the price order for them
+            double min = Double.MAX_VALUE;
+            double max = -Double.MAX_VALUE;
+            for (int w = 0; w < words; w++) {
+                for (long word = selection[w]; word != 0; word &= word - 1) {
+                    double price = columns.price((w << 6) | Long.numberOfTrailingZeros(word));
+                    min = Math.min(min, price);
+                    max = Math.max(max, price);
+                }
+            }
+            return range(min, max);
+        }
+        int lo = 0;
+        while (!get(selection, priceOrder[lo])) {
+            lo++;
+        }
+        int hi = n - 1;
+        while (!get(selection, priceOrder[hi])) {
+            hi--;
+        }
+        return range(sortedPrices[lo], sortedPrices[hi]);
+    }
+
+    private static Map<String, Object> range(double min, double max) {
+        Map<String, Object> range = new LinkedHashMap<>();
+        range.put("min", min);
+        range.put("max", max);
+        return range;
+    }
+
+    private int cell(int category, int brand, int rating) {
+        int c = category < 0 ? categories.size() : category;
+        int b = brand < 0 ? brands.size() : brand;
+        return (c * (brands.size() + 1) + b) * ratingAtLeast.length + rating;
+    }
+
+    private static void record(long startNanos) {
+        queries.increment();
+        queryMicros.record((System.nanoTime() - startNanos) / 1_000);
+    }
+
+    private static void set(long[] bits, int pos) {
+        bits[pos >>> 6] |= 1L << pos;
+    }
+
+    private static void clear(long[] bits, int pos) {
+        bits[pos >>> 6] &= ~(1L << pos);
+    }
+
+    private static boolean get(long[] bits, int pos) {
+        return (bits[pos >>> 6] & (1L << pos)) != 0;
+    }
+
+    private static int cardinality(long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    private static int andCardinality(long[] a, long[] b) {
+        int count = 0;
+        for (int w = 0; w < a.length; w++) {
+            count += Long.bitCount(a[w] & b[w]);
+        }
+        return count;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("products", n);
+        stats.put("categories", categories.size());
+        stats.put("brands", brands.size());
+        long bitsets = categories.size() + brands.size() + ratingAtLeast.length + pricePrefix.length;
+        stats.put("bitsetBytes", bitsets * words * 8);
+        stats.put("cubeCells", cube == null ? 0 : cube.length);
+        stats.put("lastBuildMs", lastBuildMs);
+        stats.put("queries", queries.sum());
+        stats.put("queryTime", queryMicros.snapshot());
+        return stats;
+    }
+
+    /** Values of one text facet, each with its bitset, plus each product's value for counting by walking. */
+    private static final class Facet {
+        final Map<String, Integer> ordinals = new HashMap<>();
+        final List<String> keys = new ArrayList<>();
+        final List<String> labels = new ArrayList<>();
+        final List<long[]> bits = new ArrayList<>();
+        // Facet ordinal per column dictionary code; spellings differing only in case share one
+        final int[] ordinalOfCode;
+        // Value ordinal per position, -1 for none
+        final int[] valueOf;
+        final int words;
+
+        Facet(List<String> dictionary, int n, int words) {
+            this.valueOf = new int[n];
+            this.words = words;
+            ordinalOfCode = new int[dictionary.size()];
+            // Dictionaries list values in first-seen order, so the first spelling seen is the one shown
+            for (int code = 0; code < ordinalOfCode.length; code++) {
+                String value = dictionary.get(code);
+                if (value.trim().isEmpty()) {
+                    ordinalOfCode[code] = -1;
+                    continue;
+                }
+                String key = ProductFilter.key(value);
+                Integer ord = ordinals.get(key);
+                if (ord == null) {
+                    ord = keys.size();
+                    ordinals.put(key, ord);
+                    keys.add(key);
+                    labels.add(value.trim());
+                    bits.add(new long[words]);
+                }
+                ordinalOfCode[code] = ord;
+            }
+        }
+
+        int size() {
+            return keys.size();
+        }
+
+        void add(int pos, int code) {
+            valueOf[pos] = code < 0 ? -1 : ordinalOfCode[code];
+            if (valueOf[pos] >= 0) {
+                set(bits.get(valueOf[pos]), pos);
+            }
+        }
+
+        /** OR of the selected values; null when nothing is selected. A single value's bitset is shared. */
+        long[] union(Set<String> selected) {
+            if (selected.isEmpty()) {
+                return null;
+            }
+            long[] result = null;
+            boolean owned = false;
+            for (String key : selected) {
+                Integer ord = ordinals.get(key);
+                if (ord == null) {
+                    continue;
+                }
+                long[] valueBits = bits.get(ord);
+                if (result == null) {
+                    result = valueBits;
+                } else {
+                    if (!owned) {
+                        result = result.clone();
+                        owned = true;
+                    }
+                    for (int w = 0; w < words; w++) {
+                        result[w] |= valueBits[w];
+                    }
+                }
+            }
+            return result == null ? new long[words] : result;
+        }
+
+        /** Which ordinals (plus the trailing "none" slot) the selection admits; null when nothing is selected. */
+        boolean[] mask(Set<String> selected) {
+            if (selected.isEmpty()) {
+                return null;
+            }
+            boolean[] mask = new boolean[size() + 1];
+            for (String key : selected) {
+                Integer ord = ordinals.get(key);
+                if (ord != null) {
+                    mask[ord] = true;
+                }
+            }
+            return mask;
+        }
+
+        int[] count(long[] selection) {
+            int[] counts = new int[size()];
+            if (selection == null) {
+                for (int ord = 0; ord < counts.length; ord++) {
+                    counts[ord] = cardinality(bits.get(ord));
+                }
+                return counts;
+            }
+            // Walking the matches beats one AND per value when the selection is sparse
+            if ((long) cardinality(selection) * 4 < (long) size() * words) {
+                for (int w = 0; w < words; w++) {
+                    for (long word = selection[w]; word != 0; word &= word - 1) {
+                        int ord = valueOf[(w << 6) | Long.numberOfTrailingZeros(word)];
+                        if (ord >= 0) {
+                            counts[ord]++;
+                        }
+                    }
+                }
+            } else {
+                for (int ord = 0; ord < counts.length; ord++) {
+                    counts[ord] = andCardinality(selection, bits.get(ord));
+                }
+            }
+            return counts;
+        }
+    }
+}
@@ -2,69 +2,119 @@ package com.ecommerce.dao;
 
 import com.ecommerce.config.DatabaseConfig;
 import com.ecommerce.model.Order;
-import com.ecommerce.model.CartItem;
+import com.ecommerce.model.OrderItem;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class OrderDAO {
-    public int createOrder(int userId, double totalAmount, String address, String paymentMethod) {
-        String sql = "INSERT INTO orders (user_id, total_amount, shipping_address, payment_method) VALUES (?, ?, ?, ?)";
+    /** Units sold per product id across all orders, for ranking products by popularity. */
+    public Map<Integer, Integer> unitsSoldByProduct() {
+        Map<Integer, Integer> unitsSold = new HashMap<>();
         try (Connection conn = DatabaseConfig.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            stmt.setInt(1, userId);
-            stmt.setDouble(2, totalAmount);
-            stmt.setString(3, address);
-            stmt.setString(4, paymentMethod);
-            stmt.executeUpdate();
-
-            ResultSet rs = stmt.getGeneratedKeys();
-            if (rs.next()) {
-                return rs.getInt(1);
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(
+                        "SELECT product_id, SUM(quantity) AS units FROM order_items GROUP BY product_id")) {
+            while (rs.next()) {
+                unitsSold.put(rs.getInt("product_id"), rs.getInt("units"));
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
-        return -1;
+        return unitsSold;
     }
 
-    public void createOrderItems(int orderId, List<CartItem> items) {
-        String sql = "INSERT INTO order_items (order_id, product_id, quantity, price) VALUES (?, ?, ?, ?)";
-        try (Connection conn = DatabaseConfig.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
-            for (CartItem item : items) {
-                stmt.setInt(1, orderId);
-                stmt.setInt(2, item.getProductId());
-                stmt.setInt(3, item.getQuantity());
-                stmt.setDouble(4, item.getProduct().getPrice());
-                stmt.addBatch();
+    /**
+     * One page of the user's orders, newest first, served by the
+     * (user_id, created_at, id) index. With expandItems the items for the whole
+     * page are loaded in one extra query.
+     */
+    public OrderPage findPage(int userId, OrderPageRequest request, boolean expandItems) throws SQLException {
+        List<Order> orders = new ArrayList<>();
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            try (PreparedStatement stmt = conn.prepareStatement(pageSql(request.hasCursor()))) {
+                int p = 1;
+                stmt.setInt(p++, userId);
+                if (request.hasCursor()) {
+                    stmt.setTimestamp(p++, request.getAfterCreatedAt());
+                    stmt.setTimestamp(p++, request.getAfterCreatedAt());
+                    stmt.setInt(p++, request.getAfterId());
+                }
+                // One extra row tells us whether there is a next page
+                stmt.setInt(p, request.getLimit() + 1);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    orders.add(mapResultSetToOrder(rs));
+                }
             }
-            stmt.executeBatch();
-        } catch (SQLException e) {
-            e.printStackTrace();
+
+            String nextCursor = null;
+            if (orders.size() > request.getLimit()) {
+                orders.remove(orders.size() - 1);
+                Order last = orders.get(orders.size() - 1);
+                nextCursor = OrderPageRequest.cursorAfter(last.getCreatedAt(), last.getId());
+            }
+            if (expandItems && !orders.isEmpty()) {
+                loadItems(conn, orders);
+            }
+            return new OrderPage(orders, nextCursor);
         }
     }
 
-    public List<Order> findByUserId(int userId) {
-        List<Order> orders = new ArrayList<>();
-        try (Connection conn = DatabaseConfig.getConnection();
-                PreparedStatement stmt = conn
-                        .prepareStatement("SELECT * FROM orders WHERE user_id = ? ORDER BY created_at DESC")) {
-            stmt.setInt(1, userId);
+    static String pageSql(boolean hasCursor) {
+        return "SELECT id, user_id, total_amount, status, shipping_address, payment_method, created_at "
+                + "FROM orders WHERE user_id = ? "
+                + (hasCursor ? "AND (created_at < ? OR (created_at = ? AND id < ?)) " : "")
+                + "ORDER BY created_at DESC, id DESC LIMIT ?";
+    }
+
+    static String itemsSql(int orderCount) {
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < orderCount; i++) {
+            placeholders.append(i == 0 ? "?" : ", ?");
+        }
+        return "SELECT oi.id, oi.order_id, oi.product_id, oi.quantity, oi.price, p.name, p.image "
+                + "FROM order_items oi JOIN products p ON p.id = oi.product_id "
+                + "WHERE oi.order_id IN (" + placeholders + ") ORDER BY oi.order_id, oi.id";
+    }
+
+    private void loadItems(Connection conn, List<Order> orders) throws SQLException {
+        Map<Integer, Order> byId = new HashMap<>();
+        for (Order order : orders) {
+            order.setItems(new ArrayList<>());
+            byId.put(order.getId(), order);
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(itemsSql(orders.size()))) {
+            int p = 1;
+            for (Order order : orders) {
+                stmt.setInt(p++, order.getId());
+            }
             ResultSet rs = stmt.executeQuery();
             while (rs.next()) {
-                Order order = new Order();
-                order.setId(rs.getInt("id"));
-                order.setUserId(rs.getInt("user_id"));
-                order.setTotalAmount(rs.getDouble("total_amount"));
-                order.setStatus(rs.getString("status"));
-                order.setShippingAddress(rs.getString("shipping_address"));
-                order.setPaymentMethod(rs.getString("payment_method"));
-                orders.add(order);
+                OrderItem item = new OrderItem();
+                item.setId(rs.getInt("id"));
+                item.setOrderId(rs.getInt("order_id"));
+                item.setProductId(rs.getInt("product_id"));
+                item.setQuantity(rs.getInt("quantity"));
+                item.setPrice(rs.getDouble("price"));
+                item.setName(rs.getString("name"));
+                item.setImage(rs.getString("image"));
+                byId.get(item.getOrderId()).getItems().add(item);
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
-        return orders;
+    }
+
+    private Order mapResultSetToOrder(ResultSet rs) throws SQLException {
+        Order order = new Order();
+        order.setId(rs.getInt("id"));
+        order.setUserId(rs.getInt("user_id"));
+        order.setTotalAmount(rs.getDouble("total_amount"));
+        order.setStatus(rs.getString("status"));
+        order.setShippingAddress(rs.getString("shipping_address"));
+        order.setPaymentMethod(rs.getString("payment_method"));
+        order.setCreatedAt(rs.getTimestamp("created_at"));
+        return order;
     }
 }
@@ -0,0 +1,24 @@
+package com.ecommerce.dao;
+
+import com.ecommerce.model.Order;
+
+import java.util.List;
+
+/** One page of orders plus the cursor for the next page (null on the last page). */
+public class OrderPage {
+    private final List<Order> orders;
+    private final String nextCursor;
+
+    public OrderPage(List<Order> orders, String nextCursor) {
+        this.orders = orders;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Order> getOrders() {
+        return orders;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,81 @@
+package com.ecommerce.dao;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+
+/**
+ * Keyset page over a user's orders, newest first. The cursor names the
+ * (created_at, id) of the last order on the previous page; created_at is kept
+ * to the nanosecond so orders placed within the same millisecond are not skipped.
+ */
+public class OrderPageRequest {
+    public static final int DEFAULT_LIMIT = 20;
+    public static final int MAX_LIMIT = 100;
+
+    private final int limit;
+    private final Timestamp afterCreatedAt;
+    private final int afterId;
+
+    public OrderPageRequest(int limit) {
+        this(limit, null, 0);
+    }
+
+    private OrderPageRequest(int limit, Timestamp afterCreatedAt, int afterId) {
+        this.limit = limit;
+        this.afterCreatedAt = afterCreatedAt;
+        this.afterId = afterId;
+    }
+
+    /** Throws IllegalArgumentException for malformed values; both parameters may be null. */
+    public static OrderPageRequest parse(String limitParam, String after) {
+        int limit = DEFAULT_LIMIT;
+        if (limitParam != null && !limitParam.isEmpty()) {
+            try {
+                limit = Integer.parseInt(limitParam);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("limit must be a number");
+            }
+            if (limit < 1 || limit > MAX_LIMIT) {
+                throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+            }
+        }
+
+        if (after == null || after.isEmpty()) {
+            return new OrderPageRequest(limit);
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(after), StandardCharsets.UTF_8).split(":");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            Timestamp createdAt = new Timestamp(Long.parseLong(parts[0]));
+            createdAt.setNanos(Integer.parseInt(parts[1]));
+            return new OrderPageRequest(limit, createdAt, Integer.parseInt(parts[2]));
+        } catch (IllegalArgumentException e) {
+            // Also covers NumberFormatException and bad base64
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+    }
+
+    public static String cursorAfter(Timestamp createdAt, int id) {
+        String raw = createdAt.getTime() + ":" + createdAt.getNanos() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public boolean hasCursor() {
+        return afterCreatedAt != null;
+    }
+
+    public Timestamp getAfterCreatedAt() {
+        return afterCreatedAt;
+    }
+
+    public int getAfterId() {
+        return afterId;
+    }
+}
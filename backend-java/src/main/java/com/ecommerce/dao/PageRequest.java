@@ -0,0 +1,127 @@
+package com.ecommerce.dao;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Keyset page request: a sort order, a page size and an optional opaque cursor
+ * naming the (sort key, id) of the last row of the previous page.
+ */
+public class PageRequest {
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 500;
+
+    private final ProductSort sort;
+    private final boolean descending;
+    private final int limit;
+    private final boolean hasCursor;
+    private final double afterKey;
+    private final int afterId;
+
+    public PageRequest(ProductSort sort, boolean descending, int limit) {
+        this(sort, descending, limit, false, 0, 0);
+    }
+
+    private PageRequest(ProductSort sort, boolean descending, int limit, boolean hasCursor, double afterKey,
+            int afterId) {
+        this.sort = sort;
+        this.descending = descending;
+        this.limit = limit;
+        this.hasCursor = hasCursor;
+        this.afterKey = afterKey;
+        this.afterId = afterId;
+    }
+
+    /**
+     * Builds a request from raw query parameters, any of which may be null.
+     * Throws IllegalArgumentException for malformed values.
+     */
+    public static PageRequest parse(String sortParam, String orderParam, String limitParam, String after,
+            ProductSort defaultSort) {
+        ProductSort sort = sortParam == null || sortParam.isEmpty() ? defaultSort : ProductSort.fromParam(sortParam);
+        boolean descending;
+        if (orderParam == null || orderParam.isEmpty()) {
+            descending = sort == ProductSort.RELEVANCE;
+        } else if (sort == ProductSort.RELEVANCE && !"desc".equalsIgnoreCase(orderParam)) {
+            throw new IllegalArgumentException("relevance is always sorted desc");
+        } else if ("asc".equalsIgnoreCase(orderParam) || "desc".equalsIgnoreCase(orderParam)) {
+            descending = "desc".equalsIgnoreCase(orderParam);
+        } else {
+            throw new IllegalArgumentException("order must be asc or desc");
+        }
+
+        int limit = DEFAULT_LIMIT;
+        if (limitParam != null && !limitParam.isEmpty()) {
+            try {
+                limit = Integer.parseInt(limitParam);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("limit must be a number");
+            }
+            if (limit < 1 || limit > MAX_LIMIT) {
+                throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+            }
+        }
+
+        if (after == null || after.isEmpty()) {
+            return new PageRequest(sort, descending, limit);
+        }
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(after), StandardCharsets.UTF_8).split(":");
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        if (parts.length != 4 || !parts[0].equals(sort.getParam()) || !parts[1].equals(descending ? "d" : "a")) {
+            throw new IllegalArgumentException("Cursor does not match the requested sort order");
+        }
+        try {
+            return new PageRequest(sort, descending, limit, true, Double.parseDouble(parts[2]),
+                    Integer.parseInt(parts[3]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+    }
+
+    public String cursorAfter(double key, int id) {
+        String raw = sort.getParam() + ":" + (descending ? "d" : "a") + ":" + key + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Orders (key, id) pairs the way this request pages through them. */
+    public int compare(double keyA, int idA, double keyB, int idB) {
+        int byKey = Double.compare(keyA, keyB);
+        if (byKey != 0) {
+            return descending ? -byKey : byKey;
+        }
+        return Integer.compare(idA, idB);
+    }
+
+    /** True if the row belongs on a page after the cursor (always true without a cursor). */
+    public boolean isAfterCursor(double key, int id) {
+        return !hasCursor || compare(key, id, afterKey, afterId) > 0;
+    }
+
+    public ProductSort getSort() {
+        return sort;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public boolean hasCursor() {
+        return hasCursor;
+    }
+
+    public double getAfterKey() {
+        return afterKey;
+    }
+
+    public int getAfterId() {
+        return afterId;
+    }
+}
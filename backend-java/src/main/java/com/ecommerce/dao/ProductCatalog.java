@@ -0,0 +1,286 @@
+package com.ecommerce.dao;
+
+import com.ecommerce.metrics.Histogram;
+import com.ecommerce.model.Product;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory, immutable snapshot of the products table. Only the first load
+ * happens on a request thread; after that a daemon thread reloads the catalog
+ * once it is older than catalog.maxAgeMs or has been invalidated, checking
+ * every catalog.refreshCheckMs, and swaps the complete new snapshot in
+ * atomically. Stock changes from checkouts are coalesced into at most one
+ * reload per catalog.stockRefreshMs. The version only moves forward when the loaded rows actually
+ * differ from the current snapshot, so it can be used as a cache key by callers.
+ *
+ * Rows are held column-wise in ProductColumns; products handed out are built
+ * on demand per call, so callers may keep them.
+ */
+public class ProductCatalog {
+    private static final ProductCatalog INSTANCE = new ProductCatalog(base -> new ProductDAO().queryAll(base),
+            Long.getLong("catalog.maxAgeMs", 60_000L), Long.getLong("catalog.refreshCheckMs", 1_000L),
+            Long.getLong("catalog.stockRefreshMs", 15_000L));
+
+    interface Loader {
+        /** Loads the table; base is the current columns, whose off-heap text may be reused, or null. */
+        ProductColumns load(ProductColumns base) throws SQLException;
+    }
+
+    /**
+     * Notified on the refreshing thread whenever a snapshot with a new version is
+     * loaded, before it is swapped in; readers see the previous snapshot until every
+     * listener has returned.
+     */
+    public interface Listener {
+        void onRefresh(Snapshot previous, Snapshot next);
+    }
+
+    private final Loader loader;
+    private final long maxAgeMs;
+    private final long refreshCheckMs;
+    private final long stockRefreshMs;
+    private final AtomicReference<Snapshot> current = new AtomicReference<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private volatile boolean invalidated;
+    private volatile boolean stockChanged;
+    private ScheduledExecutorService refresher;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder refreshFailures = new LongAdder();
+    private final Histogram refreshTimeMicros = new Histogram("us");
+
+    ProductCatalog(Loader loader, long maxAgeMs, long refreshCheckMs, long stockRefreshMs) {
+        this.loader = loader;
+        this.maxAgeMs = maxAgeMs;
+        this.refreshCheckMs = refreshCheckMs;
+        this.stockRefreshMs = stockRefreshMs;
+    }
+
+    public static ProductCatalog getInstance() {
+        return INSTANCE;
+    }
+
+    public Snapshot snapshot() {
+        Snapshot snapshot = current.get();
+        if (snapshot != null) {
+            hits.increment();
+            return snapshot;
+        }
+        misses.increment();
+        refreshLock.lock();
+        try {
+            Snapshot latest = current.get();
+            if (latest != null) {
+                return latest;
+            }
+            latest = refreshLocked();
+            startRefresher();
+            return latest;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Marks the snapshot stale; the refresher reloads it within catalog.refreshCheckMs.
+     * Invalidations arriving during a reload are picked up by the next one.
+     */
+    public void invalidate() {
+        invalidated = true;
+    }
+
+    /**
+     * Notes that stock changed in the database. Unlike invalidate, the reload waits
+     * until the snapshot is catalog.stockRefreshMs old, so steady checkout traffic
+     * moves the version at that rate rather than once per order.
+     */
+    public void stockChanged() {
+        stockChanged = true;
+    }
+
+    /** Reloads the catalog now and returns the resulting snapshot. */
+    public Snapshot refresh() {
+        refreshLock.lock();
+        try {
+            return refreshLocked();
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /** Registers a listener and immediately replays the current snapshot to it, if any. */
+    public void addListener(Listener listener) {
+        refreshLock.lock();
+        try {
+            listeners.add(listener);
+            Snapshot snapshot = current.get();
+            if (snapshot != null) {
+                listener.onRefresh(null, snapshot);
+            }
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    public long getVersion() {
+        Snapshot snapshot = current.get();
+        return snapshot == null ? 0 : snapshot.version;
+    }
+
+    /** Stops the background refresher; readers keep the last snapshot. */
+    public synchronized void stop() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+            refresher = null;
+        }
+    }
+
+    private synchronized void startRefresher() {
+        if (refresher != null || refreshCheckMs <= 0) {
+            return;
+        }
+        refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "catalog-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+        refresher.scheduleWithFixedDelay(() -> {
+            try {
+                Snapshot snapshot = current.get();
+                long age = snapshot == null ? 0 : System.currentTimeMillis() - snapshot.loadedAt;
+                if (snapshot != null && (invalidated || stockChanged && age > stockRefreshMs
+                        || maxAgeMs > 0 && age > maxAgeMs)) {
+                    refresh();
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, refreshCheckMs, refreshCheckMs, TimeUnit.MILLISECONDS);
+    }
+
+    private Snapshot refreshLocked() {
+        Snapshot previous = current.get();
+        long start = System.nanoTime();
+        boolean wasInvalidated = invalidated;
+        boolean hadStockChanges = stockChanged;
+        invalidated = false;
+        stockChanged = false;
+        try {
+            ProductColumns columns = loader.load(previous == null ? null : previous.columns);
+            Snapshot next;
+            if (previous != null && previous.columns.sameRows(columns)) {
+                // Keeping the previous columns keeps their sort orders; the new copy is dropped
+                next = new Snapshot(previous.version, previous.columns);
+            } else {
+                next = new Snapshot(previous == null ? 1 : previous.version + 1, columns);
+            }
+            // Indexes derived from the snapshot catch up before anyone can read its version
+            if (previous == null || previous.version != next.version) {
+                for (Listener listener : listeners) {
+                    listener.onRefresh(previous, next);
+                }
+            }
+            current.set(next);
+            refreshes.increment();
+            return next;
+        } catch (SQLException | RuntimeException e) {
+            refreshFailures.increment();
+            invalidated = wasInvalidated;
+            stockChanged = hadStockChanges;
+            e.printStackTrace();
+            if (previous != null) {
+                return previous;
+            }
+            return new Snapshot(0, ProductColumns.EMPTY);
+        } finally {
+            refreshTimeMicros.record((System.nanoTime() - start) / 1_000);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Snapshot snapshot = current.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("version", snapshot == null ? 0 : snapshot.version);
+        stats.put("size", snapshot == null ? 0 : snapshot.columns.size());
+        stats.put("heapBytes", snapshot == null ? 0 : snapshot.columns.heapBytes());
+        stats.put("offHeapBytes", snapshot == null ? 0 : snapshot.columns.offHeapBytes());
+        stats.put("ageMs", snapshot == null ? 0 : System.currentTimeMillis() - snapshot.loadedAt);
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("refreshes", refreshes.sum());
+        stats.put("refreshFailures", refreshFailures.sum());
+        stats.put("refreshTime", refreshTimeMicros.snapshot());
+        return stats;
+    }
+
+    public static class Snapshot {
+        private final long version;
+        private final long loadedAt = System.currentTimeMillis();
+        private final ProductColumns columns;
+
+        private Snapshot(long version, ProductColumns columns) {
+            this.version = version;
+            this.columns = columns;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public long getLoadedAt() {
+            return loadedAt;
+        }
+
+        public ProductColumns getColumns() {
+            return columns;
+        }
+
+        /** Read-only view in id order; each product is materialized as it is read. */
+        public List<Product> getProducts() {
+            return columns.asList();
+        }
+
+        public Product get(int id) {
+            int pos = columns.positionOf(id);
+            return pos < 0 ? null : columns.product(pos);
+        }
+
+        /** Keyset page over the whole catalog: O(log n) to find the cursor, then O(limit). */
+        public ProductPage page(PageRequest request) {
+            ProductSort sort = request.getSort();
+            int[] order = columns.order(sort, request.isDescending());
+            // First position that sorts after the cursor
+            int lo = 0;
+            int hi = order.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (request.isAfterCursor(columns.key(sort, order[mid]), columns.id(order[mid]))) {
+                    hi = mid;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+            int end = Math.min(order.length, lo + request.getLimit());
+            List<Product> page = Collections.unmodifiableList(columns.products(order, lo, end));
+            String next = end < order.length && end > lo
+                    ? request.cursorAfter(columns.key(sort, order[end - 1]), columns.id(order[end - 1]))
+                    : null;
+            return new ProductPage(page, next);
+        }
+    }
+}
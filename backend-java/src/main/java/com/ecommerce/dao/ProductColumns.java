@@ -0,0 +1,530 @@
+package com.ecommerce.dao;
+
+import com.ecommerce.model.Product;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Column-oriented, immutable copy of the products table. Rows are positions in
+ * id order. Numbers live in primitive arrays, category and brand are stored as
+ * codes into a dictionary of their distinct values, and name, description and
+ * image are UTF-8 bytes in off-heap arena chunks. Filtering and sorting read
+ * the columns directly; a Product object is only materialized for rows that
+ * are actually returned.
+ *
+ * The heap cost is 44 bytes per product plus the dictionaries, and 4 bytes
+ * more per sort order built, against about 420 bytes for a Product with its
+ * strings and Timestamp. Measured after GC with a synthetic catalog (names ~20
+ * bytes, descriptions ~70 bytes, 20 categories, 50 brands):
+ *
+ * <pre>
+ *   SKUs   List&lt;Product&gt; heap   columns heap   columns off-heap
+ *   1M     402 MB               42 MB          106 MB
+ *   10M    ~4 GB (est.)         428 MB         1090 MB
+ * </pre>
+ *
+ * The arena counts against -XX:MaxDirectMemorySize, which defaults to the
+ * maximum heap size, and is freed when the columns are garbage collected. A
+ * reload built on the current columns keeps using their arena as long as no
+ * name, description or image changed, appending only new rows; any text change
+ * builds a whole new arena while the old one is still live. Allow at least
+ * three arenas, about 320 MB at 1M SKUs: the current one, the one being built
+ * and the previous one awaiting collection.
+ */
+public class ProductColumns {
+    public static final ProductColumns EMPTY = new Builder().build();
+
+    // Strings are laid out per row as [int length][bytes] for name, description and image, -1 for null
+    private static final int MAX_CHUNK_BYTES = Integer.getInteger("catalog.arenaChunkBytes", 64 << 20);
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private final int size;
+    private final int[] ids;
+    private final double[] prices;
+    private final int[] stock;
+    private final int[] ratings;
+    private final long[] createdAt;
+    private final String[] categoryValues;
+    private final int[] categoryCodes;
+    private final String[] brandValues;
+    private final int[] brandCodes;
+    private final ByteBuffer[] arena;
+    // Chunk index in the high 32 bits, offset within the chunk in the low 32
+    private final long[] textOffsets;
+    private final byte[] digest;
+    // Positions per sort order, built on first use
+    private final Map<String, int[]> orders = new ConcurrentHashMap<>();
+
+    private ProductColumns(Builder b) {
+        size = b.size;
+        ids = Arrays.copyOf(b.ids, size);
+        prices = Arrays.copyOf(b.prices, size);
+        stock = Arrays.copyOf(b.stock, size);
+        ratings = Arrays.copyOf(b.ratings, size);
+        createdAt = Arrays.copyOf(b.createdAt, size);
+        categoryValues = b.categories.values.toArray(new String[0]);
+        categoryCodes = Arrays.copyOf(b.categoryCodes, size);
+        brandValues = b.brands.values.toArray(new String[0]);
+        brandCodes = Arrays.copyOf(b.brandCodes, size);
+        textOffsets = Arrays.copyOf(b.textOffsets, size);
+        arena = b.sealArena();
+        digest = b.digest.digest();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** True when both hold the same rows, compared by a SHA-256 digest of every column. */
+    public boolean sameRows(ProductColumns other) {
+        return size == other.size && MessageDigest.isEqual(digest, other.digest);
+    }
+
+    /** Position of the product with this id, or -1. */
+    public int positionOf(int id) {
+        int pos = Arrays.binarySearch(ids, 0, size, id);
+        return pos >= 0 ? pos : -1;
+    }
+
+    public int id(int pos) {
+        return ids[pos];
+    }
+
+    public double price(int pos) {
+        return prices[pos];
+    }
+
+    public int stock(int pos) {
+        return stock[pos];
+    }
+
+    public int rating(int pos) {
+        return ratings[pos];
+    }
+
+    public String category(int pos) {
+        int code = categoryCodes[pos];
+        return code < 0 ? null : categoryValues[code];
+    }
+
+    public String brand(int pos) {
+        int code = brandCodes[pos];
+        return code < 0 ? null : brandValues[code];
+    }
+
+    /** Dictionary code of the row's category, -1 for none. */
+    public int categoryCode(int pos) {
+        return categoryCodes[pos];
+    }
+
+    public int brandCode(int pos) {
+        return brandCodes[pos];
+    }
+
+    /** Distinct categories, indexed by code. */
+    public List<String> categoryValues() {
+        return Arrays.asList(categoryValues);
+    }
+
+    public List<String> brandValues() {
+        return Arrays.asList(brandValues);
+    }
+
+    /** The row's sort key, matching ProductSort.key on the materialized product. */
+    public double key(ProductSort sort, int pos) {
+        switch (sort) {
+            case PRICE:
+                return prices[pos];
+            case RATING:
+                return ratings[pos];
+            case CREATED_AT:
+                return createdAt[pos] == NO_TIMESTAMP ? 0 : createdAt[pos];
+            default:
+                return ids[pos];
+        }
+    }
+
+    /** Builds a new Product for the row; callers may keep or modify it. */
+    public Product product(int pos) {
+        Product p = new Product();
+        p.setId(ids[pos]);
+        p.setPrice(prices[pos]);
+        p.setStock(stock[pos]);
+        p.setRating(ratings[pos]);
+        p.setCategory(category(pos));
+        p.setBrand(brand(pos));
+        p.setCreatedAt(createdAt[pos] == NO_TIMESTAMP ? null : new Timestamp(createdAt[pos]));
+        long offset = textOffsets[pos];
+        // A private view keeps concurrent readers from sharing a buffer position
+        ByteBuffer chunk = arena[(int) (offset >>> 32)].duplicate();
+        chunk.position((int) offset);
+        p.setName(readString(chunk));
+        p.setDescription(readString(chunk));
+        p.setImage(readString(chunk));
+        return p;
+    }
+
+    public List<Product> products(int[] positions, int from, int to) {
+        List<Product> products = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            products.add(product(positions[i]));
+        }
+        return products;
+    }
+
+    /** Read-only list view in id order that materializes each product as it is read. */
+    public List<Product> asList() {
+        return new ProductList();
+    }
+
+    /**
+     * Positions in the given sort order, ties by id, shared and read-only. Sorts
+     * primitive longs of (rank of key, position) rather than boxed positions, which
+     * keeps a 1M product build well under a second.
+     */
+    public int[] order(ProductSort sort, boolean descending) {
+        String key = sort.getParam() + (descending ? ":d" : ":a");
+        return orders.computeIfAbsent(key, k -> {
+            double[] keys = new double[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = key(sort, i);
+            }
+            double[] sorted = keys.clone();
+            Arrays.sort(sorted);
+            int m = 0;
+            for (int i = 0; i < size; i++) {
+                if (m == 0 || sorted[i] != sorted[m - 1]) {
+                    sorted[m++] = sorted[i];
+                }
+            }
+            double[] distinct = Arrays.copyOf(sorted, m);
+            long[] packed = new long[size];
+            for (int i = 0; i < size; i++) {
+                long rank = Arrays.binarySearch(distinct, keys[i]);
+                if (descending) {
+                    rank = m - 1 - rank;
+                }
+                // Positions follow ids, so ordering by position breaks ties by id
+                packed[i] = rank << 32 | i;
+            }
+            Arrays.sort(packed);
+            int[] order = new int[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = (int) packed[i];
+            }
+            return order;
+        });
+    }
+
+    /** Heap held by the columns, dictionaries and sort orders; an estimate for the strings. */
+    public long heapBytes() {
+        long bytes = (long) size * (4 + 8 + 4 + 4 + 8 + 4 + 4 + 8);
+        for (String value : categoryValues) {
+            bytes += 56 + value.length();
+        }
+        for (String value : brandValues) {
+            bytes += 56 + value.length();
+        }
+        for (int[] order : orders.values()) {
+            bytes += 4L * order.length;
+        }
+        return bytes;
+    }
+
+    public long offHeapBytes() {
+        long bytes = 0;
+        for (ByteBuffer chunk : arena) {
+            bytes += chunk.capacity();
+        }
+        return bytes;
+    }
+
+    // Whether the row's text is exactly these UTF-8 strings, compared in place
+    private boolean sameText(int pos, byte[] name, byte[] description, byte[] image) {
+        ByteBuffer chunk = arena[(int) (textOffsets[pos] >>> 32)];
+        int at = match(chunk, (int) textOffsets[pos], name);
+        at = at < 0 ? at : match(chunk, at, description);
+        return (at < 0 ? at : match(chunk, at, image)) >= 0;
+    }
+
+    // Offset after the string at `at` if it equals bytes, else -1
+    private static int match(ByteBuffer chunk, int at, byte[] bytes) {
+        int length = chunk.getInt(at);
+        if (bytes == null || length != bytes.length) {
+            return bytes == null && length == -1 ? at + 4 : -1;
+        }
+        for (int i = 0; i < length; i++) {
+            if (chunk.get(at + 4 + i) != bytes[i]) {
+                return -1;
+            }
+        }
+        return at + 4 + length;
+    }
+
+    private static String readString(ByteBuffer chunk) {
+        int length = chunk.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        chunk.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private final class ProductList extends AbstractList<Product> implements RandomAccess {
+        @Override
+        public Product get(int index) {
+            Objects.checkIndex(index, size);
+            return product(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /** Distinct values in first-seen order, each with a small integer code. */
+    private static final class Dictionary {
+        final Map<String, Integer> codes = new HashMap<>();
+        final List<String> values = new ArrayList<>();
+
+        int encode(String value) {
+            if (value == null) {
+                return -1;
+            }
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+            }
+            return code;
+        }
+    }
+
+    /**
+     * Appends rows in ascending id order. Strings go straight into the arena, so
+     * loading never holds more than one row's objects at a time.
+     */
+    public static class Builder {
+        // While set, rows added so far match the base row for row and point into this, its arena
+        private final ProductColumns base;
+        private ByteBuffer[] shared;
+        private int size;
+        private int[] ids = new int[16];
+        private double[] prices = new double[16];
+        private int[] stock = new int[16];
+        private int[] ratings = new int[16];
+        private long[] createdAt = new long[16];
+        private int[] categoryCodes = new int[16];
+        private int[] brandCodes = new int[16];
+        private long[] textOffsets = new long[16];
+        private final Dictionary categories = new Dictionary();
+        private final Dictionary brands = new Dictionary();
+        private final List<ByteBuffer> chunks = new ArrayList<>();
+        private ByteBuffer chunk;
+        private final MessageDigest digest = sha256();
+        private final ByteBuffer digestRow = ByteBuffer.allocate(36);
+
+        public Builder() {
+            this(null);
+        }
+
+        /** Builder that reuses base's arena for the rows that match it; base may be null. */
+        public Builder(ProductColumns base) {
+            this.base = base;
+            this.shared = base == null ? null : base.arena;
+        }
+
+        public Builder add(Product p) {
+            return add(p.getId(), p.getName(), p.getDescription(), p.getPrice(), p.getImage(), p.getBrand(),
+                    p.getCategory(), p.getStock(), p.getRating(), p.getCreatedAt());
+        }
+
+        public Builder add(int id, String name, String description, double price, String image, String brand,
+                String category, int stockLevel, int rating, Timestamp created) {
+            if (size > 0 && id <= ids[size - 1]) {
+                throw new IllegalArgumentException("Products must be added in ascending id order");
+            }
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                prices = Arrays.copyOf(prices, capacity);
+                stock = Arrays.copyOf(stock, capacity);
+                ratings = Arrays.copyOf(ratings, capacity);
+                createdAt = Arrays.copyOf(createdAt, capacity);
+                categoryCodes = Arrays.copyOf(categoryCodes, capacity);
+                brandCodes = Arrays.copyOf(brandCodes, capacity);
+                textOffsets = Arrays.copyOf(textOffsets, capacity);
+            }
+            ids[size] = id;
+            prices[size] = price;
+            stock[size] = stockLevel;
+            ratings[size] = rating;
+            createdAt[size] = created == null ? NO_TIMESTAMP : created.getTime();
+            categoryCodes[size] = encode(categories, category);
+            brandCodes[size] = encode(brands, brand);
+            byte[] nameBytes = bytes(name);
+            byte[] descriptionBytes = bytes(description);
+            byte[] imageBytes = bytes(image);
+            if (shared != null && size < base.size && (base.ids[size] != id
+                    || !base.sameText(size, nameBytes, descriptionBytes, imageBytes))) {
+                unshare();
+            }
+            if (shared != null && size < base.size) {
+                textOffsets[size] = base.textOffsets[size];
+                digest(nameBytes);
+                digest(descriptionBytes);
+                digest(imageBytes);
+            } else {
+                textOffsets[size] = writeText(nameBytes, descriptionBytes, imageBytes);
+            }
+            digestRow.clear();
+            digestRow.putInt(id).putDouble(price).putInt(stockLevel).putInt(rating).putLong(createdAt[size])
+                    .putInt(categoryCodes[size]).putInt(brandCodes[size]);
+            digest.update(digestRow.array(), 0, digestRow.position());
+            size++;
+            return this;
+        }
+
+        public ProductColumns build() {
+            if (shared != null && size < base.size / 2) {
+                // Most of the base rows are gone; don't keep their text alive
+                unshare();
+            }
+            return new ProductColumns(this);
+        }
+
+        private long writeText(byte[] nameBytes, byte[] descriptionBytes, byte[] imageBytes) {
+            long offset = reserve(12 + length(nameBytes) + length(descriptionBytes) + length(imageBytes));
+            put(nameBytes);
+            put(descriptionBytes);
+            put(imageBytes);
+            return offset;
+        }
+
+        // Copies the text of the rows added so far out of the base arena, which this builder stops using
+        private void unshare() {
+            ByteBuffer[] source = shared;
+            shared = null;
+            for (int pos = 0; pos < size; pos++) {
+                ByteBuffer text = source[(int) (textOffsets[pos] >>> 32)].duplicate();
+                int start = (int) textOffsets[pos];
+                int end = start;
+                for (int field = 0; field < 3; field++) {
+                    end += 4 + Math.max(0, text.getInt(end));
+                }
+                text.limit(end).position(start);
+                textOffsets[pos] = reserve(end - start);
+                chunk.put(text);
+            }
+        }
+
+        // Room for length more bytes in the current chunk; returns the offset they will start at
+        private long reserve(int length) {
+            if (chunk == null) {
+                chunk = ByteBuffer.allocateDirect(Math.max(4096, length));
+            }
+            if (chunk.remaining() < length) {
+                if (chunk.capacity() < MAX_CHUNK_BYTES) {
+                    // Small catalogs double a single chunk instead of reserving a full one
+                    int capacity = (int) Math.min(MAX_CHUNK_BYTES, Math.max(2L * chunk.capacity(),
+                            (long) chunk.position() + length));
+                    chunk = copy(chunk, Math.max(capacity, chunk.position() + length));
+                }
+                if (chunk.remaining() < length) {
+                    chunks.add(chunk);
+                    chunk = ByteBuffer.allocateDirect(Math.max(MAX_CHUNK_BYTES, length));
+                }
+            }
+            // Chunks of a shared arena come first
+            int first = shared == null ? 0 : shared.length;
+            return (long) (first + chunks.size()) << 32 | chunk.position();
+        }
+
+        private void put(byte[] bytes) {
+            if (bytes == null) {
+                chunk.putInt(-1);
+            } else {
+                chunk.putInt(bytes.length);
+                chunk.put(bytes);
+            }
+            digest(bytes);
+        }
+
+        // Codes follow first appearance, so the digest takes each value's text once, when it gets its code
+        private int encode(Dictionary dictionary, String value) {
+            int known = dictionary.values.size();
+            int code = dictionary.encode(value);
+            if (code == known) {
+                digest(bytes(value));
+            }
+            return code;
+        }
+
+        // Length-prefixed so adjacent strings cannot shift bytes between each other
+        private void digest(byte[] bytes) {
+            digestRow.clear();
+            digestRow.putInt(bytes == null ? -1 : bytes.length);
+            digest.update(digestRow.array(), 0, 4);
+            if (bytes != null) {
+                digest.update(bytes);
+            }
+        }
+
+        private static MessageDigest sha256() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        // The last chunk is trimmed to what was written; readers only ever use absolute offsets
+        private ByteBuffer[] sealArena() {
+            List<ByteBuffer> sealed = new ArrayList<>();
+            if (shared != null) {
+                sealed.addAll(Arrays.asList(shared));
+            }
+            sealed.addAll(chunks);
+            if (chunk != null) {
+                sealed.add(chunk.position() < chunk.capacity() ? copy(chunk, chunk.position()) : chunk);
+            }
+            ByteBuffer[] result = new ByteBuffer[sealed.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = sealed.get(i).asReadOnlyBuffer();
+            }
+            return result;
+        }
+
+        private static ByteBuffer copy(ByteBuffer source, int capacity) {
+            ByteBuffer copy = ByteBuffer.allocateDirect(capacity);
+            ByteBuffer written = source.duplicate();
+            written.flip();
+            copy.put(written);
+            return copy;
+        }
+
+        private static byte[] bytes(String value) {
+            return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        private static int length(byte[] bytes) {
+            return bytes == null ? 0 : bytes.length;
+        }
+    }
+}
@@ -2,68 +2,223 @@ package com.ecommerce.dao;
 
 import com.ecommerce.config.DatabaseConfig;
 import com.ecommerce.model.Product;
+import com.ecommerce.search.ProductSearchIndex;
+import com.ecommerce.search.SuggestIndex;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.IntPredicate;
 
 public class ProductDAO {
+    public static final int DEFAULT_SEARCH_LIMIT = 100;
+
+    private static final ProductSearchIndex SEARCH_INDEX = new ProductSearchIndex();
+    private static final SuggestIndex SUGGEST_INDEX = new SuggestIndex();
+    // Snapshot and the facet index built from it, published together once the search and
+    // suggest indexes have caught up; filtered browsing never reaches the database
+    private static volatile Indexed indexed;
+
+    static {
+        ProductCatalog.getInstance().addListener((previous, next) -> {
+            SEARCH_INDEX.sync(next.getProducts(), next::get);
+            // Checkouts change stock, so fresh sales counts arrive with each new catalog version
+            SUGGEST_INDEX.sync(next.getProducts(), new OrderDAO().unitsSoldByProduct());
+            indexed = new Indexed(next, new FacetIndex(next.getColumns()));
+        });
+    }
+
+    // Served from the in-memory catalog snapshot; the returned list is read-only and
+    // materializes products as they are read
     public List<Product> findAll() {
-        List<Product> products = new ArrayList<>();
+        return indexed().snapshot.getProducts();
+    }
+
+    // Products created since the snapshot was loaded are found once the next refresh lands
+    public Product findById(int id) {
+        return indexed().snapshot.get(id);
+    }
+
+    // Rows go straight into the columns without building a Product per row; unchanged text stays
+    // in the base columns' arena
+    ProductColumns queryAll(ProductColumns base) throws SQLException {
+        ProductColumns.Builder columns = new ProductColumns.Builder(base);
         try (Connection conn = DatabaseConfig.getConnection();
                 Statement stmt = conn.createStatement();
-                ResultSet rs = stmt.executeQuery("SELECT * FROM products")) {
+                ResultSet rs = stmt.executeQuery("SELECT * FROM products ORDER BY id")) {
             while (rs.next()) {
-                products.add(mapResultSetToProduct(rs));
+                columns.add(rs.getInt("id"), rs.getString("name"), rs.getString("description"),
+                        rs.getDouble("price"), rs.getString("image"), rs.getString("brand"),
+                        rs.getString("category"), rs.getInt("stock"), rs.getInt("rating"),
+                        rs.getTimestamp("created_at"));
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
-        return products;
+        return columns.build();
     }
 
-    public Product findById(int id) {
-        try (Connection conn = DatabaseConfig.getConnection();
-                PreparedStatement stmt = conn.prepareStatement("SELECT * FROM products WHERE id = ?")) {
-            stmt.setInt(1, id);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return mapResultSetToProduct(rs);
+    // Ranked results from the in-memory search index, capped at DEFAULT_SEARCH_LIMIT
+    public List<Product> search(String query) {
+        return search(query, DEFAULT_SEARCH_LIMIT);
+    }
+
+    public List<Product> search(String query, int limit) {
+        indexed();
+        return SEARCH_INDEX.search(query, limit);
+    }
+
+    /** Typeahead suggestions for a partly typed query, served from memory. */
+    public List<SuggestIndex.Suggestion> suggest(String prefix, int limit) {
+        indexed();
+        return SUGGEST_INDEX.suggest(prefix, limit);
+    }
+
+    /** Products most often bought together with the given one, skipping any no longer in the catalog. */
+    public List<Product> related(int productId, int limit) {
+        ProductCatalog.Snapshot snapshot = indexed().snapshot;
+        List<Product> related = new ArrayList<>();
+        for (int id : RelatedProductsIndex.getInstance().related(productId)) {
+            Product p = snapshot.get(id);
+            if (p != null) {
+                related.add(p);
+                if (related.size() == limit) {
+                    break;
+                }
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
-        return null;
+        return related;
     }
 
-    public List<Product> search(String query) {
-        List<Product> products = new ArrayList<>();
-        try (Connection conn = DatabaseConfig.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(
-                        "SELECT * FROM products WHERE LOWER(name) LIKE ? OR LOWER(description) LIKE ?")) {
-            String searchTerm = "%" + query.toLowerCase() + "%";
-            stmt.setString(1, searchTerm);
-            stmt.setString(2, searchTerm);
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                products.add(mapResultSetToProduct(rs));
+    public long getCatalogVersion() {
+        return indexed().snapshot.getVersion();
+    }
+
+    public ProductPage findPage(PageRequest request) {
+        return findPage(request, ProductFilter.NONE, false);
+    }
+
+    /**
+     * Browse page narrowed by the filter, with total and facet counts attached when withFacets is set.
+     * Throws IllegalArgumentException for the relevance sort, which needs a search query.
+     */
+    public ProductPage findPage(PageRequest request, ProductFilter filter, boolean withFacets) {
+        if (request.getSort() == ProductSort.RELEVANCE) {
+            throw new IllegalArgumentException("sort=relevance requires a search query");
+        }
+        Indexed indexed = indexed();
+        ProductCatalog.Snapshot snapshot = indexed.snapshot;
+        if (filter.isEmpty() && !withFacets) {
+            return snapshot.page(request).atVersion(snapshot.getVersion());
+        }
+        FacetIndex facets = indexed.facets;
+        long[] selection = facets.select(filter, null);
+        ProductPage page = filter.isEmpty() ? snapshot.page(request) : facets.page(filter, selection, request);
+        page = page.atVersion(snapshot.getVersion());
+        return withFacets ? page.withFacets(facets.count(selection), facets.counts(filter, null)) : page;
+    }
+
+    public ProductPage searchPage(String query, PageRequest request) {
+        return searchPage(query, request, ProductFilter.NONE, false);
+    }
+
+    /**
+     * Search page narrowed by the filter. Facet counts are taken over every
+     * product matching the query, so they cost a full match of the query.
+     */
+    public ProductPage searchPage(String query, PageRequest request, ProductFilter filter, boolean withFacets) {
+        Indexed indexed = indexed();
+        FacetIndex facets = indexed.facets;
+        IntPredicate accept = null;
+        if (!filter.isEmpty()) {
+            long[] selection = facets.select(filter, null);
+            accept = id -> facets.contains(selection, id);
+        }
+        ProductPage page = searchPage(query, request, indexed.snapshot.getColumns(), accept)
+                .atVersion(indexed.snapshot.getVersion());
+        if (!withFacets) {
+            return page;
+        }
+        long[] matches = facets.positionsOf(SEARCH_INDEX.matchIds(query));
+        return page.withFacets(facets.count(facets.select(filter, matches)), facets.counts(filter, matches));
+    }
+
+    private ProductPage searchPage(String query, PageRequest request, ProductColumns columns, IntPredicate accept) {
+        int limit = request.getLimit();
+
+        if (request.getSort() == ProductSort.RELEVANCE) {
+            float afterScore = request.hasCursor() ? (float) request.getAfterKey() : Float.POSITIVE_INFINITY;
+            List<ProductSearchIndex.Hit> hits = SEARCH_INDEX.search(query, limit + 1, afterScore,
+                    request.getAfterId(), accept);
+            List<Product> products = new ArrayList<>(Math.min(hits.size(), limit));
+            for (int i = 0; i < hits.size() && i < limit; i++) {
+                products.add(hits.get(i).getProduct());
+            }
+            String next = null;
+            if (hits.size() > limit) {
+                ProductSearchIndex.Hit last = hits.get(limit - 1);
+                next = request.cursorAfter(last.getScore(), last.getProduct().getId());
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
+            return new ProductPage(products, next);
+        }
+
+        // Other sorts need every match; keep the limit + 1 that sort first after the cursor, as
+        // positions in the catalog columns so only the returned page is materialized
+        ProductSort sort = request.getSort();
+        PriorityQueue<Integer> top = new PriorityQueue<>(limit + 2, (a, b) -> request.compare(
+                columns.key(sort, b), columns.id(b), columns.key(sort, a), columns.id(a)));
+        for (int id : SEARCH_INDEX.matchIds(query)) {
+            int pos = columns.positionOf(id);
+            if (pos >= 0 && request.isAfterCursor(columns.key(sort, pos), id) && (accept == null || accept.test(id))) {
+                top.add(pos);
+                if (top.size() > limit + 1) {
+                    top.poll();
+                }
+            }
+        }
+        boolean more = top.size() > limit;
+        if (more) {
+            top.poll();
+        }
+        int[] positions = new int[top.size()];
+        for (int i = positions.length - 1; i >= 0; i--) {
+            positions[i] = top.poll();
+        }
+        List<Product> products = columns.products(positions, 0, positions.length);
+        String next = null;
+        if (more) {
+            int last = positions[positions.length - 1];
+            next = request.cursorAfter(columns.key(sort, last), columns.id(last));
+        }
+        return new ProductPage(products, next);
+    }
+
+    public static ProductSearchIndex getSearchIndex() {
+        return SEARCH_INDEX;
+    }
+
+    public static SuggestIndex getSuggestIndex() {
+        return SUGGEST_INDEX;
+    }
+
+    public static Map<String, Object> getFacetStats() {
+        Indexed current = indexed;
+        return (current == null ? new FacetIndex(ProductColumns.EMPTY) : current.facets).getStats();
+    }
+
+    // The published snapshot with its facets; a catalog that failed its first load has none yet
+    private static Indexed indexed() {
+        ProductCatalog.Snapshot snapshot = ProductCatalog.getInstance().snapshot();
+        Indexed current = indexed;
+        return current != null ? current : new Indexed(snapshot, new FacetIndex(snapshot.getColumns()));
+    }
+
+    private static final class Indexed {
+        final ProductCatalog.Snapshot snapshot;
+        final FacetIndex facets;
+
+        Indexed(ProductCatalog.Snapshot snapshot, FacetIndex facets) {
+            this.snapshot = snapshot;
+            this.facets = facets;
         }
-        return products;
-    }
-
-    private Product mapResultSetToProduct(ResultSet rs) throws SQLException {
-        Product p = new Product();
-        p.setId(rs.getInt("id"));
-        p.setName(rs.getString("name"));
-        p.setDescription(rs.getString("description"));
-        p.setPrice(rs.getDouble("price"));
-        p.setImage(rs.getString("image"));
-        p.setBrand(rs.getString("brand"));
-        p.setCategory(rs.getString("category"));
-        p.setStock(rs.getInt("stock"));
-        p.setRating(rs.getInt("rating"));
-        return p;
     }
 }
@@ -0,0 +1,139 @@
+package com.ecommerce.dao;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Facet filters for product listings: any of the given categories, any of the
+ * given brands, a minimum rating and an inclusive price range. Categories and
+ * brands match ignoring case. A filter with nothing set matches everything.
+ */
+public class ProductFilter {
+    public static final ProductFilter NONE = new ProductFilter(Collections.emptySet(), Collections.emptySet(), 0,
+            null, null);
+
+    private final Set<String> categories;
+    private final Set<String> brands;
+    private final int minRating;
+    private final Double minPrice;
+    private final Double maxPrice;
+
+    private ProductFilter(Set<String> categories, Set<String> brands, int minRating, Double minPrice,
+            Double maxPrice) {
+        this.categories = categories;
+        this.brands = brands;
+        this.minRating = minRating;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+    }
+
+    /**
+     * Builds a filter from raw query parameters, any of which may be null.
+     * Category and brand may be repeated to select several values.
+     * Throws IllegalArgumentException for malformed values.
+     */
+    public static ProductFilter parse(String[] categoryParams, String[] brandParams, String minRatingParam,
+            String minPriceParam, String maxPriceParam) {
+        int minRating = 0;
+        if (minRatingParam != null && !minRatingParam.isEmpty()) {
+            try {
+                minRating = Integer.parseInt(minRatingParam);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("minRating must be a number");
+            }
+            if (minRating < 0) {
+                throw new IllegalArgumentException("minRating must not be negative");
+            }
+        }
+        Double minPrice = price(minPriceParam, "minPrice");
+        Double maxPrice = price(maxPriceParam, "maxPrice");
+        if (minPrice != null && maxPrice != null && minPrice > maxPrice) {
+            throw new IllegalArgumentException("minPrice must not be greater than maxPrice");
+        }
+        Set<String> categories = values(categoryParams);
+        Set<String> brands = values(brandParams);
+        if (categories.isEmpty() && brands.isEmpty() && minRating == 0 && minPrice == null && maxPrice == null) {
+            return NONE;
+        }
+        return new ProductFilter(categories, brands, minRating, minPrice, maxPrice);
+    }
+
+    /** Case-folded form used for both indexing and lookups so they agree. */
+    public static String key(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static Set<String> values(String[] params) {
+        if (params == null) {
+            return Collections.emptySet();
+        }
+        Set<String> values = new TreeSet<>();
+        for (String param : params) {
+            if (param != null && !param.trim().isEmpty()) {
+                values.add(key(param));
+            }
+        }
+        return values.isEmpty() ? Collections.emptySet() : Collections.unmodifiableSet(values);
+    }
+
+    private static Double price(String param, String name) {
+        if (param == null || param.isEmpty()) {
+            return null;
+        }
+        double value;
+        try {
+            value = Double.parseDouble(param);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a number");
+        }
+        if (!(value >= 0) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException(name + " must be a non-negative number");
+        }
+        return value;
+    }
+
+    public boolean isEmpty() {
+        return this == NONE;
+    }
+
+    /**
+     * Stable text form for cache keys: equal filters produce equal keys and different
+     * filters different ones. Values are length-prefixed, since they may contain any text.
+     */
+    public String cacheKey() {
+        StringBuilder key = new StringBuilder("c");
+        appendValues(key, categories);
+        key.append('b');
+        appendValues(key, brands);
+        return key.append('r').append(minRating).append('p').append(minPrice).append('-').append(maxPrice).toString();
+    }
+
+    private static void appendValues(StringBuilder key, Set<String> values) {
+        key.append(values.size());
+        for (String value : values) {
+            key.append(':').append(value.length()).append(':').append(value);
+        }
+    }
+
+    public Set<String> getCategories() {
+        return categories;
+    }
+
+    public Set<String> getBrands() {
+        return brands;
+    }
+
+    public int getMinRating() {
+        return minRating;
+    }
+
+    public Double getMinPrice() {
+        return minPrice;
+    }
+
+    public Double getMaxPrice() {
+        return maxPrice;
+    }
+}
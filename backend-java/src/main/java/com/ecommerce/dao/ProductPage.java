@@ -0,0 +1,61 @@
+package com.ecommerce.dao;
+
+import com.ecommerce.model.Product;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One page of products plus the cursor for the next page (null on the last page).
+ * Faceted listings also carry the total match count and the facet counts.
+ */
+public class ProductPage {
+    private final List<Product> products;
+    private final String nextCursor;
+    private final int total;
+    private final Map<String, Object> facets;
+    private final long version;
+
+    public ProductPage(List<Product> products, String nextCursor) {
+        this(products, nextCursor, -1, null, 0);
+    }
+
+    private ProductPage(List<Product> products, String nextCursor, int total, Map<String, Object> facets,
+            long version) {
+        this.products = products;
+        this.nextCursor = nextCursor;
+        this.total = total;
+        this.facets = facets;
+        this.version = version;
+    }
+
+    public ProductPage withFacets(int total, Map<String, Object> facets) {
+        return new ProductPage(products, nextCursor, total, facets, version);
+    }
+
+    ProductPage atVersion(long version) {
+        return new ProductPage(products, nextCursor, total, facets, version);
+    }
+
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /** Number of products matching the filters across all pages, or -1 when not computed. */
+    public int getTotal() {
+        return total;
+    }
+
+    public Map<String, Object> getFacets() {
+        return facets;
+    }
+
+    /** Version of the catalog snapshot the page was built from. */
+    public long getVersion() {
+        return version;
+    }
+}
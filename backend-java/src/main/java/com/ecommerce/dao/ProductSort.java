@@ -0,0 +1,45 @@
+package com.ecommerce.dao;
+
+import com.ecommerce.model.Product;
+
+/** Sort keys supported by product listings. Ties are always broken by ascending id. */
+public enum ProductSort {
+    ID("id"),
+    PRICE("price"),
+    RATING("rating"),
+    CREATED_AT("created_at"),
+    // Only meaningful for searches; the key is the search score
+    RELEVANCE("relevance");
+
+    private final String param;
+
+    ProductSort(String param) {
+        this.param = param;
+    }
+
+    public String getParam() {
+        return param;
+    }
+
+    public double key(Product p) {
+        switch (this) {
+            case PRICE:
+                return p.getPrice();
+            case RATING:
+                return p.getRating();
+            case CREATED_AT:
+                return p.getCreatedAt() == null ? 0 : p.getCreatedAt().getTime();
+            default:
+                return p.getId();
+        }
+    }
+
+    public static ProductSort fromParam(String param) {
+        for (ProductSort sort : values()) {
+            if (sort.param.equalsIgnoreCase(param)) {
+                return sort;
+            }
+        }
+        throw new IllegalArgumentException("Unknown sort: " + param);
+    }
+}
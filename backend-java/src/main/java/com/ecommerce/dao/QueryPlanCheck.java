@@ -0,0 +1,83 @@
+package com.ecommerce.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs EXPLAIN over the queries on the request path and fails if any of them
+ * reads a table without an index condition. These queries are cheap on a
+ * freshly seeded database either way, so a dropped or renamed index would
+ * otherwise only show up as latency once the tables have grown.
+ *
+ * The plan format is H2's: every table access carries a comment naming the
+ * index and the condition used to seek it, and a scan has either no condition
+ * or the pseudo index tableScan.
+ */
+public class QueryPlanCheck {
+    // Index annotations only; "/* WHERE ..." and "/* index sorted */" comments contain spaces before any colon
+    private static final Pattern ACCESS = Pattern.compile("/\\* ([\\w.]+)(:[^*]*)? \\*/");
+
+    private static final Map<String, String> HOT_QUERIES = new LinkedHashMap<>();
+
+    static {
+        HOT_QUERIES.put("cart by user", CartDAO.FIND_BY_USER_SQL);
+        HOT_QUERIES.put("checkout cart lock", CheckoutDAO.LOCK_CART_SQL);
+        HOT_QUERIES.put("checkout stock reservation", CheckoutDAO.RESERVE_STOCK_SQL);
+        HOT_QUERIES.put("checkout idempotency lookup", CheckoutDAO.FIND_IDEMPOTENCY_SQL);
+        HOT_QUERIES.put("order history first page", OrderDAO.pageSql(false));
+        HOT_QUERIES.put("order history next page", OrderDAO.pageSql(true));
+        HOT_QUERIES.put("order items by order", OrderDAO.itemsSql(1));
+        HOT_QUERIES.put("user by email", UserDAO.FIND_BY_EMAIL_SQL);
+    }
+
+    private QueryPlanCheck() {
+    }
+
+    /** Throws IllegalStateException naming every hot query whose plan contains a table scan. */
+    public static void verify(Connection conn) throws SQLException {
+        List<String> failures = new ArrayList<>();
+        for (Map.Entry<String, String> entry : HOT_QUERIES.entrySet()) {
+            String plan = explain(conn, entry.getValue());
+            List<String> scans = scans(plan);
+            if (!scans.isEmpty()) {
+                failures.add(entry.getKey() + " scans " + String.join(", ", scans) + ":\n" + plan);
+            }
+        }
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException("Hot queries fall back to table scans; check the migrations "
+                    + "under db/migration\n" + String.join("\n\n", failures));
+        }
+        System.out.println("Query plan check passed for " + HOT_QUERIES.size() + " hot queries");
+    }
+
+    private static String explain(Connection conn, String sql) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("EXPLAIN " + sql);
+                ResultSet rs = stmt.executeQuery()) {
+            StringBuilder plan = new StringBuilder();
+            while (rs.next()) {
+                plan.append(rs.getString(1));
+            }
+            return plan.toString();
+        }
+    }
+
+    static List<String> scans(String plan) {
+        List<String> scans = new ArrayList<>();
+        Matcher m = ACCESS.matcher(plan);
+        while (m.find()) {
+            String index = m.group(1);
+            if (index.endsWith(".tableScan") || m.group(2) == null) {
+                scans.add(index);
+            }
+        }
+        return scans;
+    }
+}
@@ -0,0 +1,496 @@
+package com.ecommerce.dao;
+
+import com.ecommerce.metrics.Histogram;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * "Frequently bought together": for each product, the products that most often
+ * share an order with it. Every product keeps its pair counts in a sparse
+ * open-addressing int map next to its top TOP_K partners, and readers get the
+ * published top list by product id in constant time without locks.
+ *
+ * Orders are recorded as they commit. Counts only grow between rebuilds, so the
+ * top lists stay exact: a partner can only overtake the last entry on its own
+ * increment. A full rebuild recounts order_items on a fork-join pool, one task
+ * per range of products, and replays orders that committed in the meantime.
+ * Orders with more than MAX_BASKET products say little about any one pair and
+ * are left out.
+ */
+public class RelatedProductsIndex {
+    public static final int TOP_K = 20;
+    private static final int MAX_BASKET = Integer.getInteger("related.maxBasket", 50);
+    private static final long REBUILD_INTERVAL_MS = Long.getLong("related.rebuildIntervalMs", 6 * 60 * 60 * 1000L);
+    private static final int FETCH_SIZE = 1000;
+    // Products per fork-join leaf
+    private static final int LEAF_PRODUCTS = 512;
+
+    private static final RelatedProductsIndex INSTANCE = new RelatedProductsIndex();
+
+    private final Object writeLock = new Object();
+    private volatile AtomicReferenceArray<Partners> partners = new AtomicReferenceArray<>(0);
+    // Orders recorded while a rebuild is loading, replayed onto its result unless it saw them
+    private List<Recorded> pending;
+    // Orders the last rebuild read, in case one of them is only recorded after the swap
+    private BitSet rebuilt = new BitSet();
+    private ScheduledExecutorService scheduler;
+
+    private final LongAdder ordersRecorded = new LongAdder();
+    private final LongAdder ordersSkipped = new LongAdder();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder rebuildFailures = new LongAdder();
+    private final Histogram rebuildMillis = new Histogram("ms");
+    private volatile long rebuilds;
+    private volatile long lastRebuildOrders;
+    private volatile long lastRebuildPairs;
+
+    public static RelatedProductsIndex getInstance() {
+        return INSTANCE;
+    }
+
+    /** Rebuilds now and then every related.rebuildIntervalMs (0 or less: only now) on a daemon thread. */
+    public synchronized void start(DataSource dataSource) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "related-rebuild");
+            t.setDaemon(true);
+            return t;
+        });
+        Runnable job = () -> {
+            try {
+                rebuild(dataSource);
+            } catch (Exception e) {
+                rebuildFailures.increment();
+                e.printStackTrace();
+            }
+        };
+        if (REBUILD_INTERVAL_MS > 0) {
+            scheduler.scheduleWithFixedDelay(job, 0, REBUILD_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        } else {
+            scheduler.execute(job);
+        }
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /** Counts a committed order's products as bought together. */
+    public void record(int orderId, int[] productIds) {
+        int[] basket = basket(productIds, productIds.length);
+        if (basket == null) {
+            ordersSkipped.increment();
+            return;
+        }
+        synchronized (writeLock) {
+            if (rebuilt.get(orderId)) {
+                return;
+            }
+            partners = apply(partners, basket);
+            if (pending != null) {
+                pending.add(new Recorded(orderId, basket));
+            }
+        }
+        ordersRecorded.increment();
+    }
+
+    /**
+     * Ids of the products most often ordered together with the given one, most
+     * frequent first (ties by id). Empty when it has no orders shared with others.
+     */
+    public int[] related(int productId) {
+        lookups.increment();
+        AtomicReferenceArray<Partners> current = partners;
+        Partners p = productId >= 0 && productId < current.length() ? current.get(productId) : null;
+        return p == null ? new int[0] : p.top.ids;
+    }
+
+    /** Recounts every order in order_items and swaps the result in. */
+    public void rebuild(DataSource dataSource) throws SQLException {
+        long start = System.currentTimeMillis();
+        synchronized (writeLock) {
+            if (pending != null) {
+                return;
+            }
+            pending = new ArrayList<>();
+        }
+        try {
+            Baskets baskets = load(dataSource);
+            Partners[] counted = count(baskets);
+            synchronized (writeLock) {
+                AtomicReferenceArray<Partners> next = new AtomicReferenceArray<>(counted);
+                for (Recorded order : pending) {
+                    if (!baskets.orders.get(order.orderId)) {
+                        next = apply(next, order.productIds);
+                    }
+                }
+                partners = next;
+                rebuilt = baskets.orders;
+            }
+            long pairs = 0;
+            for (Partners p : counted) {
+                pairs += p == null ? 0 : p.counts.size;
+            }
+            lastRebuildOrders = baskets.size;
+            // Each pair is counted from both of its products
+            lastRebuildPairs = pairs / 2;
+            rebuilds++;
+            rebuildMillis.record(System.currentTimeMillis() - start);
+        } finally {
+            synchronized (writeLock) {
+                pending = null;
+            }
+        }
+    }
+
+    // Streams order_items in order id order into distinct-product baskets
+    private static Baskets load(DataSource dataSource) throws SQLException {
+        Baskets baskets = new Baskets();
+        try (Connection conn = dataSource.getConnection();
+                PreparedStatement stmt = conn.prepareStatement(
+                        "SELECT order_id, product_id FROM order_items ORDER BY order_id",
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(FETCH_SIZE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                int orderId = -1;
+                int[] items = new int[16];
+                int size = 0;
+                while (rs.next()) {
+                    int id = rs.getInt(1);
+                    if (id != orderId) {
+                        baskets.add(orderId, items, size);
+                        orderId = id;
+                        size = 0;
+                    }
+                    if (size == items.length) {
+                        items = Arrays.copyOf(items, size * 2);
+                    }
+                    items[size++] = rs.getInt(2);
+                }
+                baskets.add(orderId, items, size);
+            }
+        }
+        return baskets;
+    }
+
+    // Inverts baskets into per-product basket lists, then counts each product's partners in parallel
+    private static Partners[] count(Baskets baskets) {
+        int products = baskets.maxProductId + 1;
+        int[] offsets = new int[products + 1];
+        for (int i = 0; i < baskets.itemCount; i++) {
+            offsets[baskets.items[i] + 1]++;
+        }
+        for (int p = 0; p < products; p++) {
+            offsets[p + 1] += offsets[p];
+        }
+        int[] containing = new int[baskets.itemCount];
+        int[] fill = Arrays.copyOf(offsets, products);
+        for (int b = 0; b < baskets.size; b++) {
+            for (int i = baskets.starts[b]; i < baskets.starts[b + 1]; i++) {
+                containing[fill[baskets.items[i]]++] = b;
+            }
+        }
+        Partners[] result = new Partners[products];
+        ForkJoinPool.commonPool().invoke(new CountTask(baskets, offsets, containing, result, 0, products));
+        return result;
+    }
+
+    private static final class CountTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Baskets baskets;
+        private final int[] offsets;
+        private final int[] containing;
+        private final Partners[] result;
+        private final int from;
+        private final int to;
+
+        CountTask(Baskets baskets, int[] offsets, int[] containing, Partners[] result, int from, int to) {
+            this.baskets = baskets;
+            this.offsets = offsets;
+            this.containing = containing;
+            this.result = result;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_PRODUCTS) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new CountTask(baskets, offsets, containing, result, from, mid),
+                        new CountTask(baskets, offsets, containing, result, mid, to));
+                return;
+            }
+            for (int product = from; product < to; product++) {
+                if (offsets[product] == offsets[product + 1]) {
+                    continue;
+                }
+                PairCounts counts = new PairCounts();
+                for (int i = offsets[product]; i < offsets[product + 1]; i++) {
+                    int b = containing[i];
+                    for (int j = baskets.starts[b]; j < baskets.starts[b + 1]; j++) {
+                        if (baskets.items[j] != product) {
+                            counts.increment(baskets.items[j]);
+                        }
+                    }
+                }
+                result[product] = Partners.of(counts);
+            }
+        }
+    }
+
+    // Adds one to every pair in the basket, growing the array for unseen product ids
+    private static AtomicReferenceArray<Partners> apply(AtomicReferenceArray<Partners> current, int[] basket) {
+        int maxId = basket[basket.length - 1];
+        if (maxId >= current.length()) {
+            AtomicReferenceArray<Partners> grown = new AtomicReferenceArray<>(
+                    Math.max(maxId + 1, current.length() + (current.length() >> 1)));
+            for (int i = 0; i < current.length(); i++) {
+                grown.set(i, current.get(i));
+            }
+            current = grown;
+        }
+        for (int a : basket) {
+            Partners p = current.get(a);
+            if (p == null) {
+                p = new Partners();
+                current.set(a, p);
+            }
+            for (int b : basket) {
+                if (b != a) {
+                    p.offer(b, p.counts.increment(b));
+                }
+            }
+        }
+        return current;
+    }
+
+    // Distinct positive ids in ascending order, or null when the order is too small or too large to count
+    private static int[] basket(int[] productIds, int length) {
+        int[] sorted = Arrays.copyOf(productIds, length);
+        Arrays.sort(sorted);
+        int size = 0;
+        for (int i = 0; i < length; i++) {
+            if (sorted[i] > 0 && (size == 0 || sorted[size - 1] != sorted[i])) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        return size < 2 || size > MAX_BASKET ? null : Arrays.copyOf(sorted, size);
+    }
+
+    public Map<String, Object> getStats() {
+        AtomicReferenceArray<Partners> current = partners;
+        int products = 0;
+        for (int i = 0; i < current.length(); i++) {
+            products += current.get(i) == null ? 0 : 1;
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("products", products);
+        stats.put("ordersRecorded", ordersRecorded.sum());
+        stats.put("ordersSkipped", ordersSkipped.sum());
+        stats.put("lookups", lookups.sum());
+        stats.put("rebuilds", rebuilds);
+        stats.put("rebuildFailures", rebuildFailures.sum());
+        stats.put("lastRebuildOrders", lastRebuildOrders);
+        stats.put("lastRebuildPairs", lastRebuildPairs);
+        stats.put("rebuildTime", rebuildMillis.snapshot());
+        return stats;
+    }
+
+    private static final class Recorded {
+        final int orderId;
+        final int[] productIds;
+
+        Recorded(int orderId, int[] productIds) {
+            this.orderId = orderId;
+            this.productIds = productIds;
+        }
+    }
+
+    // Countable orders as one flat item array with start offsets
+    private static final class Baskets {
+        final BitSet orders = new BitSet();
+        int[] starts = new int[1024];
+        int[] items = new int[4096];
+        int size;
+        int itemCount;
+        int maxProductId;
+
+        void add(int orderId, int[] productIds, int length) {
+            if (orderId < 0) {
+                return;
+            }
+            orders.set(orderId);
+            int[] basket = basket(productIds, length);
+            if (basket == null) {
+                return;
+            }
+            if (size + 2 > starts.length) {
+                starts = Arrays.copyOf(starts, starts.length * 2);
+            }
+            if (itemCount + basket.length > items.length) {
+                items = Arrays.copyOf(items, Math.max(items.length * 2, itemCount + basket.length));
+            }
+            System.arraycopy(basket, 0, items, itemCount, basket.length);
+            itemCount += basket.length;
+            size++;
+            starts[size] = itemCount;
+            maxProductId = Math.max(maxProductId, basket[basket.length - 1]);
+        }
+    }
+
+    // A product's pair counts, written by one thread at a time, and its published top list
+    private static final class Partners {
+        final PairCounts counts;
+        private final int[] topIds = new int[TOP_K];
+        private final int[] topCounts = new int[TOP_K];
+        private int topSize;
+        volatile Top top = Top.EMPTY;
+
+        Partners() {
+            this(new PairCounts());
+        }
+
+        private Partners(PairCounts counts) {
+            this.counts = counts;
+        }
+
+        static Partners of(PairCounts counts) {
+            Partners p = new Partners(counts);
+            for (int i = 0; i < counts.keys.length; i++) {
+                if (counts.keys[i] != 0) {
+                    p.place(counts.keys[i], counts.values[i]);
+                }
+            }
+            p.publish();
+            return p;
+        }
+
+        // The partner's count went up to count
+        void offer(int partner, int count) {
+            if (place(partner, count)) {
+                publish();
+            }
+        }
+
+        private boolean place(int partner, int count) {
+            int pos = -1;
+            for (int i = 0; i < topSize; i++) {
+                if (topIds[i] == partner) {
+                    pos = i;
+                    break;
+                }
+            }
+            if (pos < 0) {
+                if (topSize < TOP_K) {
+                    pos = topSize++;
+                } else if (before(count, partner, topCounts[TOP_K - 1], topIds[TOP_K - 1])) {
+                    pos = TOP_K - 1;
+                } else {
+                    return false;
+                }
+                topIds[pos] = partner;
+            }
+            topCounts[pos] = count;
+            while (pos > 0 && before(topCounts[pos], topIds[pos], topCounts[pos - 1], topIds[pos - 1])) {
+                int id = topIds[pos];
+                topIds[pos] = topIds[pos - 1];
+                topIds[pos - 1] = id;
+                int c = topCounts[pos];
+                topCounts[pos] = topCounts[pos - 1];
+                topCounts[pos - 1] = c;
+                pos--;
+            }
+            return true;
+        }
+
+        private void publish() {
+            top = new Top(Arrays.copyOf(topIds, topSize), Arrays.copyOf(topCounts, topSize));
+        }
+
+        private static boolean before(int count, int id, int otherCount, int otherId) {
+            return count > otherCount || (count == otherCount && id < otherId);
+        }
+    }
+
+    private static final class Top {
+        static final Top EMPTY = new Top(new int[0], new int[0]);
+
+        final int[] ids;
+        final int[] counts;
+
+        Top(int[] ids, int[] counts) {
+            this.ids = ids;
+            this.counts = counts;
+        }
+    }
+
+    // Open-addressing int -> int map with linear probing up to 3/4 full; key 0 marks a free slot
+    private static final class PairCounts {
+        int[] keys = new int[4];
+        int[] values = new int[4];
+        int size;
+
+        int increment(int key) {
+            if ((size + 1) * 4 > keys.length * 3) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int slot = mix(key) & mask;
+            while (keys[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == 0) {
+                keys[slot] = key;
+                size++;
+            }
+            return ++values[slot];
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new int[keys.length];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = mix(oldKeys[i]) & mask;
+                    while (keys[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static int mix(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -5,9 +5,11 @@ import com.ecommerce.model.User;
 import java.sql.*;
 
 public class UserDAO {
+    static final String FIND_BY_EMAIL_SQL = "SELECT * FROM users WHERE email = ?";
+
     public User findByEmail(String email) {
         try (Connection conn = DatabaseConfig.getConnection();
-                PreparedStatement stmt = conn.prepareStatement("SELECT * FROM users WHERE email = ?")) {
+                PreparedStatement stmt = conn.prepareStatement(FIND_BY_EMAIL_SQL)) {
             stmt.setString(1, email);
             ResultSet rs = stmt.executeQuery();
             if (rs.next()) {
@@ -26,11 +28,31 @@ public class UserDAO {
 
     public boolean create(User user) {
         try (Connection conn = DatabaseConfig.getConnection();
-                PreparedStatement stmt = conn
-                        .prepareStatement("INSERT INTO users (name, email, password) VALUES (?, ?, ?)")) {
+                PreparedStatement stmt = conn.prepareStatement(
+                        "INSERT INTO users (name, email, password) VALUES (?, ?, ?)", Statement.RETURN_GENERATED_KEYS)) {
             stmt.setString(1, user.getName());
             stmt.setString(2, user.getEmail());
             stmt.setString(3, user.getPassword());
+            if (stmt.executeUpdate() == 0) {
+                return false;
+            }
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                if (keys.next()) {
+                    user.setId(keys.getInt(1));
+                }
+            }
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    public boolean updatePassword(int id, String passwordHash) {
+        try (Connection conn = DatabaseConfig.getConnection();
+                PreparedStatement stmt = conn.prepareStatement("UPDATE users SET password = ? WHERE id = ?")) {
+            stmt.setString(1, passwordHash);
+            stmt.setInt(2, id);
             return stmt.executeUpdate() > 0;
         } catch (SQLException e) {
             e.printStackTrace();
@@ -0,0 +1,103 @@
+package com.ecommerce.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram with fixed, power-of-two bucket bounds. Values are
+ * recorded in whatever unit the caller uses (micros, rows, bytes...).
+ */
+public class Histogram {
+    private static final int BUCKETS = 32;
+
+    private final String unit;
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private volatile long max;
+
+    public Histogram(String unit) {
+        this.unit = unit;
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        buckets[bucketFor(value)].increment();
+        count.increment();
+        sum.add(value);
+        if (value > max) {
+            synchronized (this) {
+                if (value > max) {
+                    max = value;
+                }
+            }
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    /** Upper bound of the bucket containing the given quantile (0..1). */
+    public long percentile(double quantile) {
+        long n = count.sum();
+        if (n == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(quantile * n);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i].sum();
+            if (seen >= target) {
+                return Math.min(upperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("unit", unit);
+        data.put("count", getCount());
+        data.put("mean", getMean());
+        data.put("p50", percentile(0.50));
+        data.put("p90", percentile(0.90));
+        data.put("p99", percentile(0.99));
+        data.put("max", getMax());
+
+        // Keyed by inclusive upper bound
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = buckets[i].sum();
+            if (c > 0) {
+                counts.put(String.valueOf(upperBound(i)), c);
+            }
+        }
+        data.put("buckets", counts);
+        return data;
+    }
+
+    private static int bucketFor(long value) {
+        int bucket = 64 - Long.numberOfLeadingZeros(value);
+        return Math.min(bucket, BUCKETS - 1);
+    }
+
+    private static long upperBound(int bucket) {
+        return bucket == 0 ? 0 : (1L << bucket) - 1;
+    }
+}
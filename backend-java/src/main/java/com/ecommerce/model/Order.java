@@ -1,5 +1,8 @@
 package com.ecommerce.model;
 
+import java.sql.Timestamp;
+import java.util.List;
+
 public class Order {
     private int id;
     private int userId;
@@ -7,6 +10,8 @@ public class Order {
     private String status;
     private String shippingAddress;
     private String paymentMethod;
+    private Timestamp createdAt;
+    private List<OrderItem> items; // Only loaded on request
 
     // Getters and Setters
     public int getId() {
@@ -56,4 +61,20 @@ public class Order {
     public void setPaymentMethod(String paymentMethod) {
         this.paymentMethod = paymentMethod;
     }
+
+    public Timestamp getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Timestamp createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public List<OrderItem> getItems() {
+        return items;
+    }
+
+    public void setItems(List<OrderItem> items) {
+        this.items = items;
+    }
 }
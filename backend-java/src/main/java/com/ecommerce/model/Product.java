@@ -1,5 +1,7 @@
 package com.ecommerce.model;
 
+import java.sql.Timestamp;
+
 public class Product {
     private int id;
     private String name;
@@ -10,6 +12,7 @@ public class Product {
     private String category;
     private int stock;
     private int rating;
+    private Timestamp createdAt;
 
     // Getters and Setters
     public int getId() {
@@ -83,4 +86,12 @@ public class Product {
     public void setRating(int rating) {
         this.rating = rating;
     }
+
+    public Timestamp getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Timestamp createdAt) {
+        this.createdAt = createdAt;
+    }
 }
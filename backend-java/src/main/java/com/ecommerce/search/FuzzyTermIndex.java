@@ -0,0 +1,215 @@
+package com.ecommerce.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Trigram index over a vocabulary of terms, for finding the terms a misspelled
+ * word was meant to be. An edit changes at most three of a word's padded
+ * trigrams and a transposition four, so a word within k edits of a term shares
+ * all but 4k of its trigrams with it. Only terms that share that many and have
+ * a close enough length are checked with a bounded edit distance.
+ *
+ * Terms are only ever added; the owner starts a new index on a full rebuild.
+ * A single writer appends while readers look up without locks: every trigram's
+ * term list is an immutable ascending array replaced copy-on-write, and a term
+ * is published before any list refers to it.
+ */
+final class FuzzyTermIndex {
+    static final int MIN_LENGTH = 3;
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private final Map<String, int[]> grams = new ConcurrentHashMap<>();
+    // Writer side only
+    private final Map<String, Integer> ids = new HashMap<>();
+    private volatile String[] terms = new String[64];
+    private volatile int size;
+
+    /** Adds a word; words with digits are model numbers and sizes, which are never corrected to. */
+    synchronized void add(String term) {
+        if (term.length() < MIN_LENGTH || ids.containsKey(term) || hasDigit(term)) {
+            return;
+        }
+        int id = size;
+        String[] current = terms;
+        if (id == current.length) {
+            current = Arrays.copyOf(current, id * 2);
+        }
+        current[id] = term;
+        terms = current;
+        size = id + 1;
+        ids.put(term, id);
+        for (String gram : trigrams(term)) {
+            int[] list = grams.get(gram);
+            if (list == null) {
+                list = new int[] { id };
+            } else {
+                list = Arrays.copyOf(list, list.length + 1);
+                list[list.length - 1] = id;
+            }
+            grams.put(gram, list);
+        }
+    }
+
+    /**
+     * The vocabulary terms closest to {@code word}, at most {@code maxEdits} insertions,
+     * deletions, substitutions or adjacent transpositions away. Only terms at the
+     * smallest distance found are returned, at most {@code limit} of them.
+     */
+    List<String> closest(String word, int maxEdits, int limit) {
+        Set<String> wordGrams = trigrams(word);
+        int required = Math.max(1, wordGrams.size() - 4 * maxEdits);
+        List<int[]> lists = new ArrayList<>(wordGrams.size());
+        for (String gram : wordGrams) {
+            int[] list = grams.get(gram);
+            lists.add(list == null ? new int[0] : list);
+        }
+        lists.sort(Comparator.comparingInt(list -> list.length));
+
+        // A term sharing `required` trigrams is in at least one of the shortest
+        // size - required + 1 lists; the longer lists only raise existing counts
+        String[] vocabulary = terms;
+        Scratch scratch = SCRATCH.get();
+        int[] counts = scratch.counts(vocabulary.length);
+        int candidates = 0;
+        int seeds = lists.size() - required + 1;
+        for (int l = 0; l < seeds; l++) {
+            for (int id : lists.get(l)) {
+                if (counts[id]++ == 0) {
+                    scratch.touched(candidates + 1)[candidates++] = id;
+                }
+            }
+        }
+        int[] touched = scratch.touched;
+        for (int l = seeds; l < lists.size(); l++) {
+            int[] list = lists.get(l);
+            for (int c = 0; c < candidates; c++) {
+                if (Arrays.binarySearch(list, touched[c]) >= 0) {
+                    counts[touched[c]]++;
+                }
+            }
+        }
+
+        List<String> closest = new ArrayList<>();
+        int best = maxEdits;
+        for (int c = 0; c < candidates; c++) {
+            int id = touched[c];
+            int shared = counts[id];
+            counts[id] = 0;
+            String term = vocabulary[id];
+            if (shared < required || Math.abs(term.length() - word.length()) > best) {
+                continue;
+            }
+            int distance = distance(word, term, best, scratch);
+            if (distance < best && !closest.isEmpty()) {
+                closest.clear();
+            }
+            if (distance <= best) {
+                best = distance;
+                closest.add(term);
+            }
+        }
+        closest.sort(null);
+        return closest.size() > limit ? new ArrayList<>(closest.subList(0, limit)) : closest;
+    }
+
+    private static boolean hasDigit(String term) {
+        for (int i = 0; i < term.length(); i++) {
+            if (Character.isDigit(term.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int trigramCount() {
+        return grams.size();
+    }
+
+    // Distinct trigrams of the word padded with two spaces in front and one behind
+    private static Set<String> trigrams(String word) {
+        String padded = "  " + word + " ";
+        Set<String> result = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            result.add(padded.substring(i, i + 3));
+        }
+        return result;
+    }
+
+    /**
+     * Optimal string alignment distance between a and b, or {@code max + 1} as soon
+     * as every cell of a row exceeds max.
+     */
+    static int distance(String a, String b, int max, Scratch scratch) {
+        int m = b.length();
+        int[] older = scratch.row(0, m + 1);
+        int[] previous = scratch.row(1, m + 1);
+        int[] current = scratch.row(2, m + 1);
+        for (int j = 0; j <= m; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = i;
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= m; j++) {
+                char cb = b.charAt(j - 1);
+                int cost = ca == cb ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && ca == b.charAt(j - 2) && a.charAt(i - 2) == cb) {
+                    value = Math.min(value, older[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] recycled = older;
+            older = previous;
+            previous = current;
+            current = recycled;
+        }
+        return Math.min(previous[m], max + 1);
+    }
+
+    // Per-thread counters, cleared again by the lookup that used them
+    static final class Scratch {
+        private int[] counts = new int[0];
+        private int[] touched = new int[256];
+        private final int[][] rows = { new int[32], new int[32], new int[32] };
+
+        int[] counts(int size) {
+            if (counts.length < size) {
+                counts = new int[size];
+            }
+            return counts;
+        }
+
+        int[] touched(int size) {
+            if (touched.length < size) {
+                touched = Arrays.copyOf(touched, touched.length * 2);
+            }
+            return touched;
+        }
+
+        int[] row(int index, int size) {
+            if (rows[index].length < size) {
+                rows[index] = new int[size];
+            }
+            return rows[index];
+        }
+    }
+}
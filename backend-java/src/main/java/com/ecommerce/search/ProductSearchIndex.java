@@ -0,0 +1,747 @@
+package com.ecommerce.search;
+
+import com.ecommerce.model.Product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * In-memory inverted index over product name, brand, category and description.
+ * Queries are AND-ed terms ranked with BM25, where a term's frequency is
+ * weighted by the field it occurs in. The last query term also matches as a
+ * prefix of every indexed term, so results keep up while the user is still typing.
+ *
+ * Documents are keyed by product id. Postings are immutable sorted arrays. A
+ * sync builds a new state (term map, document lengths and counts) next to the
+ * one being searched and publishes it with a single volatile write, so searches
+ * run without locks and always see one consistent version of the index.
+ *
+ * The index keeps no Product objects: hits are resolved through a lookup by id
+ * supplied with the catalog, so only returned results are materialized.
+ *
+ * A query term that matches nothing is taken as a typo: it is replaced by the
+ * closest words of product names and brands within a bounded edit distance,
+ * found through a trigram index, so "hedphones" still finds headphones.
+ */
+public class ProductSearchIndex {
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final float NAME_WEIGHT = 3f;
+    private static final float BRAND_WEIGHT = 2f;
+    private static final float CATEGORY_WEIGHT = 1.5f;
+    private static final float DESCRIPTION_WEIGHT = 1f;
+    private static final int MIN_PREFIX_LENGTH = 2;
+    // Single term queries on terms in more documents than this are first answered from their champion list
+    private static final int CHAMPION_THRESHOLD = 10_000;
+    private static final int CHAMPION_SIZE = 1_024;
+    private static final int PREFIX_CACHE_SIZE = 4_096;
+    // Above this share of changed products a full rebuild is cheaper than patching postings
+    private static final double REBUILD_RATIO = 0.2;
+    // Edits allowed when correcting a term: one from 3 characters, two from 8, 0 disables
+    private static final int MAX_EDITS = Integer.getInteger("search.maxEdits", 2);
+    private static final int MAX_CORRECTIONS = 16;
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private final Object writeLock = new Object();
+    private final LongAdder corrections = new LongAdder();
+    private final LongAdder uncorrectable = new LongAdder();
+    private volatile State state = new State(new TreeMap<>(), new FuzzyTermIndex(), new boolean[0],
+            new float[0], 0, 0, id -> null);
+
+    /** Brings the index in line with the given products, which it keeps a reference to. */
+    public void sync(Collection<Product> products) {
+        sync(products, lookup(products));
+    }
+
+    /**
+     * Brings the index in line with the given catalog, touching only products that
+     * changed. Hits are resolved through lookup from then on, and the previous lookup
+     * is used once more to find the terms of changed products.
+     */
+    public void sync(Collection<Product> products, IntFunction<Product> lookup) {
+        synchronized (writeLock) {
+            State s = state;
+            IntFunction<Product> previous = s.lookup;
+            BitSet seen = new BitSet();
+            List<Product> changed = new ArrayList<>();
+            for (Product p : products) {
+                seen.set(p.getId());
+                Product old = isLive(s, p.getId()) ? previous.apply(p.getId()) : null;
+                if (old == null || !sameContent(old, p)) {
+                    changed.add(p);
+                }
+            }
+            List<Integer> removed = new ArrayList<>();
+            for (int id = 0; id < s.live.length; id++) {
+                if (s.live[id] && !seen.get(id)) {
+                    removed.add(id);
+                }
+            }
+            if (s.docCount == 0 || changed.size() + removed.size() > s.docCount * REBUILD_RATIO) {
+                rebuild(products, lookup);
+                return;
+            }
+            // The fuzzy index only grows and is shared; its readers skip words no longer in the terms
+            State next = new State(new TreeMap<>(s.terms), s.fuzzy, s.live.clone(), s.lengths.clone(), s.docCount,
+                    s.totalLength, lookup);
+            for (Product p : changed) {
+                update(next, p, previous);
+            }
+            for (int id : removed) {
+                remove(next, id, previous);
+            }
+            state = next;
+        }
+    }
+
+    public void rebuild(Collection<Product> products) {
+        rebuild(products, lookup(products));
+    }
+
+    public void rebuild(Collection<Product> products, IntFunction<Product> lookup) {
+        synchronized (writeLock) {
+            int maxId = 0;
+            for (Product p : products) {
+                maxId = Math.max(maxId, p.getId());
+            }
+            boolean[] live = new boolean[maxId + 1];
+
+            // Visiting documents in id order keeps every posting list sorted as it is built.
+            // Catalogs already iterate that way; anything else is sorted first
+            Collection<Product> ordered = products;
+            int lastId = -1;
+            for (Product p : products) {
+                if (p.getId() < lastId) {
+                    List<Product> sorted = new ArrayList<>(products);
+                    sorted.sort(Comparator.comparingInt(Product::getId));
+                    ordered = sorted;
+                    break;
+                }
+                lastId = p.getId();
+            }
+            Map<String, PostingsBuilder> builders = new HashMap<>();
+            FuzzyTermIndex fuzzy = new FuzzyTermIndex();
+            float[] lengths = new float[live.length];
+            double totalLength = 0;
+            int count = 0;
+            for (Product p : ordered) {
+                int id = p.getId();
+                if (live[id]) {
+                    continue;
+                }
+                Map<String, Float> tfs = termFrequencies(p);
+                float length = 0;
+                for (Map.Entry<String, Float> e : tfs.entrySet()) {
+                    builders.computeIfAbsent(e.getKey(), k -> new PostingsBuilder()).add(id, e.getValue());
+                    length += e.getValue();
+                }
+                addFuzzyTerms(fuzzy, p);
+                live[id] = true;
+                lengths[id] = length;
+                totalLength += length;
+                count++;
+            }
+
+            NavigableMap<String, Postings> terms = new TreeMap<>();
+            for (Map.Entry<String, PostingsBuilder> e : builders.entrySet()) {
+                terms.put(e.getKey(), e.getValue().build());
+            }
+            state = new State(terms, fuzzy, live, lengths, count, totalLength, lookup);
+        }
+    }
+
+    // Lookup over products held in memory, for callers that have no catalog of their own
+    private static IntFunction<Product> lookup(Collection<Product> products) {
+        Map<Integer, Product> byId = new HashMap<>();
+        for (Product p : products) {
+            byId.put(p.getId(), p);
+        }
+        return byId::get;
+    }
+
+    private static boolean isLive(State s, int id) {
+        return id < s.live.length && s.live[id];
+    }
+
+    // Both patch a state that is not published yet; previous resolves the ids currently
+    // indexed to the content they were indexed with
+    private static void update(State s, Product product, IntFunction<Product> previous) {
+        int id = product.getId();
+        if (isLive(s, id)) {
+            remove(s, id, previous);
+        }
+        if (id >= s.live.length) {
+            int capacity = Math.max(id + 1, s.live.length + (s.live.length >> 1));
+            s.live = Arrays.copyOf(s.live, capacity);
+            s.lengths = Arrays.copyOf(s.lengths, capacity);
+        }
+
+        Map<String, Float> tfs = termFrequencies(product);
+        float length = 0;
+        for (Map.Entry<String, Float> e : tfs.entrySet()) {
+            Postings postings = s.terms.get(e.getKey());
+            s.terms.put(e.getKey(), postings == null
+                    ? new Postings(new int[] { id }, new float[] { e.getValue() })
+                    : postings.with(id, e.getValue()));
+            length += e.getValue();
+        }
+        addFuzzyTerms(s.fuzzy, product);
+        s.lengths[id] = length;
+        s.live[id] = true;
+        s.totalLength += length;
+        s.docCount++;
+    }
+
+    private static void remove(State s, int id, IntFunction<Product> previous) {
+        Product old = isLive(s, id) ? previous.apply(id) : null;
+        if (old == null) {
+            return;
+        }
+        for (String term : termFrequencies(old).keySet()) {
+            Postings postings = s.terms.get(term);
+            if (postings == null) {
+                continue;
+            }
+            Postings remaining = postings.without(id);
+            if (remaining == null) {
+                s.terms.remove(term);
+            } else {
+                s.terms.put(term, remaining);
+            }
+        }
+        s.live[id] = false;
+        s.totalLength -= s.lengths[id];
+        s.lengths[id] = 0;
+        s.docCount--;
+    }
+
+    /** Returns up to {@code limit} products matching every query term, best match first. */
+    public List<Product> search(String query, int limit) {
+        List<Hit> hits = search(query, limit, Float.POSITIVE_INFINITY, 0);
+        List<Product> products = new ArrayList<>(hits.size());
+        for (Hit hit : hits) {
+            products.add(hit.product);
+        }
+        return products;
+    }
+
+    /**
+     * Ranked hits ordered by score descending, then id ascending, starting after the
+     * hit (afterScore, afterId). Pass {@code Float.POSITIVE_INFINITY} for the first page.
+     */
+    public List<Hit> search(String query, int limit, float afterScore, int afterId) {
+        return search(query, limit, afterScore, afterId, null);
+    }
+
+    /** Same as above, keeping only documents whose product id the filter accepts (null accepts all). */
+    public List<Hit> search(String query, int limit, float afterScore, int afterId, IntPredicate filter) {
+        State s = state;
+        List<Postings> lists = resolve(s, query);
+        if (lists == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        // The champions are the head of the exact ranking, so a page found among them is the
+        // page the full scan would return, cursor and filter included
+        if (lists.size() == 1 && lists.get(0).docs.length > CHAMPION_THRESHOLD && limit <= CHAMPION_SIZE) {
+            TopK top = new TopK(limit);
+            scoreChampions(s, lists.get(0), (doc, score) -> {
+                if ((score < afterScore || (score == afterScore && doc > afterId))
+                        && (filter == null || filter.test(doc))) {
+                    top.offer(doc, score);
+                }
+            });
+            if (top.size() >= limit) {
+                return toHits(s, top);
+            }
+        }
+
+        TopK top = new TopK(limit);
+        intersect(s, lists, (doc, score) -> {
+            if ((score < afterScore || (score == afterScore && doc > afterId))
+                    && (filter == null || filter.test(doc))) {
+                top.offer(doc, score);
+            }
+        });
+        return toHits(s, top);
+    }
+
+    /** Every product matching all query terms, in id order, without ranking. */
+    public List<Product> matchAll(String query) {
+        State s = state;
+        List<Postings> lists = resolve(s, query);
+        if (lists == null) {
+            return Collections.emptyList();
+        }
+        List<Product> matches = new ArrayList<>();
+        for (int id : matchIds(s, lists)) {
+            Product p = s.lookup.apply(id);
+            if (p != null) {
+                matches.add(p);
+            }
+        }
+        return matches;
+    }
+
+    /** Ids of every product matching all query terms, ascending, without materializing them. */
+    public int[] matchIds(String query) {
+        State s = state;
+        List<Postings> lists = resolve(s, query);
+        return lists == null ? new int[0] : matchIds(s, lists);
+    }
+
+    private static int[] matchIds(State s, List<Postings> lists) {
+        boolean[] live = s.live;
+        int[] ids = new int[lists.get(0).docs.length];
+        int[] count = new int[1];
+        intersect(s, lists, (doc, score) -> {
+            if (doc < live.length && live[doc]) {
+                ids[count[0]++] = doc;
+            }
+        });
+        return Arrays.copyOf(ids, count[0]);
+    }
+
+    // Posting lists for each distinct query term, rarest first; null when some term has no match
+    private List<Postings> resolve(State s, String query) {
+        Set<String> queryTerms = new LinkedHashSet<>(Tokenizer.tokenize(query));
+        if (queryTerms.isEmpty() || s.docCount == 0) {
+            return null;
+        }
+        boolean lastIsPrefix = Character.isLetterOrDigit(query.charAt(query.length() - 1));
+        String last = null;
+        for (String term : queryTerms) {
+            last = term;
+        }
+
+        List<Postings> lists = new ArrayList<>(queryTerms.size());
+        for (String term : queryTerms) {
+            Postings postings = lastIsPrefix && term.equals(last) ? prefixPostings(s, term) : s.terms.get(term);
+            if (postings == null) {
+                postings = correctedPostings(s, term);
+            }
+            if (postings == null) {
+                return null;
+            }
+            lists.add(postings);
+        }
+        lists.sort(Comparator.comparingInt(p -> p.docs.length));
+        return lists;
+    }
+
+    /**
+     * Intersects the lists starting from the rarest so the candidate set only shrinks,
+     * accumulating BM25 scores; matches of the last list go straight to the sink.
+     */
+    private static void intersect(State s, List<Postings> lists, HitSink sink) {
+        Scratch scratch = SCRATCH.get();
+        int[] candidates = lists.get(0).docs;
+        float[] scores = null;
+        int size = candidates.length;
+        double avgLength = s.totalLength / s.docCount;
+        float[] lengths = s.lengths;
+
+        for (int t = 0; t < lists.size() && size > 0; t++) {
+            Postings postings = lists.get(t);
+            boolean lastList = t == lists.size() - 1;
+            double idf = idf(s, postings);
+            int[] nextCandidates = lastList ? null : scratch.candidates(size);
+            float[] nextScores = lastList ? null : scratch.scores(size);
+            int kept = 0;
+            int from = 0;
+            for (int i = 0; i < size; i++) {
+                int doc = candidates[i];
+                int pos = t == 0 ? i : postings.find(doc, from);
+                if (pos < 0) {
+                    from = -pos - 1;
+                    continue;
+                }
+                from = pos + 1;
+                float tf = postings.tfs[pos];
+                double length = doc < lengths.length && lengths[doc] > 0 ? lengths[doc] : avgLength;
+                double norm = K1 * (1 - B + B * length / avgLength);
+                float score = (scores == null ? 0 : scores[i]) + (float) (idf * tf * (K1 + 1) / (tf + norm));
+                if (lastList) {
+                    sink.accept(doc, score);
+                } else {
+                    nextCandidates[kept] = doc;
+                    nextScores[kept] = score;
+                    kept++;
+                }
+            }
+            candidates = nextCandidates;
+            scores = nextScores;
+            size = kept;
+            scratch.flip();
+        }
+    }
+
+    /** Tiered evaluation of a common single term: only its highest-scoring documents are visited. */
+    private static void scoreChampions(State s, Postings postings, HitSink sink) {
+        int[] champions = s.champions.get(postings);
+        if (champions == null) {
+            TopK top = new TopK(CHAMPION_SIZE);
+            for (int i = 0; i < postings.docs.length; i++) {
+                top.offer(postings.docs[i], score(s, postings, i));
+            }
+            champions = top.drain(null);
+            if (s.champions.size() >= PREFIX_CACHE_SIZE) {
+                s.champions.clear();
+            }
+            s.champions.put(postings, champions);
+        }
+        for (int doc : champions) {
+            sink.accept(doc, score(s, postings, Arrays.binarySearch(postings.docs, doc)));
+        }
+    }
+
+    // The same arithmetic as intersect, so champions rank exactly as a full scan would
+    private static float score(State s, Postings postings, int pos) {
+        double avgLength = s.totalLength / s.docCount;
+        int doc = postings.docs[pos];
+        float tf = postings.tfs[pos];
+        double length = doc < s.lengths.length && s.lengths[doc] > 0 ? s.lengths[doc] : avgLength;
+        double norm = K1 * (1 - B + B * length / avgLength);
+        return (float) (idf(s, postings) * tf * (K1 + 1) / (tf + norm));
+    }
+
+    private static double idf(State s, Postings postings) {
+        int df = postings.docs.length;
+        return Math.log(1 + (s.docCount - df + 0.5) / (df + 0.5));
+    }
+
+    private static List<Hit> toHits(State s, TopK top) {
+        float[] scores = new float[top.size()];
+        int[] ranked = top.drain(scores);
+        List<Hit> hits = new ArrayList<>(ranked.length);
+        for (int i = 0; i < ranked.length; i++) {
+            Product p = isLive(s, ranked[i]) ? s.lookup.apply(ranked[i]) : null;
+            if (p != null) {
+                hits.add(new Hit(p, scores[i]));
+            }
+        }
+        return hits;
+    }
+
+    public int size() {
+        return state.docCount;
+    }
+
+    public Map<String, Object> getStats() {
+        State s = state;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("documents", s.docCount);
+        stats.put("terms", s.terms.size());
+        stats.put("fuzzyTerms", s.fuzzy.size());
+        stats.put("trigrams", s.fuzzy.trigramCount());
+        stats.put("corrections", corrections.sum());
+        stats.put("uncorrectable", uncorrectable.sum());
+        return stats;
+    }
+
+    private static Postings prefixPostings(State s, String prefix) {
+        if (prefix.length() < MIN_PREFIX_LENGTH) {
+            return s.terms.get(prefix);
+        }
+        Postings cached = s.prefixCache.get(prefix);
+        if (cached != null) {
+            return cached;
+        }
+        List<Postings> expansions = new ArrayList<>(
+                s.terms.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values());
+        Postings merged = Postings.unionAll(expansions);
+        if (merged != null && expansions.size() > 1) {
+            if (s.prefixCache.size() >= PREFIX_CACHE_SIZE) {
+                s.prefixCache.clear();
+            }
+            s.prefixCache.put(prefix, merged);
+        }
+        return merged;
+    }
+
+    /**
+     * Union of the postings of the name and brand words closest to a term that matched
+     * nothing, or null when none is within the edit distance allowed for its length.
+     */
+    private Postings correctedPostings(State s, String term) {
+        int maxEdits = term.length() >= 8 ? 2 : term.length() >= FuzzyTermIndex.MIN_LENGTH ? 1 : 0;
+        maxEdits = Math.min(maxEdits, MAX_EDITS);
+        if (maxEdits == 0) {
+            return null;
+        }
+        // Query terms are alphanumeric, so this never collides with a prefix key
+        String cacheKey = "~" + term;
+        Postings cached = s.prefixCache.get(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+        Postings merged = null;
+        for (String correction : s.fuzzy.closest(term, maxEdits, MAX_CORRECTIONS)) {
+            // Words of products since removed stay in the trigram index until the next rebuild
+            Postings postings = s.terms.get(correction);
+            if (postings != null) {
+                merged = merged == null ? postings : merged.union(postings);
+            }
+        }
+        if (merged == null) {
+            uncorrectable.increment();
+            return null;
+        }
+        corrections.increment();
+        if (s.prefixCache.size() >= PREFIX_CACHE_SIZE) {
+            s.prefixCache.clear();
+        }
+        s.prefixCache.put(cacheKey, merged);
+        return merged;
+    }
+
+    private static void addFuzzyTerms(FuzzyTermIndex fuzzy, Product p) {
+        for (String term : Tokenizer.tokenize(p.getName())) {
+            fuzzy.add(term);
+        }
+        for (String term : Tokenizer.tokenize(p.getBrand())) {
+            fuzzy.add(term);
+        }
+    }
+
+    private static Map<String, Float> termFrequencies(Product p) {
+        Map<String, Float> tfs = new HashMap<>();
+        addField(tfs, p.getName(), NAME_WEIGHT);
+        addField(tfs, p.getBrand(), BRAND_WEIGHT);
+        addField(tfs, p.getCategory(), CATEGORY_WEIGHT);
+        addField(tfs, p.getDescription(), DESCRIPTION_WEIGHT);
+        return tfs;
+    }
+
+    private static void addField(Map<String, Float> tfs, String text, float weight) {
+        for (String term : Tokenizer.tokenize(text)) {
+            tfs.merge(term, weight, Float::sum);
+        }
+    }
+
+    private static boolean sameContent(Product a, Product b) {
+        return Objects.equals(a.getName(), b.getName()) && Objects.equals(a.getBrand(), b.getBrand())
+                && Objects.equals(a.getCategory(), b.getCategory())
+                && Objects.equals(a.getDescription(), b.getDescription())
+                && a.getPrice() == b.getPrice() && a.getStock() == b.getStock() && a.getRating() == b.getRating()
+                && Objects.equals(a.getImage(), b.getImage());
+    }
+
+    public static final class Hit {
+        private final Product product;
+        private final float score;
+
+        Hit(Product product, float score) {
+            this.product = product;
+            this.score = score;
+        }
+
+        public Product getProduct() {
+            return product;
+        }
+
+        public float getScore() {
+            return score;
+        }
+    }
+
+    private interface HitSink {
+        void accept(int doc, float score);
+    }
+
+    // Two pairs of candidate/score buffers per thread, alternated between intersection rounds
+    private static final class Scratch {
+        private int[][] candidates = { new int[256], new int[256] };
+        private float[][] scores = { new float[256], new float[256] };
+        private int current;
+
+        int[] candidates(int size) {
+            if (candidates[current].length < size) {
+                candidates[current] = new int[size];
+            }
+            return candidates[current];
+        }
+
+        float[] scores(int size) {
+            if (scores[current].length < size) {
+                scores[current] = new float[size];
+            }
+            return scores[current];
+        }
+
+        void flip() {
+            current ^= 1;
+        }
+    }
+
+    // Only written by the writer before the state is published
+    private static final class State {
+        final NavigableMap<String, Postings> terms;
+        final FuzzyTermIndex fuzzy;
+        final IntFunction<Product> lookup;
+        // Merged postings of recent prefix queries and corrected terms, and champion lists
+        // ranked under this state's statistics
+        final Map<String, Postings> prefixCache = new ConcurrentHashMap<>();
+        final Map<Postings, int[]> champions = new ConcurrentHashMap<>();
+        boolean[] live;
+        float[] lengths;
+        int docCount;
+        double totalLength;
+
+        State(NavigableMap<String, Postings> terms, FuzzyTermIndex fuzzy, boolean[] live, float[] lengths,
+                int docCount, double totalLength, IntFunction<Product> lookup) {
+            this.terms = terms;
+            this.fuzzy = fuzzy;
+            this.live = live;
+            this.lengths = lengths;
+            this.docCount = docCount;
+            this.totalLength = totalLength;
+            this.lookup = lookup;
+        }
+    }
+
+    private static final class Postings {
+        final int[] docs;
+        final float[] tfs;
+
+        Postings(int[] docs, float[] tfs) {
+            this.docs = docs;
+            this.tfs = tfs;
+        }
+
+        /**
+         * Galloping search starting at {@code from}; returns the position of {@code doc} or
+         * a negative insertion point when absent, like Arrays.binarySearch.
+         */
+        int find(int doc, int from) {
+            if (from >= docs.length) {
+                return -docs.length - 1;
+            }
+            int step = 1;
+            int hi = from;
+            while (hi < docs.length && docs[hi] < doc) {
+                from = hi + 1;
+                hi += step;
+                step <<= 1;
+            }
+            return Arrays.binarySearch(docs, from, Math.min(hi + 1, docs.length), doc);
+        }
+
+        Postings with(int doc, float tf) {
+            int pos = Arrays.binarySearch(docs, doc);
+            if (pos >= 0) {
+                float[] newTfs = tfs.clone();
+                newTfs[pos] = tf;
+                return new Postings(docs, newTfs);
+            }
+            int insert = -pos - 1;
+            int[] newDocs = new int[docs.length + 1];
+            float[] newTfs = new float[tfs.length + 1];
+            System.arraycopy(docs, 0, newDocs, 0, insert);
+            System.arraycopy(tfs, 0, newTfs, 0, insert);
+            newDocs[insert] = doc;
+            newTfs[insert] = tf;
+            System.arraycopy(docs, insert, newDocs, insert + 1, docs.length - insert);
+            System.arraycopy(tfs, insert, newTfs, insert + 1, tfs.length - insert);
+            return new Postings(newDocs, newTfs);
+        }
+
+        Postings without(int doc) {
+            int pos = Arrays.binarySearch(docs, doc);
+            if (pos < 0) {
+                return this;
+            }
+            if (docs.length == 1) {
+                return null;
+            }
+            int[] newDocs = new int[docs.length - 1];
+            float[] newTfs = new float[tfs.length - 1];
+            System.arraycopy(docs, 0, newDocs, 0, pos);
+            System.arraycopy(tfs, 0, newTfs, 0, pos);
+            System.arraycopy(docs, pos + 1, newDocs, pos, docs.length - pos - 1);
+            System.arraycopy(tfs, pos + 1, newTfs, pos, tfs.length - pos - 1);
+            return new Postings(newDocs, newTfs);
+        }
+
+        /** Union of any number of lists merged pairwise, so each posting is copied log(n) times; null if none. */
+        static Postings unionAll(List<Postings> lists) {
+            List<Postings> round = lists;
+            while (round.size() > 1) {
+                List<Postings> merged = new ArrayList<>((round.size() + 1) / 2);
+                for (int i = 0; i < round.size(); i += 2) {
+                    merged.add(i + 1 < round.size() ? round.get(i).union(round.get(i + 1)) : round.get(i));
+                }
+                round = merged;
+            }
+            return round.isEmpty() ? null : round.get(0);
+        }
+
+        /** Merges two sorted posting lists, summing frequencies of documents present in both. */
+        Postings union(Postings other) {
+            PostingsBuilder merged = new PostingsBuilder(docs.length + other.docs.length);
+            int i = 0;
+            int j = 0;
+            while (i < docs.length || j < other.docs.length) {
+                if (j == other.docs.length || (i < docs.length && docs[i] < other.docs[j])) {
+                    merged.add(docs[i], tfs[i]);
+                    i++;
+                } else if (i == docs.length || other.docs[j] < docs[i]) {
+                    merged.add(other.docs[j], other.tfs[j]);
+                    j++;
+                } else {
+                    merged.add(docs[i], tfs[i] + other.tfs[j]);
+                    i++;
+                    j++;
+                }
+            }
+            return merged.build();
+        }
+    }
+
+    private static final class PostingsBuilder {
+        private int[] docs;
+        private float[] tfs;
+        private int size;
+
+        PostingsBuilder() {
+            this(4);
+        }
+
+        PostingsBuilder(int capacity) {
+            docs = new int[Math.max(capacity, 1)];
+            tfs = new float[docs.length];
+        }
+
+        void add(int doc, float tf) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                tfs = Arrays.copyOf(tfs, size * 2);
+            }
+            docs[size] = doc;
+            tfs[size] = tf;
+            size++;
+        }
+
+        Postings build() {
+            return new Postings(Arrays.copyOf(docs, size), Arrays.copyOf(tfs, size));
+        }
+    }
+}
@@ -0,0 +1,678 @@
+package com.ecommerce.search;
+
+import com.ecommerce.metrics.Histogram;
+import com.ecommerce.model.Product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Typeahead over product names, brands and categories. Texts are normalized
+ * to lowercase words separated by single spaces, and each is keyed from its
+ * start and, for product names, from the start of its next few words, so
+ * "pro" finds "iPhone 16 Pro Max". Suggestions rank by weight: the product's
+ * rating plus the log of its units sold. A brand or category weighs a little
+ * more than its best product; between builds its weight only ever rises.
+ *
+ * Keys are kept sorted in one array pointing into a char arena. A prefix then
+ * covers one contiguous range found by binary search, which is a node of the
+ * implied trie. Small ranges are scanned; every range above SCAN_LIMIT keys
+ * has its best suggestions precomputed bottom-up when the index is built, so a
+ * lookup never scans more than SCAN_LIMIT keys.
+ *
+ * Products added or changed after a build go into a small sorted overlay, and
+ * their old entries are tombstoned, so updates are applied without rebuilding.
+ * Once the overlay outgrows {@code suggest.overlayKeys} keys or a large share
+ * of the catalog changes, the index is rebuilt. Readers never lock; a single
+ * writer applies changes.
+ */
+public class SuggestIndex {
+    public static final int DEFAULT_LIMIT = 10;
+    public static final int MAX_LIMIT = 20;
+
+    private static final int MAX_WORD_STARTS = 4;
+    // Ranges with more keys than this have their best suggestions precomputed
+    private static final int SCAN_LIMIT = 128;
+    // Precomputed lists keep some slack over MAX_LIMIT for tombstones and duplicate texts
+    private static final int CACHED = 32;
+    private static final int OVERLAY_LIMIT = Integer.getInteger("suggest.overlayKeys", 4096);
+    private static final double REBUILD_RATIO = 0.2;
+    private static final float GROUP_BONUS = 1f;
+
+    private static final byte PRODUCT = 0;
+    private static final byte BRAND = 1;
+    private static final byte CATEGORY = 2;
+    private static final String[] TYPES = { "product", "brand", "category" };
+
+    private final Object writeLock = new Object();
+    private volatile State state = new State(Base.build(new ArrayList<>(), new HashMap<>()));
+    private long nextOverlayKey;
+
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+    private final LongAdder fallbackScans = new LongAdder();
+    private final Histogram queryMicros = new Histogram("us");
+    private volatile long lastBuildMs;
+
+    /**
+     * Brings the index in line with the catalog and sales counts (units sold by
+     * product id), touching only products whose text or weight changed.
+     */
+    public void sync(Collection<Product> products, Map<Integer, Integer> unitsSold) {
+        synchronized (writeLock) {
+            State s = state;
+            Base base = s.base;
+            BitSet seen = new BitSet();
+            List<Product> changed = new ArrayList<>();
+            for (Product p : products) {
+                seen.set(p.getId());
+                int hash = contentHash(p, weight(p, unitsSold));
+                OverlayEntry overlaid = s.overlayProducts.get(p.getId());
+                int pos = base.productPosition(p.getId());
+                boolean current = overlaid != null ? overlaid.hash == hash
+                        : pos >= 0 && !base.dead[pos] && base.productHashes[pos] == hash;
+                if (!current) {
+                    changed.add(p);
+                }
+            }
+            List<Integer> removed = new ArrayList<>();
+            for (int pos = 0; pos < base.products; pos++) {
+                if (!base.dead[pos] && !seen.get(base.productIds[pos])) {
+                    removed.add(base.productIds[pos]);
+                }
+            }
+            for (int id : s.overlayProducts.keySet()) {
+                if (!seen.get(id)) {
+                    removed.add(id);
+                }
+            }
+            if (changed.size() + removed.size() > base.products * REBUILD_RATIO
+                    || s.overlay.size() + changed.size() * (MAX_WORD_STARTS + 2) > OVERLAY_LIMIT) {
+                rebuild(products, unitsSold);
+                return;
+            }
+            for (int id : removed) {
+                retire(s, id);
+            }
+            for (Product p : changed) {
+                retire(s, p.getId());
+                add(s, p, weight(p, unitsSold));
+            }
+        }
+    }
+
+    public void rebuild(Collection<Product> products, Map<Integer, Integer> unitsSold) {
+        synchronized (writeLock) {
+            long start = System.currentTimeMillis();
+            state = new State(Base.build(products, unitsSold));
+            rebuilds.increment();
+            lastBuildMs = System.currentTimeMillis() - start;
+        }
+    }
+
+    /** Up to limit suggestions whose text, or a later word of a product name, starts with prefix. */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        long start = System.nanoTime();
+        String key = normalize(prefix, true);
+        if (key.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        State s = state;
+        Base base = s.base;
+        List<Suggestion> candidates = new ArrayList<>();
+        for (int id : base.best(key, limit, this)) {
+            candidates.add(base.suggestion(id));
+        }
+        for (Suggestion overlaid : s.overlay.subMap(key, true, key + Character.MAX_VALUE, false).values()) {
+            candidates.add(overlaid);
+        }
+        candidates.sort(Comparator.comparingDouble((Suggestion c) -> -c.weight).thenComparing(c -> c.text));
+
+        // Several products may share a name; each text is offered once per type
+        List<Suggestion> result = new ArrayList<>(Math.min(limit, candidates.size()));
+        Set<String> texts = new HashSet<>();
+        for (Suggestion c : candidates) {
+            if (result.size() == limit) {
+                break;
+            }
+            if (texts.add(c.type + ":" + normalize(c.text, false))) {
+                result.add(c);
+            }
+        }
+        queries.increment();
+        queryMicros.record((System.nanoTime() - start) / 1_000);
+        return result;
+    }
+
+    public Map<String, Object> getStats() {
+        State s = state;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("suggestions", s.base.size - s.tombstones + s.overlayProducts.size() + s.overlayGroups.size());
+        stats.put("keys", s.base.keys.length);
+        stats.put("cachedRanges", s.base.cache.size());
+        stats.put("overlayKeys", s.overlay.size());
+        stats.put("tombstones", s.tombstones);
+        stats.put("rebuilds", rebuilds.sum());
+        stats.put("lastBuildMs", lastBuildMs);
+        stats.put("queries", queries.sum());
+        stats.put("fallbackScans", fallbackScans.sum());
+        stats.put("queryTime", queryMicros.snapshot());
+        return stats;
+    }
+
+    // Takes the product's current entry out of the base or the overlay
+    private static void retire(State s, int productId) {
+        OverlayEntry overlaid = s.overlayProducts.remove(productId);
+        if (overlaid != null) {
+            for (String key : overlaid.keys) {
+                s.overlay.remove(key);
+            }
+            return;
+        }
+        int pos = s.base.productPosition(productId);
+        if (pos >= 0 && !s.base.dead[pos]) {
+            s.base.dead[pos] = true;
+            s.tombstones++;
+        }
+    }
+
+    private void add(State s, Product p, float weight) {
+        Suggestion suggestion = new Suggestion(p.getName() == null ? "" : p.getName().trim(), TYPES[PRODUCT],
+                p.getId(), weight);
+        List<String> keys = new ArrayList<>();
+        String text = normalize(p.getName(), false);
+        for (int offset : wordStarts(text, MAX_WORD_STARTS)) {
+            keys.add(overlayKey(s, text.substring(offset), suggestion));
+        }
+        s.overlayProducts.put(p.getId(), new OverlayEntry(contentHash(p, weight), weight, keys));
+        raiseGroup(s, BRAND, p.getBrand(), weight + GROUP_BONUS);
+        raiseGroup(s, CATEGORY, p.getCategory(), weight + GROUP_BONUS);
+    }
+
+    // Adds a brand or category the index has not seen, or re-adds one whose best product got heavier
+    private void raiseGroup(State s, byte type, String value, float weight) {
+        String text = normalize(value, false);
+        if (text.isEmpty()) {
+            return;
+        }
+        String group = type + ":" + text;
+        Integer id = s.base.groups.get(group);
+        OverlayEntry overlaid = s.overlayGroups.get(group);
+        String display = id == null ? value.trim() : s.base.displays[id];
+        if (overlaid != null) {
+            if (overlaid.weight >= weight) {
+                return;
+            }
+            s.overlay.remove(overlaid.keys.get(0));
+        } else if (id != null) {
+            if (s.base.dead[id] || s.base.weights[id] >= weight) {
+                return;
+            }
+            s.base.dead[id] = true;
+            s.tombstones++;
+        }
+        String key = overlayKey(s, text, new Suggestion(display, TYPES[type], 0, weight));
+        s.overlayGroups.put(group, new OverlayEntry(0, weight, List.of(key)));
+    }
+
+    private String overlayKey(State s, String text, Suggestion suggestion) {
+        // The suffix keeps keys unique while sorting right after the text itself
+        String key = text + '\u0000' + nextOverlayKey++;
+        s.overlay.put(key, suggestion);
+        return key;
+    }
+
+    static float weight(Product p, Map<Integer, Integer> unitsSold) {
+        Integer sold = unitsSold.get(p.getId());
+        return p.getRating() + (float) Math.log1p(sold == null ? 0 : Math.max(0, sold));
+    }
+
+    private static int contentHash(Product p, float weight) {
+        return Objects.hash(p.getName(), p.getBrand(), p.getCategory(), weight);
+    }
+
+    /**
+     * Lowercase letters and digits with every other run of characters turned
+     * into one space. Queries keep a trailing space so "pro " only matches the
+     * whole word.
+     */
+    static String normalize(String text, boolean keepTrailingSpace) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean gap = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (gap && normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+                gap = false;
+                normalized.append(Character.toLowerCase(c));
+            } else {
+                gap = true;
+            }
+        }
+        if (keepTrailingSpace && gap && normalized.length() > 0) {
+            normalized.append(' ');
+        }
+        return normalized.toString();
+    }
+
+    private static int[] wordStarts(String text, int max) {
+        if (text.isEmpty()) {
+            return new int[0];
+        }
+        int[] starts = new int[max];
+        int count = 1;
+        for (int i = 1; i < text.length() && count < max; i++) {
+            if (text.charAt(i - 1) == ' ') {
+                starts[count++] = i;
+            }
+        }
+        return Arrays.copyOf(starts, count);
+    }
+
+    public static final class Suggestion {
+        private final String text;
+        private final String type;
+        private final int productId;
+        private final float weight;
+
+        Suggestion(String text, String type, int productId, float weight) {
+            this.text = text;
+            this.type = type;
+            this.productId = productId;
+            this.weight = weight;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        /** "product", "brand" or "category". */
+        public String getType() {
+            return type;
+        }
+
+        /** The product's id; 0 for brands and categories. */
+        public int getProductId() {
+            return productId;
+        }
+
+        public float getWeight() {
+            return weight;
+        }
+    }
+
+    private static final class OverlayEntry {
+        final int hash;
+        final float weight;
+        final List<String> keys;
+
+        OverlayEntry(int hash, float weight, List<String> keys) {
+            this.hash = hash;
+            this.weight = weight;
+            this.keys = keys;
+        }
+    }
+
+    private static final class State {
+        final Base base;
+        // Entries added since the build, keyed by normalized text plus a unique suffix
+        final ConcurrentSkipListMap<String, Suggestion> overlay = new ConcurrentSkipListMap<>();
+        // Writer-side bookkeeping for the overlay
+        final Map<Integer, OverlayEntry> overlayProducts = new HashMap<>();
+        final Map<String, OverlayEntry> overlayGroups = new HashMap<>();
+        volatile int tombstones;
+
+        State(Base base) {
+            this.base = base;
+        }
+    }
+
+    /**
+     * The immutable part of the index. Suggestions are numbered with products
+     * first, in id order, then brands and categories. Each key packs its
+     * suggestion and the offset into that suggestion's normalized text where
+     * the key starts.
+     */
+    private static final class Base {
+        final int size;
+        final int products;
+        final byte[] types;
+        final int[] productIds;
+        final int[] productHashes;
+        final float[] weights;
+        final String[] displays;
+        final char[] chars;
+        // Normalized text of suggestion i is chars[textStart[i], textStart[i + 1])
+        final int[] textStart;
+        // Sorted (suggestion << 16 | offset)
+        final long[] keys;
+        // Best suggestions per key range (lo << 32 | hi) above SCAN_LIMIT keys
+        final Map<Long, int[]> cache = new HashMap<>();
+        final Map<String, Integer> groups;
+        // Suggestions replaced or removed since the build
+        final boolean[] dead;
+
+        private Base(int size, int products, byte[] types, int[] productIds, int[] productHashes, float[] weights,
+                String[] displays, char[] chars, int[] textStart, long[] keys, Map<String, Integer> groups) {
+            this.size = size;
+            this.products = products;
+            this.types = types;
+            this.productIds = productIds;
+            this.productHashes = productHashes;
+            this.weights = weights;
+            this.displays = displays;
+            this.chars = chars;
+            this.textStart = textStart;
+            this.keys = keys;
+            this.groups = groups;
+            this.dead = new boolean[size];
+        }
+
+        static Base build(Collection<Product> catalog, Map<Integer, Integer> unitsSold) {
+            List<Product> products = new ArrayList<>(catalog);
+            products.sort(Comparator.comparingInt(Product::getId));
+            // Brands and categories by type and normalized text: first spelling seen, best product weight
+            Map<String, Integer> groups = new LinkedHashMap<>();
+            List<Byte> groupTypes = new ArrayList<>();
+            List<String> groupDisplays = new ArrayList<>();
+            List<Float> groupWeights = new ArrayList<>();
+            int n = products.size();
+            float[] productWeights = new float[n];
+            for (int i = 0; i < n; i++) {
+                Product p = products.get(i);
+                productWeights[i] = weight(p, unitsSold);
+                group(groups, groupTypes, groupDisplays, groupWeights, BRAND, p.getBrand(), productWeights[i]);
+                group(groups, groupTypes, groupDisplays, groupWeights, CATEGORY, p.getCategory(), productWeights[i]);
+            }
+
+            int size = n + groups.size();
+            byte[] types = new byte[size];
+            int[] productIds = new int[size];
+            int[] productHashes = new int[n];
+            float[] weights = new float[size];
+            String[] displays = new String[size];
+            int[] textStart = new int[size + 1];
+            StringBuilder chars = new StringBuilder();
+            long[] keys = new long[16];
+            int keyCount = 0;
+            for (int i = 0; i < size; i++) {
+                String text;
+                if (i < n) {
+                    Product p = products.get(i);
+                    types[i] = PRODUCT;
+                    productIds[i] = p.getId();
+                    productHashes[i] = contentHash(p, productWeights[i]);
+                    weights[i] = productWeights[i];
+                    displays[i] = p.getName() == null ? "" : p.getName().trim();
+                    text = normalize(p.getName(), false);
+                } else {
+                    int g = i - n;
+                    types[i] = groupTypes.get(g);
+                    weights[i] = groupWeights.get(g) + GROUP_BONUS;
+                    displays[i] = groupDisplays.get(g);
+                    text = normalize(displays[i], false);
+                }
+                // Offsets are packed into 16 bits
+                text = text.length() > Character.MAX_VALUE ? text.substring(0, Character.MAX_VALUE) : text;
+                textStart[i] = chars.length();
+                chars.append(text);
+                for (int offset : wordStarts(text, i < n ? MAX_WORD_STARTS : 1)) {
+                    if (keyCount == keys.length) {
+                        keys = Arrays.copyOf(keys, keyCount * 2);
+                    }
+                    keys[keyCount++] = (long) i << 16 | offset;
+                }
+            }
+            textStart[size] = chars.length();
+            char[] arena = new char[chars.length()];
+            chars.getChars(0, arena.length, arena, 0);
+
+            Map<String, Integer> groupIndex = new HashMap<>();
+            int g = 0;
+            for (String group : groups.keySet()) {
+                groupIndex.put(group, n + g++);
+            }
+            Base base = new Base(size, n, types, productIds, productHashes, weights, displays, arena, textStart,
+                    Arrays.copyOf(keys, keyCount), groupIndex);
+            base.sortKeys();
+            base.rank(0, keyCount, 0);
+            return base;
+        }
+
+        private static void group(Map<String, Integer> groups, List<Byte> types, List<String> displays,
+                List<Float> weights, byte type, String value, float weight) {
+            String text = normalize(value, false);
+            if (text.isEmpty()) {
+                return;
+            }
+            Integer g = groups.get(type + ":" + text);
+            if (g == null) {
+                groups.put(type + ":" + text, displays.size());
+                types.add(type);
+                displays.add(value.trim());
+                weights.add(weight);
+            } else if (weights.get(g) < weight) {
+                weights.set(g, weight);
+            }
+        }
+
+        /** Position of the product's suggestion, or -1. */
+        int productPosition(int productId) {
+            int pos = Arrays.binarySearch(productIds, 0, products, productId);
+            return pos >= 0 ? pos : -1;
+        }
+
+        Suggestion suggestion(int id) {
+            return new Suggestion(displays[id], TYPES[types[id]], types[id] == PRODUCT ? productIds[id] : 0,
+                    weights[id]);
+        }
+
+        /** The best live suggestions with a key starting with prefix, best first, at most CACHED. */
+        int[] best(String prefix, int limit, SuggestIndex index) {
+            int lo = bound(prefix, false);
+            int hi = bound(prefix, true);
+            if (lo >= hi) {
+                return new int[0];
+            }
+            int[] cached = hi - lo > SCAN_LIMIT ? cache.get((long) lo << 32 | hi) : null;
+            if (cached == null) {
+                return scan(lo, hi);
+            }
+            int[] live = new int[cached.length];
+            int count = 0;
+            for (int id : cached) {
+                if (!dead[id]) {
+                    live[count++] = id;
+                }
+            }
+            if (count < limit && cached.length == CACHED) {
+                // Tombstones ate too far into the list; rare, and cleared by the next rebuild
+                index.fallbackScans.increment();
+                return scan(lo, hi);
+            }
+            return Arrays.copyOf(live, count);
+        }
+
+        // First key >= prefix, or with after set, the first key past every key starting with prefix
+        private int bound(String prefix, boolean after) {
+            int lo = 0;
+            int hi = keys.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                int cmp = comparePrefix(keys[mid], prefix);
+                if (after ? cmp > 0 : cmp >= 0) {
+                    hi = mid;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+            return lo;
+        }
+
+        // Zero when the key starts with prefix, otherwise the order of the key relative to it
+        private int comparePrefix(long key, String prefix) {
+            int start = start(key);
+            int length = textStart[(int) (key >>> 16) + 1] - start;
+            int common = Math.min(length, prefix.length());
+            for (int i = 0; i < common; i++) {
+                int diff = chars[start + i] - prefix.charAt(i);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return length >= prefix.length() ? 0 : -1;
+        }
+
+        private int[] scan(int lo, int hi) {
+            TopK top = new TopK(CACHED * MAX_WORD_STARTS);
+            for (int i = lo; i < hi; i++) {
+                int id = (int) (keys[i] >>> 16);
+                if (!dead[id]) {
+                    top.offer(id, weights[id]);
+                }
+            }
+            return distinct(top);
+        }
+
+        /**
+         * Best CACHED suggestions of keys [lo, hi), which share their first depth
+         * chars, computed from the ranges one char longer. Results for ranges above
+         * SCAN_LIMIT are cached; smaller ones return null and are scanned instead.
+         */
+        private int[] rank(int lo, int hi, int depth) {
+            if (hi - lo <= SCAN_LIMIT) {
+                return null;
+            }
+            TopK top = new TopK(CACHED * MAX_WORD_STARTS);
+            int i = lo;
+            // Keys that end here sort before any longer key
+            while (i < hi && length(keys[i]) <= depth) {
+                int id = (int) (keys[i++] >>> 16);
+                top.offer(id, weights[id]);
+            }
+            while (i < hi) {
+                char c = charAt(keys[i], depth);
+                int end = groupEnd(i, hi, depth, c);
+                if (i == lo && end == hi) {
+                    // One branch covering the whole range is the same node one char deeper
+                    return rank(lo, hi, depth + 1);
+                }
+                int[] child = rank(i, end, depth + 1);
+                if (child == null) {
+                    for (int k = i; k < end; k++) {
+                        int id = (int) (keys[k] >>> 16);
+                        top.offer(id, weights[id]);
+                    }
+                } else {
+                    for (int id : child) {
+                        top.offer(id, weights[id]);
+                    }
+                }
+                i = end;
+            }
+            int[] best = distinct(top);
+            cache.put((long) lo << 32 | hi, best);
+            return best;
+        }
+
+        // First index in [from, hi) whose char at depth is past c
+        private int groupEnd(int from, int hi, int depth, char c) {
+            int lo = from;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (charAt(keys[mid], depth) > c) {
+                    hi = mid;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+            return lo;
+        }
+
+        private int start(long key) {
+            return textStart[(int) (key >>> 16)] + (int) (key & 0xffff);
+        }
+
+        private int length(long key) {
+            return textStart[(int) (key >>> 16) + 1] - start(key);
+        }
+
+        private char charAt(long key, int i) {
+            return chars[start(key) + i];
+        }
+
+        private int compare(long a, long b) {
+            int startA = start(a);
+            int startB = start(b);
+            int lengthA = length(a);
+            int lengthB = length(b);
+            int common = Math.min(lengthA, lengthB);
+            for (int i = 0; i < common; i++) {
+                int diff = chars[startA + i] - chars[startB + i];
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return lengthA != lengthB ? Integer.compare(lengthA, lengthB) : Long.compare(a, b);
+        }
+
+        // Bottom-up merge sort on the packed keys, comparing their text in the arena
+        private void sortKeys() {
+            int n = keys.length;
+            long[] source = keys;
+            long[] target = new long[n];
+            for (int width = 1; width < n; width *= 2) {
+                for (int lo = 0; lo < n; lo += 2 * width) {
+                    int mid = Math.min(lo + width, n);
+                    int hi = Math.min(lo + 2 * width, n);
+                    int i = lo;
+                    int j = mid;
+                    for (int k = lo; k < hi; k++) {
+                        if (i < mid && (j >= hi || compare(source[i], source[j]) <= 0)) {
+                            target[k] = source[i++];
+                        } else {
+                            target[k] = source[j++];
+                        }
+                    }
+                }
+                long[] swap = source;
+                source = target;
+                target = swap;
+            }
+            if (source != keys) {
+                System.arraycopy(source, 0, keys, 0, n);
+            }
+        }
+
+        // A suggestion can hold several keys in one range; keep its first, best-ranked entry
+        private static int[] distinct(TopK top) {
+            int[] ranked = top.drain(null);
+            int[] best = new int[Math.min(CACHED, ranked.length)];
+            Set<Integer> seen = new HashSet<>();
+            int count = 0;
+            for (int i = 0; i < ranked.length && count < best.length; i++) {
+                if (seen.add(ranked[i])) {
+                    best[count++] = ranked[i];
+                }
+            }
+            return Arrays.copyOf(best, count);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.ecommerce.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits text into lowercase alphanumeric terms with light plural folding
+ * ("shirts" -> "shirt"). Used for both indexing and queries so they agree.
+ */
+public final class Tokenizer {
+    private Tokenizer() {
+    }
+
+    public static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        int length = text.length();
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean word = i < length && Character.isLetterOrDigit(text.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                terms.add(normalize(text.substring(start, i)));
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    public static String normalize(String term) {
+        String lower = term.toLowerCase();
+        int n = lower.length();
+        if (n > 3 && lower.charAt(n - 1) == 's' && lower.charAt(n - 2) != 's') {
+            return lower.substring(0, n - 1);
+        }
+        return lower;
+    }
+}
@@ -0,0 +1,102 @@
+package com.ecommerce.search;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size min-heap of (doc, score) pairs on primitive arrays, used to keep the
+ * k best hits of a scan without boxing. Equal scores prefer the lower doc id.
+ */
+final class TopK {
+    private final int capacity;
+    private int[] docs;
+    private float[] scores;
+    private int size;
+
+    TopK(int capacity) {
+        this.capacity = capacity;
+        int initial = Math.max(1, Math.min(capacity, 64));
+        this.docs = new int[initial];
+        this.scores = new float[initial];
+    }
+
+    void offer(int doc, float score) {
+        if (size < capacity) {
+            if (size == docs.length) {
+                int grown = Math.min(capacity, size * 2);
+                docs = Arrays.copyOf(docs, grown);
+                scores = Arrays.copyOf(scores, grown);
+            }
+            docs[size] = doc;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (size > 0 && worse(docs[0], scores[0], doc, score)) {
+            docs[0] = doc;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** Empties the heap and returns doc ids best first, copying their scores into scoresOut if given. */
+    int[] drain(float[] scoresOut) {
+        int[] result = new int[size];
+        for (int i = size - 1; i >= 0; i--) {
+            result[i] = docs[0];
+            if (scoresOut != null) {
+                scoresOut[i] = scores[0];
+            }
+            size--;
+            docs[0] = docs[size];
+            scores[0] = scores[size];
+            siftDown(0);
+        }
+        return result;
+    }
+
+    // True when (docA, scoreA) ranks below (docB, scoreB)
+    private static boolean worse(int docA, float scoreA, int docB, float scoreB) {
+        return scoreA < scoreB || (scoreA == scoreB && docA > docB);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!worse(docs[i], scores[i], docs[parent], scores[parent])) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) {
+                return;
+            }
+            int smallest = left;
+            int right = left + 1;
+            if (right < size && worse(docs[right], scores[right], docs[left], scores[left])) {
+                smallest = right;
+            }
+            if (!worse(docs[smallest], scores[smallest], docs[i], scores[i])) {
+                return;
+            }
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int d = docs[a];
+        docs[a] = docs[b];
+        docs[b] = d;
+        float s = scores[a];
+        scores[a] = scores[b];
+        scores[b] = s;
+    }
+}
@@ -0,0 +1,48 @@
+package com.ecommerce.servlet;
+
+import javax.servlet.*;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Guards the bulk import and export endpoints with a shared operator token sent as
+ * X-Admin-Token. There are no user roles, so the endpoints stay disabled
+ * unless {@code admin.token} is set.
+ */
+@WebFilter(urlPatterns = {"/api/products/import", "/api/export/*"}, asyncSupported = true)
+public class AdminFilter implements Filter {
+    private static final String TOKEN = System.getProperty("admin.token");
+
+    public void init(FilterConfig filterConfig) {
+    }
+
+    public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) req;
+        if ("OPTIONS".equals(request.getMethod())) {
+            chain.doFilter(req, res);
+            return;
+        }
+
+        HttpServletResponse response = (HttpServletResponse) res;
+        if (TOKEN == null || TOKEN.isEmpty()) {
+            response.setStatus(403);
+            return;
+        }
+        String presented = request.getHeader("X-Admin-Token");
+        // Constant-time comparison so the token cannot be guessed byte by byte from timings
+        if (presented == null || !MessageDigest.isEqual(TOKEN.getBytes(StandardCharsets.UTF_8),
+                presented.getBytes(StandardCharsets.UTF_8))) {
+            response.setStatus(401);
+            return;
+        }
+        chain.doFilter(req, res);
+    }
+
+    public void destroy() {
+    }
+}
@@ -0,0 +1,53 @@
+package com.ecommerce.servlet;
+
+import com.ecommerce.auth.TokenService;
+
+import javax.servlet.*;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Verifies the bearer token once per request and exposes the user id as a
+ * request attribute, so servlets behind it never look the user up themselves.
+ */
+@WebFilter(urlPatterns = {"/api/cart/*", "/api/orders/*"}, asyncSupported = true)
+public class AuthFilter implements Filter {
+    static final String USER_ID = "com.ecommerce.userId";
+
+    private final TokenService tokens = TokenService.getInstance();
+
+    public void init(FilterConfig filterConfig) {
+    }
+
+    public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) req;
+        if ("OPTIONS".equals(request.getMethod())) {
+            chain.doFilter(req, res);
+            return;
+        }
+
+        String authHeader = request.getHeader("Authorization");
+        int userId = authHeader != null && authHeader.startsWith("Bearer ")
+                ? tokens.verify(authHeader.substring(7).trim())
+                : -1;
+        if (userId == -1) {
+            HttpServletResponse response = (HttpServletResponse) res;
+            response.setHeader("WWW-Authenticate", "Bearer");
+            response.setStatus(401);
+            return;
+        }
+        request.setAttribute(USER_ID, userId);
+        chain.doFilter(req, res);
+    }
+
+    public void destroy() {
+    }
+
+    static int getUserId(HttpServletRequest req) {
+        Object userId = req.getAttribute(USER_ID);
+        return userId instanceof Integer ? (Integer) userId : -1;
+    }
+}
@@ -1,10 +1,14 @@
 package com.ecommerce.servlet;
 
+import com.ecommerce.auth.PasswordHasher;
+import com.ecommerce.auth.TokenService;
 import com.ecommerce.dao.UserDAO;
 import com.ecommerce.model.User;
 import com.google.gson.Gson;
-import org.mindrot.jbcrypt.BCrypt;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -12,11 +16,22 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
-@WebServlet("/api/auth/*")
+/**
+ * Login and registration. BCrypt runs on {@link PasswordHasher}'s pool; the
+ * container thread is released as soon as the user row has been read.
+ */
+@WebServlet(urlPatterns = "/api/auth/*", asyncSupported = true)
 public class AuthServlet extends HttpServlet {
+    private static final long ASYNC_TIMEOUT_MS = Long.getLong("auth.asyncTimeoutMs", 10_000L);
+
     private UserDAO userDAO = new UserDAO();
+    private TokenService tokens = TokenService.getInstance();
+    private PasswordHasher hasher = PasswordHasher.getInstance();
     private Gson gson = new Gson();
 
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
@@ -25,33 +40,150 @@ public class AuthServlet extends HttpServlet {
 
         String body = req.getReader().lines().collect(Collectors.joining());
         User user = gson.fromJson(body, User.class);
-        Map<String, Object> response = new HashMap<>();
 
         if ("/register".equals(path)) {
-            if (userDAO.findByEmail(user.getEmail()) != null) {
-                response.put("success", false);
-                response.put("message", "Email already exists");
+            register(req, resp, user);
+        } else if ("/login".equals(path)) {
+            login(req, resp, user);
+        } else {
+            resp.getWriter().write(gson.toJson(new HashMap<>()));
+        }
+    }
+
+    private void register(HttpServletRequest req, HttpServletResponse resp, User user) throws IOException {
+        if (userDAO.findByEmail(user.getEmail()) != null) {
+            resp.getWriter().write(gson.toJson(Map.of("success", false, "message", "Email already exists")));
+            return;
+        }
+
+        Reply reply = new Reply(req, resp);
+        CompletableFuture<String> hashed;
+        try {
+            hashed = hasher.hash(user.getPassword());
+        } catch (RejectedExecutionException e) {
+            reply.busy();
+            return;
+        }
+        reply.cancelOnTimeout(hashed);
+        hashed.whenComplete((hash, error) -> {
+            // Once the timeout has answered 503 the account must not be created behind the client's back
+            if (!reply.claim()) {
+                return;
+            }
+            Map<String, Object> response = new HashMap<>();
+            if (error == null) {
+                user.setPassword(hash);
+            }
+            if (error == null && userDAO.create(user)) {
+                response.put("success", true);
+                response.put("token", tokens.issue(user.getId()));
             } else {
-                user.setPassword(BCrypt.hashpw(user.getPassword(), BCrypt.gensalt()));
-                if (userDAO.create(user)) {
-                    response.put("success", true);
-                    response.put("token", "dummy-jwt-token-for-" + user.getEmail()); // Simplified for assignment
-                } else {
-                    response.put("success", false);
-                    response.put("message", "Registration failed");
-                }
+                response.put("success", false);
+                response.put("message", "Registration failed");
             }
-        } else if ("/login".equals(path)) {
-            User existingUser = userDAO.findByEmail(user.getEmail());
-            if (existingUser != null && BCrypt.checkpw(user.getPassword(), existingUser.getPassword())) {
+            reply.write(200, response);
+        });
+    }
+
+    private void login(HttpServletRequest req, HttpServletResponse resp, User user) throws IOException {
+        User existingUser = userDAO.findByEmail(user.getEmail());
+        if (existingUser == null) {
+            resp.getWriter().write(gson.toJson(Map.of("success", false, "message", "Invalid credentials")));
+            return;
+        }
+
+        Reply reply = new Reply(req, resp);
+        CompletableFuture<Boolean> checked;
+        try {
+            checked = hasher.verify(user.getPassword(), existingUser.getPassword());
+        } catch (RejectedExecutionException e) {
+            reply.busy();
+            return;
+        }
+        reply.cancelOnTimeout(checked);
+        checked.whenComplete((valid, error) -> {
+            if (!reply.claim()) {
+                return;
+            }
+            Map<String, Object> response = new HashMap<>();
+            if (error == null && valid) {
                 response.put("success", true);
-                response.put("token", "dummy-jwt-token-for-" + existingUser.getEmail());
+                response.put("token", tokens.issue(existingUser.getId()));
+                CompletableFuture<String> upgraded = hasher.upgrade(user.getPassword(), existingUser.getPassword());
+                if (upgraded != null) {
+                    upgraded.thenAccept(hash -> userDAO.updatePassword(existingUser.getId(), hash));
+                }
             } else {
                 response.put("success", false);
                 response.put("message", "Invalid credentials");
             }
+            reply.write(200, response);
+        });
+    }
+
+    /** Completes an async response exactly once, whichever of the hash, a rejection or the timeout comes first. */
+    private class Reply implements AsyncListener {
+        private final AsyncContext context;
+        private final HttpServletResponse resp;
+        private final AtomicBoolean done = new AtomicBoolean();
+        private volatile CompletableFuture<?> work;
+
+        Reply(HttpServletRequest req, HttpServletResponse resp) {
+            this.resp = resp;
+            this.context = req.startAsync(req, resp);
+            context.setTimeout(ASYNC_TIMEOUT_MS);
+            context.addListener(this);
+        }
+
+        void busy() {
+            resp.setHeader("Retry-After", "1");
+            send(503, Map.of("success", false, "message", "Too many authentication requests, try again shortly"));
+        }
+
+        /** Hash work still queued when the timeout answers is dropped rather than run for nobody. */
+        void cancelOnTimeout(CompletableFuture<?> work) {
+            this.work = work;
+        }
+
+        /** Takes the right to answer; false if a rejection, the timeout or an error already did. */
+        boolean claim() {
+            return done.compareAndSet(false, true);
+        }
+
+        void send(int status, Map<String, Object> body) {
+            if (claim()) {
+                write(status, body);
+            }
         }
 
-        resp.getWriter().write(gson.toJson(response));
+        /** Writes the response; only for a caller that has claimed it. */
+        void write(int status, Map<String, Object> body) {
+            try {
+                resp.setStatus(status);
+                resp.getWriter().write(gson.toJson(body));
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            } finally {
+                context.complete();
+            }
+        }
+
+        public void onTimeout(AsyncEvent event) {
+            busy();
+            CompletableFuture<?> pending = work;
+            if (pending != null) {
+                pending.cancel(false);
+            }
+        }
+
+        public void onComplete(AsyncEvent event) {
+        }
+
+        public void onError(AsyncEvent event) {
+            done.set(true);
+        }
+
+        public void onStartAsync(AsyncEvent event) {
+        }
     }
 }
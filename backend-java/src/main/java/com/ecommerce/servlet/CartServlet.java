@@ -1,10 +1,11 @@
 package com.ecommerce.servlet;
 
 import com.ecommerce.dao.CartDAO;
-import com.ecommerce.dao.UserDAO;
+import com.ecommerce.dao.CartOperation;
 import com.ecommerce.model.CartItem;
-import com.ecommerce.model.User;
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
 import javax.servlet.annotation.WebServlet;
@@ -12,6 +13,8 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -19,27 +22,14 @@ import java.util.stream.Collectors;
 
 @WebServlet("/api/cart/*")
 public class CartServlet extends HttpServlet {
+    private static final int MAX_BATCH_OPERATIONS = Integer.getInteger("cart.maxBatchOperations", 100);
+
     private CartDAO cartDAO = new CartDAO();
-    private UserDAO userDAO = new UserDAO();
     private Gson gson = new Gson();
 
-    private int getUserIdFromToken(HttpServletRequest req) {
-        String authHeader = req.getHeader("Authorization");
-        if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            String token = authHeader.substring(7);
-            // In a real app, verify JWT. Here we extract email from dummy token
-            if (token.startsWith("dummy-jwt-token-for-")) {
-                String email = token.replace("dummy-jwt-token-for-", "");
-                User user = userDAO.findByEmail(email);
-                return user != null ? user.getId() : -1;
-            }
-        }
-        return -1;
-    }
-
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         resp.setContentType("application/json");
-        int userId = getUserIdFromToken(req);
+        int userId = AuthFilter.getUserId(req);
 
         if (userId == -1) {
             resp.setStatus(401);
@@ -47,19 +37,23 @@ public class CartServlet extends HttpServlet {
         }
 
         List<CartItem> items = cartDAO.findByUserId(userId);
-        double total = items.stream().mapToDouble(i -> i.getProduct().getPrice() * i.getQuantity()).sum();
-
-        Map<String, Object> data = new HashMap<>();
-        data.put("items", items);
-        data.put("totalPrice", total);
 
         Map<String, Object> response = new HashMap<>();
         response.put("success", true);
-        response.put("cart", data);
+        response.put("cart", cartData(items));
 
         resp.getWriter().write(gson.toJson(response));
     }
 
+    private Map<String, Object> cartData(List<CartItem> items) {
+        double total = items.stream().mapToDouble(i -> i.getProduct().getPrice() * i.getQuantity()).sum();
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("items", items);
+        data.put("totalPrice", total);
+        return data;
+    }
+
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         handleUpdate(req, resp);
     }
@@ -70,7 +64,7 @@ public class CartServlet extends HttpServlet {
 
     private void handleUpdate(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         resp.setContentType("application/json");
-        int userId = getUserIdFromToken(req);
+        int userId = AuthFilter.getUserId(req);
         if (userId == -1) {
             resp.setStatus(401);
             return;
@@ -80,7 +74,10 @@ public class CartServlet extends HttpServlet {
         String body = req.getReader().lines().collect(Collectors.joining());
         JsonObject json = gson.fromJson(body, JsonObject.class);
 
-        if ("/add".equals(path)) {
+        if ("/batch".equals(path)) {
+            handleBatch(userId, json, resp);
+            return;
+        } else if ("/add".equals(path)) {
             int productId = json.get("productId").getAsInt();
             int quantity = json.get("quantity").getAsInt();
             cartDAO.addToCart(userId, productId, quantity);
@@ -93,9 +90,68 @@ public class CartServlet extends HttpServlet {
         resp.getWriter().write(gson.toJson(Map.of("success", true)));
     }
 
+    /**
+     * Applies {"operations": [{"op": "add|update|remove", "productId": 1, "quantity": 2}, ...]}
+     * atomically and returns the resulting cart.
+     */
+    private void handleBatch(int userId, JsonObject json, HttpServletResponse resp) throws IOException {
+        List<CartOperation> ops = new ArrayList<>();
+        try {
+            JsonArray operations = json == null ? null : json.getAsJsonArray("operations");
+            if (operations == null || operations.size() == 0) {
+                throw new IllegalArgumentException("operations must be a non-empty array");
+            }
+            if (operations.size() > MAX_BATCH_OPERATIONS) {
+                throw new IllegalArgumentException("At most " + MAX_BATCH_OPERATIONS + " operations per batch");
+            }
+            for (JsonElement element : operations) {
+                ops.add(parseOperation(element.getAsJsonObject()));
+            }
+        } catch (RuntimeException e) {
+            resp.setStatus(400);
+            resp.getWriter().write(gson.toJson(Map.of("success", false, "message", String.valueOf(e.getMessage()))));
+            return;
+        }
+
+        try {
+            List<CartItem> items = cartDAO.applyBatch(userId, ops);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("applied", ops.size());
+            response.put("cart", cartData(items));
+            resp.getWriter().write(gson.toJson(response));
+        } catch (SQLException e) {
+            // Typically an unknown product id; the transaction has been rolled back
+            resp.setStatus(409);
+            resp.getWriter().write(gson.toJson(Map.of("success", false, "message", "Cart batch rejected")));
+        }
+    }
+
+    private static CartOperation parseOperation(JsonObject op) {
+        String type = op.has("op") ? op.get("op").getAsString() : "";
+        if (!op.has("productId")) {
+            throw new IllegalArgumentException("productId is required");
+        }
+        int productId = op.get("productId").getAsInt();
+        switch (type) {
+            case "add":
+                return CartOperation.add(productId, op.has("quantity") ? op.get("quantity").getAsInt() : 1);
+            case "update":
+                if (!op.has("quantity")) {
+                    throw new IllegalArgumentException("quantity is required for update");
+                }
+                return CartOperation.set(productId, op.get("quantity").getAsInt());
+            case "remove":
+                return CartOperation.remove(productId);
+            default:
+                throw new IllegalArgumentException("Unknown op: " + type);
+        }
+    }
+
     protected void doDelete(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         resp.setContentType("application/json");
-        int userId = getUserIdFromToken(req);
+        int userId = AuthFilter.getUserId(req);
         if (userId == -1) {
             resp.setStatus(401);
             return;
@@ -0,0 +1,64 @@
+package com.ecommerce.servlet;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Encoded JSON bodies of product listing responses, keyed by request parameters
+ * and valid for a single catalog version. Bounded LRU; the whole cache is dropped
+ * as soon as a newer catalog version is seen.
+ */
+class CatalogResponseCache {
+    private static final int MAX_ENTRIES = Integer.getInteger("catalog.responseCacheSize", 1024);
+
+    private final Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private long version = -1;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder bytesServed = new LongAdder();
+
+    synchronized byte[] get(long catalogVersion, String key) {
+        if (catalogVersion != version) {
+            entries.clear();
+            version = catalogVersion;
+        }
+        byte[] body = entries.get(key);
+        if (body != null) {
+            hits.increment();
+            bytesServed.add(body.length);
+        } else {
+            misses.increment();
+        }
+        return body;
+    }
+
+    synchronized void put(long catalogVersion, String key, byte[] body) {
+        if (catalogVersion == version) {
+            entries.put(key, body);
+        }
+        bytesServed.add(body.length);
+    }
+
+    void recordNotModified() {
+        notModified.increment();
+    }
+
+    synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("version", version);
+        stats.put("entries", entries.size());
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("notModified", notModified.sum());
+        stats.put("bytesServed", bytesServed.sum());
+        return stats;
+    }
+}
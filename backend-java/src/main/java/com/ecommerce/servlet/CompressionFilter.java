@@ -0,0 +1,274 @@
+package com.ecommerce.servlet;
+
+import javax.servlet.*;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+
+/**
+ * Gzip-encodes responses of compressible content types once they grow past
+ * {@code compression.minSize} bytes (default 1024), for clients that accept it.
+ * Deflaters are pooled because each one holds native zlib buffers that are
+ * expensive to allocate per response.
+ */
+@WebFilter(urlPatterns = "/*", asyncSupported = true)
+public class CompressionFilter implements Filter {
+    static final int MIN_SIZE = Integer.getInteger("compression.minSize", 1024);
+    static final int LEVEL = Integer.getInteger("compression.level", Deflater.DEFAULT_COMPRESSION);
+
+    private static final BlockingQueue<Deflater> DEFLATERS =
+            new ArrayBlockingQueue<>(Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private static final LongAdder compressed = new LongAdder();
+    private static final LongAdder skipped = new LongAdder();
+    private static final LongAdder bytesIn = new LongAdder();
+    private static final LongAdder bytesOut = new LongAdder();
+    private static final LongAdder cpuNanos = new LongAdder();
+    private static final LongAdder deflatersCreated = new LongAdder();
+
+    public void init(FilterConfig filterConfig) {
+    }
+
+    public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) req;
+        HttpServletResponse response = (HttpServletResponse) res;
+        // Representations differ by encoding, so shared caches must key on it either way
+        response.setHeader("Vary", "Accept-Encoding");
+
+        if (!acceptsGzip(request) || "HEAD".equals(request.getMethod())) {
+            chain.doFilter(req, res);
+            return;
+        }
+
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        boolean gzipTag = ifNoneMatch != null && ifNoneMatch.contains(GzipResponseWrapper.ETAG_SUFFIX + "\"");
+        GzipResponseWrapper wrapper = new GzipResponseWrapper(response, gzipTag);
+        GzipAwareRequest wrappedRequest = new GzipAwareRequest(request, wrapper);
+        boolean completed = false;
+        try {
+            chain.doFilter(wrappedRequest, wrapper);
+            completed = true;
+        } finally {
+            // Async responses are finished by FinishingAsyncContext.complete() instead; a failed
+            // request only hands its deflater back, the container writes the error
+            if (!wrappedRequest.isAsyncStarted()) {
+                if (completed) {
+                    wrapper.finish();
+                } else {
+                    wrapper.release();
+                }
+            }
+        }
+    }
+
+    public void destroy() {
+        Deflater deflater;
+        while ((deflater = DEFLATERS.poll()) != null) {
+            deflater.end();
+        }
+    }
+
+    public static Map<String, Object> getStats() {
+        long in = bytesIn.sum();
+        long out = bytesOut.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("compressed", compressed.sum());
+        stats.put("skipped", skipped.sum());
+        stats.put("bytesIn", in);
+        stats.put("bytesOut", out);
+        stats.put("ratio", in == 0 ? 0 : (double) out / in);
+        stats.put("cpuMs", cpuNanos.sum() / 1_000_000.0);
+        stats.put("deflatersCreated", deflatersCreated.sum());
+        stats.put("deflatersPooled", DEFLATERS.size());
+        return stats;
+    }
+
+    static boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String type = contentType.toLowerCase();
+        return type.startsWith("text/") || type.contains("json") || type.contains("xml")
+                || type.contains("javascript");
+    }
+
+    static Deflater borrowDeflater() {
+        Deflater deflater = DEFLATERS.poll();
+        if (deflater == null) {
+            deflatersCreated.increment();
+            // nowrap: the gzip header and trailer are written by GzipResponseWrapper
+            deflater = new Deflater(LEVEL, true);
+        }
+        return deflater;
+    }
+
+    static void releaseDeflater(Deflater deflater) {
+        deflater.reset();
+        if (!DEFLATERS.offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    static void recordCompressed(long in, long out, long cpu) {
+        compressed.increment();
+        bytesIn.add(in);
+        bytesOut.add(out);
+        cpuNanos.add(cpu);
+    }
+
+    static void recordSkipped() {
+        skipped.increment();
+    }
+
+    static long threadCpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        String accept = request.getHeader("Accept-Encoding");
+        if (accept == null) {
+            return false;
+        }
+        for (String coding : accept.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length < 2 || !parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compressed responses carry "-gzip" entity tags; strip the suffix from
+     * If-None-Match so servlets can compare against their own tags. Async
+     * contexts started through this request finish the compressed body before
+     * completing, since the container closes the output before any listener runs.
+     */
+    private static class GzipAwareRequest extends HttpServletRequestWrapper {
+        private final GzipResponseWrapper wrapper;
+        private AsyncContext asyncContext;
+
+        GzipAwareRequest(HttpServletRequest request, GzipResponseWrapper wrapper) {
+            super(request);
+            this.wrapper = wrapper;
+        }
+
+        @Override
+        public AsyncContext startAsync() {
+            asyncContext = new FinishingAsyncContext(super.startAsync(), wrapper);
+            return asyncContext;
+        }
+
+        @Override
+        public AsyncContext startAsync(ServletRequest servletRequest, ServletResponse servletResponse) {
+            asyncContext = new FinishingAsyncContext(super.startAsync(servletRequest, servletResponse), wrapper);
+            return asyncContext;
+        }
+
+        @Override
+        public AsyncContext getAsyncContext() {
+            return asyncContext != null ? asyncContext : super.getAsyncContext();
+        }
+
+        @Override
+        public String getHeader(String name) {
+            String value = super.getHeader(name);
+            if (value != null && "If-None-Match".equalsIgnoreCase(name)) {
+                return value.replace(GzipResponseWrapper.ETAG_SUFFIX + "\"", "\"");
+            }
+            return value;
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            if ("If-None-Match".equalsIgnoreCase(name)) {
+                String value = getHeader(name);
+                return value == null ? Collections.emptyEnumeration()
+                        : Collections.enumeration(Collections.singletonList(value));
+            }
+            return super.getHeaders(name);
+        }
+    }
+
+    private static class FinishingAsyncContext implements AsyncContext {
+        private final AsyncContext delegate;
+        private final GzipResponseWrapper wrapper;
+
+        FinishingAsyncContext(AsyncContext delegate, GzipResponseWrapper wrapper) {
+            this.delegate = delegate;
+            this.wrapper = wrapper;
+        }
+
+        public void complete() {
+            try {
+                wrapper.finish();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            delegate.complete();
+        }
+
+        public ServletRequest getRequest() {
+            return delegate.getRequest();
+        }
+
+        public ServletResponse getResponse() {
+            return delegate.getResponse();
+        }
+
+        public boolean hasOriginalRequestAndResponse() {
+            return delegate.hasOriginalRequestAndResponse();
+        }
+
+        public void dispatch() {
+            delegate.dispatch();
+        }
+
+        public void dispatch(String path) {
+            delegate.dispatch(path);
+        }
+
+        public void dispatch(ServletContext context, String path) {
+            delegate.dispatch(context, path);
+        }
+
+        public void start(Runnable run) {
+            delegate.start(run);
+        }
+
+        public void addListener(AsyncListener listener) {
+            delegate.addListener(listener);
+        }
+
+        public void addListener(AsyncListener listener, ServletRequest servletRequest,
+                ServletResponse servletResponse) {
+            delegate.addListener(listener, servletRequest, servletResponse);
+        }
+
+        public <T extends AsyncListener> T createListener(Class<T> clazz) throws ServletException {
+            return delegate.createListener(clazz);
+        }
+
+        public void setTimeout(long timeout) {
+            delegate.setTimeout(timeout);
+        }
+
+        public long getTimeout() {
+            return delegate.getTimeout();
+        }
+    }
+}
@@ -5,15 +5,23 @@ import javax.servlet.annotation.WebFilter;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 
-@WebFilter("/*")
+@WebFilter(urlPatterns = "/*", asyncSupported = true)
 public class CorsFilter implements Filter {
+    // Jetty 9.4 implements Servlet 3.1, where init/destroy have no default implementations
+    public void init(FilterConfig filterConfig) {
+    }
+
     public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain)
             throws IOException, ServletException {
         HttpServletResponse response = (HttpServletResponse) res;
         response.setHeader("Access-Control-Allow-Origin", "*");
         response.setHeader("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
-        response.setHeader("Access-Control-Allow-Headers", "Content-Type, Authorization");
+        response.setHeader("Access-Control-Allow-Headers", "Content-Type, Content-Encoding, Authorization, If-None-Match, Idempotency-Key, X-Admin-Token");
+        response.setHeader("Access-Control-Expose-Headers", "ETag, Server-Timing, Idempotent-Replayed");
         response.setHeader("Access-Control-Max-Age", "3600");
         chain.doFilter(req, res);
     }
+
+    public void destroy() {
+    }
 }
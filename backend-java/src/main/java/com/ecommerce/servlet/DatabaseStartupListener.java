@@ -0,0 +1,30 @@
+package com.ecommerce.servlet;
+
+import com.ecommerce.config.DatabaseConfig;
+import com.ecommerce.dao.ProductCatalog;
+import com.ecommerce.dao.RelatedProductsIndex;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * Migrates the database while the application deploys instead of on the first
+ * request, so a failed migration or query plan check stops deployment. Then
+ * the related-products rebuild job starts counting past orders in the
+ * background. On undeploy the background jobs stop and a file-backed store is
+ * closed cleanly.
+ */
+@WebListener
+public class DatabaseStartupListener implements ServletContextListener {
+    public void contextInitialized(ServletContextEvent event) {
+        event.getServletContext().log("Database ready: " + DatabaseConfig.getStoreStats());
+        RelatedProductsIndex.getInstance().start(DatabaseConfig.getDataSource());
+    }
+
+    public void contextDestroyed(ServletContextEvent event) {
+        RelatedProductsIndex.getInstance().stop();
+        ProductCatalog.getInstance().stop();
+        DatabaseConfig.shutdown();
+    }
+}
@@ -0,0 +1,62 @@
+package com.ecommerce.servlet;
+
+import com.ecommerce.bulk.NdjsonExporter;
+import com.ecommerce.config.DatabaseConfig;
+import com.google.gson.Gson;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Full NDJSON dumps for downstream jobs: /api/export/products and
+ * /api/export/orders, optionally resuming with ?afterId=. Responses are gzip
+ * encoded by CompressionFilter when the client accepts it.
+ */
+@WebServlet("/api/export/*")
+public class ExportServlet extends HttpServlet {
+    private final NdjsonExporter exporter = new NdjsonExporter(DatabaseConfig.getDataSource());
+    private Gson gson = new Gson();
+
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        String path = req.getPathInfo();
+        String name = "/products".equals(path) ? "products" : "/orders".equals(path) ? "orders" : null;
+        if (name == null) {
+            resp.setStatus(404);
+            return;
+        }
+        int afterId;
+        try {
+            String after = req.getParameter("afterId");
+            afterId = after == null ? 0 : Integer.parseInt(after);
+        } catch (NumberFormatException e) {
+            resp.setStatus(400);
+            resp.setContentType("application/json");
+            resp.getWriter().write(gson.toJson(Map.of("success", false, "message", "afterId must be an integer")));
+            return;
+        }
+
+        resp.setContentType("application/x-ndjson;charset=UTF-8");
+        resp.setHeader("Content-Disposition", "attachment; filename=\"" + name + ".ndjson\"");
+        try {
+            if ("products".equals(name)) {
+                exporter.exportProducts(resp.getOutputStream(), afterId);
+            } else {
+                exporter.exportOrders(resp.getOutputStream(), afterId);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            if (!resp.isCommitted()) {
+                resp.reset();
+                resp.setStatus(500);
+                return;
+            }
+            // Abort the connection so a partial dump cannot be mistaken for a complete one
+            throw new IOException("Export of " + name + " failed after the response was committed", e);
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package com.ecommerce.servlet;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Buffers the body until it reaches {@link CompressionFilter#MIN_SIZE}, then
+ * decides once whether to stream it through a pooled Deflater. Bodies that
+ * finish below the threshold are written as-is with their real length.
+ */
+class GzipResponseWrapper extends HttpServletResponseWrapper {
+    static final String ETAG_SUFFIX = "-gzip";
+
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final HttpServletResponse response;
+    private final boolean clientSentGzipTag;
+    private GzipOutputStream stream;
+    private PrintWriter writer;
+    private long contentLength = -1;
+    private boolean encodedUpstream;
+
+    GzipResponseWrapper(HttpServletResponse response, boolean clientSentGzipTag) {
+        super(response);
+        this.response = response;
+        this.clientSentGzipTag = clientSentGzipTag;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called");
+        }
+        return stream();
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            if (stream != null) {
+                throw new IllegalStateException("getOutputStream() has already been called");
+            }
+            writer = new PrintWriter(new OutputStreamWriter(stream(), getCharacterEncoding()));
+        }
+        return writer;
+    }
+
+    private GzipOutputStream stream() {
+        if (stream == null) {
+            stream = new GzipOutputStream();
+        }
+        return stream;
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        contentLength = len;
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        contentLength = len;
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if (interceptHeader(name, value)) {
+            super.setHeader(name, value);
+        }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if (interceptHeader(name, value)) {
+            super.addHeader(name, value);
+        }
+    }
+
+    private boolean interceptHeader(String name, String value) {
+        if ("Content-Length".equalsIgnoreCase(name)) {
+            contentLength = value == null ? -1 : Long.parseLong(value.trim());
+            return false;
+        }
+        if ("Content-Encoding".equalsIgnoreCase(name)) {
+            encodedUpstream = true;
+        }
+        return true;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        if (stream != null) {
+            stream.flush();
+        }
+        super.flushBuffer();
+    }
+
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        if (stream != null) {
+            stream.resetBuffer();
+        }
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        contentLength = -1;
+        encodedUpstream = false;
+        if (stream != null) {
+            stream.resetBuffer();
+        }
+    }
+
+    /** Completes the body: flushes a short body uncompressed or writes the gzip trailer. */
+    void finish() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        if (stream != null) {
+            stream.finish();
+            return;
+        }
+        if (response.getStatus() == HttpServletResponse.SC_NOT_MODIFIED && clientSentGzipTag) {
+            // Echo the tag the client cached alongside its compressed copy
+            String etag = response.getHeader("ETag");
+            if (etag != null) {
+                response.setHeader("ETag", gzipTag(etag));
+            }
+        }
+        if (contentLength >= 0 && !response.isCommitted()) {
+            response.setContentLengthLong(contentLength);
+        }
+    }
+
+    /** Returns the deflater to the pool without completing the body. */
+    void release() {
+        if (stream != null) {
+            stream.release();
+        }
+    }
+
+    private static String gzipTag(String etag) {
+        if (etag.endsWith("\"") && !etag.endsWith(ETAG_SUFFIX + "\"")) {
+            return etag.substring(0, etag.length() - 1) + ETAG_SUFFIX + "\"";
+        }
+        return etag;
+    }
+
+    private boolean shouldCompress() {
+        int status = response.getStatus();
+        return !encodedUpstream
+                && status != HttpServletResponse.SC_NO_CONTENT
+                && status != HttpServletResponse.SC_NOT_MODIFIED
+                && !response.isCommitted()
+                && CompressionFilter.isCompressible(response.getContentType());
+    }
+
+    private class GzipOutputStream extends ServletOutputStream {
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(256, CompressionFilter.MIN_SIZE));
+        private ServletOutputStream out;
+        private Deflater deflater;
+        private final CRC32 crc = new CRC32();
+        private final byte[] chunk = new byte[8192];
+        private long bytesIn;
+        private long bytesOut;
+        private long cpuNanos;
+        private boolean finished;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (finished) {
+                throw new IOException("Response already finished");
+            }
+            if (buffer != null) {
+                buffer.write(b, off, len);
+                if (buffer.size() >= CompressionFilter.MIN_SIZE) {
+                    decide();
+                }
+                return;
+            }
+            if (deflater != null) {
+                deflate(b, off, len);
+            } else {
+                out.write(b, off, len);
+            }
+        }
+
+        /** Commits to either compressing or passing through, then drains the buffer. */
+        private void decide() throws IOException {
+            byte[] pending = buffer.toByteArray();
+            buffer = null;
+            if (shouldCompress()) {
+                response.setHeader("Content-Encoding", "gzip");
+                String etag = response.getHeader("ETag");
+                if (etag != null) {
+                    response.setHeader("ETag", gzipTag(etag));
+                }
+                out = response.getOutputStream();
+                deflater = CompressionFilter.borrowDeflater();
+                out.write(GZIP_HEADER);
+                bytesOut = GZIP_HEADER.length;
+                deflate(pending, 0, pending.length);
+            } else {
+                CompressionFilter.recordSkipped();
+                if (contentLength >= 0) {
+                    response.setContentLengthLong(contentLength);
+                }
+                out = response.getOutputStream();
+                out.write(pending);
+            }
+        }
+
+        private void deflate(byte[] b, int off, int len) throws IOException {
+            long start = CompressionFilter.threadCpuTime();
+            crc.update(b, off, len);
+            bytesIn += len;
+            deflater.setInput(b, off, len);
+            while (!deflater.needsInput()) {
+                drain(Deflater.NO_FLUSH);
+            }
+            cpuNanos += CompressionFilter.threadCpuTime() - start;
+        }
+
+        private int drain(int flush) throws IOException {
+            int n = deflater.deflate(chunk, 0, chunk.length, flush);
+            if (n > 0) {
+                out.write(chunk, 0, n);
+                bytesOut += n;
+            }
+            return n;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (finished) {
+                return;
+            }
+            if (buffer != null) {
+                if (buffer.size() == 0) {
+                    return;
+                }
+                // A streaming writer is flushing before the threshold; decide on content type alone
+                contentLength = -1;
+                decide();
+            }
+            if (deflater != null) {
+                long start = CompressionFilter.threadCpuTime();
+                while (drain(Deflater.SYNC_FLUSH) == chunk.length) {
+                    // keep draining until zlib has emitted everything buffered
+                }
+                cpuNanos += CompressionFilter.threadCpuTime() - start;
+            }
+            out.flush();
+        }
+
+        void resetBuffer() {
+            if (buffer != null) {
+                buffer.reset();
+            }
+        }
+
+        void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            if (buffer != null) {
+                byte[] pending = buffer.toByteArray();
+                buffer = null;
+                if (pending.length > 0) {
+                    CompressionFilter.recordSkipped();
+                }
+                if (!response.isCommitted()) {
+                    response.setContentLength(pending.length);
+                }
+                if (pending.length > 0) {
+                    response.getOutputStream().write(pending);
+                }
+                return;
+            }
+            if (deflater == null) {
+                return;
+            }
+            try {
+                long start = CompressionFilter.threadCpuTime();
+                deflater.finish();
+                while (!deflater.finished()) {
+                    drain(Deflater.NO_FLUSH);
+                }
+                cpuNanos += CompressionFilter.threadCpuTime() - start;
+                writeTrailer();
+                CompressionFilter.recordCompressed(bytesIn, bytesOut, cpuNanos);
+            } finally {
+                CompressionFilter.releaseDeflater(deflater);
+                deflater = null;
+            }
+        }
+
+        void release() {
+            finished = true;
+            if (deflater != null) {
+                CompressionFilter.releaseDeflater(deflater);
+                deflater = null;
+            }
+        }
+
+        private void writeTrailer() throws IOException {
+            byte[] trailer = new byte[8];
+            writeIntLE(trailer, 0, (int) crc.getValue());
+            writeIntLE(trailer, 4, (int) bytesIn);
+            out.write(trailer);
+            bytesOut += trailer.length;
+        }
+
+        private void writeIntLE(byte[] b, int off, int v) {
+            b[off] = (byte) v;
+            b[off + 1] = (byte) (v >> 8);
+            b[off + 2] = (byte) (v >> 16);
+            b[off + 3] = (byte) (v >> 24);
+        }
+
+        @Override
+        public boolean isReady() {
+            return out == null || out.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            throw new IllegalStateException("Non-blocking writes are not supported on compressed responses");
+        }
+    }
+}
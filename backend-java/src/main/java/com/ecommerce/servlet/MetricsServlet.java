@@ -0,0 +1,49 @@
+package com.ecommerce.servlet;
+
+import com.ecommerce.auth.PasswordHasher;
+import com.ecommerce.auth.TokenService;
+import com.ecommerce.bulk.NdjsonExporter;
+import com.ecommerce.bulk.ProductImporter;
+import com.ecommerce.config.DatabaseConfig;
+import com.ecommerce.dao.CheckoutDAO;
+import com.ecommerce.dao.ProductCatalog;
+import com.ecommerce.dao.ProductDAO;
+import com.ecommerce.dao.RelatedProductsIndex;
+import com.google.gson.Gson;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+@WebServlet("/api/metrics")
+public class MetricsServlet extends HttpServlet {
+    private Gson gson = new Gson();
+
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json");
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("pool", DatabaseConfig.getPoolStats());
+        response.put("migrations", DatabaseConfig.getMigrationStats());
+        response.put("store", DatabaseConfig.getStoreStats());
+        response.put("catalog", ProductCatalog.getInstance().getStats());
+        response.put("search", ProductDAO.getSearchIndex().getStats());
+        response.put("suggest", ProductDAO.getSuggestIndex().getStats());
+        response.put("related", RelatedProductsIndex.getInstance().getStats());
+        response.put("facets", ProductDAO.getFacetStats());
+        response.put("productResponses", ProductServlet.getResponseCacheStats());
+        response.put("compression", CompressionFilter.getStats());
+        response.put("auth", TokenService.getInstance().getStats());
+        response.put("passwordHashing", PasswordHasher.getInstance().getStats());
+        response.put("checkout", CheckoutDAO.getStats());
+        response.put("import", ProductImporter.getStats());
+        response.put("export", NdjsonExporter.getStats());
+
+        resp.getWriter().write(gson.toJson(response));
+    }
+}
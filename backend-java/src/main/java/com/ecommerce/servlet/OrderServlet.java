@@ -1,11 +1,10 @@
 package com.ecommerce.servlet;
 
-import com.ecommerce.dao.CartDAO;
+import com.ecommerce.dao.CheckoutDAO;
+import com.ecommerce.dao.CheckoutResult;
 import com.ecommerce.dao.OrderDAO;
-import com.ecommerce.dao.UserDAO;
-import com.ecommerce.model.CartItem;
-import com.ecommerce.model.Order;
-import com.ecommerce.model.User;
+import com.ecommerce.dao.OrderPage;
+import com.ecommerce.dao.OrderPageRequest;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 
@@ -14,52 +13,57 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.sql.SQLException;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
 @WebServlet("/api/orders/*")
 public class OrderServlet extends HttpServlet {
     private OrderDAO orderDAO = new OrderDAO();
-    private CartDAO cartDAO = new CartDAO();
-    private UserDAO userDAO = new UserDAO();
+    private CheckoutDAO checkoutDAO = new CheckoutDAO();
     private Gson gson = new Gson();
 
-    private int getUserIdFromToken(HttpServletRequest req) {
-        String authHeader = req.getHeader("Authorization");
-        if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            String token = authHeader.substring(7);
-            if (token.startsWith("dummy-jwt-token-for-")) {
-                String email = token.replace("dummy-jwt-token-for-", "");
-                User user = userDAO.findByEmail(email);
-                return user != null ? user.getId() : -1;
-            }
-        }
-        return -1;
-    }
-
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         resp.setContentType("application/json");
-        int userId = getUserIdFromToken(req);
+        int userId = AuthFilter.getUserId(req);
 
         if (userId == -1) {
             resp.setStatus(401);
             return;
         }
 
-        List<Order> orders = orderDAO.findByUserId(userId);
+        OrderPageRequest page;
+        try {
+            page = OrderPageRequest.parse(req.getParameter("limit"), req.getParameter("after"));
+        } catch (IllegalArgumentException e) {
+            resp.setStatus(400);
+            resp.getWriter().write(gson.toJson(Map.of("success", false, "message", e.getMessage())));
+            return;
+        }
+        boolean expandItems = "items".equals(req.getParameter("expand"));
+
+        OrderPage orders;
+        try {
+            orders = orderDAO.findPage(userId, page, expandItems);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            resp.setStatus(500);
+            resp.getWriter().write(gson.toJson(Map.of("success", false, "message", "Failed to load orders")));
+            return;
+        }
 
         Map<String, Object> response = new HashMap<>();
         response.put("success", true);
-        response.put("orders", orders);
+        response.put("orders", orders.getOrders());
+        response.put("nextCursor", orders.getNextCursor());
 
         resp.getWriter().write(gson.toJson(response));
     }
 
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         resp.setContentType("application/json");
-        int userId = getUserIdFromToken(req);
+        int userId = AuthFilter.getUserId(req);
 
         if (userId == -1) {
             resp.setStatus(401);
@@ -71,37 +75,53 @@ public class OrderServlet extends HttpServlet {
             String body = req.getReader().lines().collect(Collectors.joining());
             JsonObject json = gson.fromJson(body, JsonObject.class);
 
-            // Get cart items
-            List<CartItem> cartItems = cartDAO.findByUserId(userId);
-            if (cartItems.isEmpty()) {
-                resp.getWriter().write(gson.toJson(Map.of("success", false, "message", "Cart is empty")));
-                return;
-            }
-
-            double totalAmount = cartItems.stream().mapToDouble(i -> i.getProduct().getPrice() * i.getQuantity()).sum();
-
             // Extract shipping address safely
             String address = "Default Address";
-            if (json.has("shippingAddress")) {
+            if (json != null && json.has("shippingAddress")) {
                 address = json.get("shippingAddress").toString();
             }
 
-            String paymentMethod = json.has("paymentMethod") ? json.get("paymentMethod").getAsString() : "COD";
+            String paymentMethod = json != null && json.has("paymentMethod") ? json.get("paymentMethod").getAsString() : "COD";
 
-            // Create Order
-            int orderId = orderDAO.createOrder(userId, totalAmount, address, paymentMethod);
-
-            if (orderId != -1) {
-                // Create Order Items
-                orderDAO.createOrderItems(orderId, cartItems);
+            String idempotencyKey = req.getHeader("Idempotency-Key");
+            if (idempotencyKey != null && (idempotencyKey.isEmpty() || idempotencyKey.length() > 128)) {
+                resp.setStatus(400);
+                resp.getWriter().write(gson.toJson(Map.of("success", false, "message", "Idempotency-Key must be 1-128 characters")));
+                return;
+            }
 
-                // Clear Cart
-                cartDAO.clearCart(userId);
+            CheckoutResult result = checkoutDAO.checkout(userId, address, paymentMethod, idempotencyKey);
+            resp.setHeader("Server-Timing", serverTiming(result.getStageMicros()));
+
+            switch (result.getStatus()) {
+                case REPLAYED:
+                    resp.setHeader("Idempotent-Replayed", "true");
+                    // fall through
+                case CREATED:
+                    resp.getWriter().write(gson.toJson(Map.of("success", true, "orderId", result.getOrderId())));
+                    break;
+                case EMPTY_CART:
+                    resp.getWriter().write(gson.toJson(Map.of("success", false, "message", "Cart is empty")));
+                    break;
+                case OUT_OF_STOCK:
+                    resp.setStatus(409);
+                    resp.getWriter().write(gson.toJson(Map.of("success", false, "message", "Insufficient stock",
+                            "productIds", result.getUnavailableProductIds())));
+                    break;
+                default:
+                    resp.getWriter().write(gson.toJson(Map.of("success", false, "message", "Failed to create order")));
+            }
+        }
+    }
 
-                resp.getWriter().write(gson.toJson(Map.of("success", true, "orderId", orderId)));
-            } else {
-                resp.getWriter().write(gson.toJson(Map.of("success", false, "message", "Failed to create order")));
+    private static String serverTiming(Map<String, Long> stageMicros) {
+        StringBuilder header = new StringBuilder();
+        for (Map.Entry<String, Long> stage : stageMicros.entrySet()) {
+            if (header.length() > 0) {
+                header.append(", ");
             }
+            header.append(stage.getKey()).append(";dur=").append(stage.getValue() / 1000.0);
         }
+        return header.toString();
     }
 }
@@ -1,38 +1,350 @@
 package com.ecommerce.servlet;
 
+import com.ecommerce.bulk.ImportResult;
+import com.ecommerce.bulk.ProductImporter;
+import com.ecommerce.config.DatabaseConfig;
+import com.ecommerce.dao.PageRequest;
 import com.ecommerce.dao.ProductDAO;
-import com.ecommerce.model.Product;
+import com.ecommerce.dao.ProductFilter;
+import com.ecommerce.dao.ProductPage;
+import com.ecommerce.dao.ProductSort;
+import com.ecommerce.dao.RelatedProductsIndex;
+import com.ecommerce.search.SuggestIndex;
 import com.google.gson.Gson;
 
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedInputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipException;
 
 @WebServlet("/api/products/*")
 public class ProductServlet extends HttpServlet {
+    private static final String CACHE_CONTROL = "public, max-age=0, must-revalidate";
+    private static final CatalogResponseCache RESPONSE_CACHE = new CatalogResponseCache();
+    private static final Pattern RELATED_PATH = Pattern.compile("/(\\d+)/related");
+    private static final int DEFAULT_RELATED_LIMIT = 10;
+
     private ProductDAO productDAO = new ProductDAO();
     private Gson gson = new Gson();
 
+    public static Map<String, Object> getResponseCacheStats() {
+        return RESPONSE_CACHE.getStats();
+    }
+
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        if ("/suggest".equals(req.getPathInfo())) {
+            handleSuggest(req, resp);
+            return;
+        }
+        Matcher related = RELATED_PATH.matcher(req.getPathInfo() == null ? "" : req.getPathInfo());
+        if (related.matches()) {
+            handleRelated(req, resp, related.group(1));
+            return;
+        }
         resp.setContentType("application/json");
         String search = req.getParameter("search");
+        boolean searching = search != null && !search.isEmpty();
+
+        // Keyset pagination: ?limit=&sort=id|price|rating|created_at|relevance&order=asc|desc&after=<cursor>
+        // Facet filters: ?category=&brand= (repeatable), &minRating=&minPrice=&maxPrice=; &facets=false skips counts
+        PageRequest pageRequest;
+        ProductFilter filter;
+        try {
+            pageRequest = PageRequest.parse(req.getParameter("sort"), req.getParameter("order"),
+                    req.getParameter("limit"), req.getParameter("after"),
+                    searching ? ProductSort.RELEVANCE : ProductSort.ID);
+            if (!searching && pageRequest.getSort() == ProductSort.RELEVANCE) {
+                throw new IllegalArgumentException("sort=relevance requires a search query");
+            }
+            filter = ProductFilter.parse(req.getParameterValues("category"), req.getParameterValues("brand"),
+                    req.getParameter("minRating"), req.getParameter("minPrice"), req.getParameter("maxPrice"));
+        } catch (IllegalArgumentException e) {
+            resp.setStatus(400);
+            resp.getWriter().write(gson.toJson(Map.of("success", false, "message", e.getMessage())));
+            return;
+        }
+
+        // Responses only change with the catalog, so its version is the entity tag
+        long version = productDAO.getCatalogVersion();
+        resp.setHeader("Cache-Control", CACHE_CONTROL);
+        if (matchesEtag(req.getHeader("If-None-Match"), etag(version))) {
+            RESPONSE_CACHE.recordNotModified();
+            resp.setHeader("ETag", etag(version));
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        boolean withFacets = !"false".equalsIgnoreCase(req.getParameter("facets"));
+        // Free text is length-prefixed so no query or cursor can imitate another key
+        String after = req.getParameter("after");
+        String key = (searching ? search.length() + ":" + search : "-") + "|" + pageRequest.getSort().getParam()
+                + "|" + pageRequest.isDescending() + "|" + pageRequest.getLimit()
+                + "|" + (after == null ? "-" : after.length() + ":" + after)
+                + "|" + filter.cacheKey() + "|" + withFacets;
+        byte[] body = RESPONSE_CACHE.get(version, key);
+        if (body == null) {
+            ProductPage page = searching ? productDAO.searchPage(search, pageRequest, filter, withFacets)
+                    : productDAO.findPage(pageRequest, filter, withFacets);
+            // A refresh may have landed since the check above; tag the body with what it was built from
+            version = page.getVersion();
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("products", page.getProducts());
+            response.put("nextCursor", page.getNextCursor());
+            if (page.getFacets() != null) {
+                response.put("total", page.getTotal());
+                response.put("facets", page.getFacets());
+            }
 
-        List<Product> products;
-        if (search != null && !search.isEmpty()) {
-            products = productDAO.search(search);
-        } else {
-            products = productDAO.findAll();
+            body = gson.toJson(response).getBytes(StandardCharsets.UTF_8);
+            RESPONSE_CACHE.put(version, key, body);
+        }
+
+        resp.setHeader("ETag", etag(version));
+        resp.setContentType("application/json;charset=UTF-8");
+        resp.setContentLength(body.length);
+        resp.getOutputStream().write(body);
+    }
+
+    /**
+     * Typeahead: ?prefix=&limit= (default 10, max 20). Suggestions are product
+     * names, brands and categories, best rated and best selling first.
+     */
+    private void handleSuggest(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        String prefix = req.getParameter("prefix");
+        String limitParam = req.getParameter("limit");
+        int limit = SuggestIndex.DEFAULT_LIMIT;
+        try {
+            if (prefix == null || prefix.trim().isEmpty()) {
+                throw new IllegalArgumentException("prefix is required");
+            }
+            if (limitParam != null && !limitParam.isEmpty()) {
+                try {
+                    limit = Integer.parseInt(limitParam);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("limit must be a number");
+                }
+                if (limit < 1 || limit > SuggestIndex.MAX_LIMIT) {
+                    throw new IllegalArgumentException("limit must be between 1 and " + SuggestIndex.MAX_LIMIT);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            sendError(resp, 400, e.getMessage());
+            return;
+        }
+
+        List<Map<String, Object>> suggestions = new ArrayList<>();
+        for (SuggestIndex.Suggestion suggestion : productDAO.suggest(prefix, limit)) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("text", suggestion.getText());
+            item.put("type", suggestion.getType());
+            if (suggestion.getProductId() > 0) {
+                item.put("productId", suggestion.getProductId());
+            }
+            suggestions.add(item);
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("success", true);
+        response.put("suggestions", suggestions);
+        byte[] body = gson.toJson(response).getBytes(StandardCharsets.UTF_8);
+        resp.setContentType("application/json;charset=UTF-8");
+        resp.setContentLength(body.length);
+        resp.getOutputStream().write(body);
+    }
+
+    /** Frequently bought together: /{id}/related?limit= (default 10, max 20), most often first. */
+    private void handleRelated(HttpServletRequest req, HttpServletResponse resp, String idParam)
+            throws IOException {
+        String limitParam = req.getParameter("limit");
+        int limit = DEFAULT_RELATED_LIMIT;
+        int productId;
+        try {
+            productId = Integer.parseInt(idParam);
+            if (limitParam != null && !limitParam.isEmpty()) {
+                try {
+                    limit = Integer.parseInt(limitParam);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("limit must be a number");
+                }
+                if (limit < 1 || limit > RelatedProductsIndex.TOP_K) {
+                    throw new IllegalArgumentException("limit must be between 1 and " + RelatedProductsIndex.TOP_K);
+                }
+            }
+        } catch (NumberFormatException e) {
+            sendError(resp, 404, "Product not found");
+            return;
+        } catch (IllegalArgumentException e) {
+            sendError(resp, 400, e.getMessage());
+            return;
+        }
+        if (productDAO.findById(productId) == null) {
+            sendError(resp, 404, "Product not found");
+            return;
         }
 
-        Map<String, Object> response = new HashMap<>();
+        Map<String, Object> response = new LinkedHashMap<>();
         response.put("success", true);
-        response.put("products", products);
+        response.put("productId", productId);
+        response.put("products", productDAO.related(productId, limit));
+        byte[] body = gson.toJson(response).getBytes(StandardCharsets.UTF_8);
+        resp.setContentType("application/json;charset=UTF-8");
+        resp.setContentLength(body.length);
+        resp.getOutputStream().write(body);
+    }
+
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        if ("/import".equals(req.getPathInfo())) {
+            handleImport(req, resp);
+            return;
+        }
+        resp.setStatus(404);
+    }
+
+    /**
+     * Streams the request body into the catalog. The response is NDJSON: a
+     * "progress" line after every committed stretch of batches and a final
+     * "result" line with per-row errors, so long imports can be followed live.
+     * Bodies may be gzip-encoded (Content-Encoding: gzip).
+     */
+    private void handleImport(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        String contentType = req.getContentType() == null ? "" : req.getContentType().toLowerCase();
+        if (contentType.startsWith("application/x-www-form-urlencoded")) {
+            // getParameter() would consume a form body before the importer sees it
+            sendError(resp, 415, "Send text/csv or application/x-ndjson");
+            return;
+        }
+        String format = req.getParameter("format");
+        if (format == null) {
+            format = contentType.contains("csv") ? "csv" : contentType.contains("ndjson")
+                    || contentType.contains("jsonl") || contentType.contains("json-seq") ? "ndjson" : null;
+        }
+        ProductImporter importer;
+        try {
+            if (!"csv".equals(format) && !"ndjson".equals(format)) {
+                throw new IllegalArgumentException("Send text/csv or application/x-ndjson, or pass format=csv|ndjson");
+            }
+            String batchSize = req.getParameter("batchSize");
+            importer = new ProductImporter(DatabaseConfig.getDataSource(),
+                    batchSize == null ? ProductImporter.DEFAULT_BATCH_SIZE : Integer.parseInt(batchSize));
+        } catch (IllegalArgumentException e) {
+            sendError(resp, 400, e.getMessage());
+            return;
+        }
+
+        String charset = req.getCharacterEncoding() == null ? "UTF-8" : req.getCharacterEncoding();
+        Reader reader;
+        try {
+            InputStream body = new BufferedInputStream(req.getInputStream(), 65536);
+            if ("gzip".equalsIgnoreCase(req.getHeader("Content-Encoding"))) {
+                // Reads the gzip header, so a body that isn't gzip fails here
+                body = new GZIPInputStream(body, 65536);
+            }
+            reader = new InputStreamReader(body, charset);
+        } catch (UnsupportedEncodingException e) {
+            sendError(resp, 415, "Unsupported charset: " + charset);
+            return;
+        } catch (ZipException | EOFException e) {
+            sendError(resp, 400, "Body is not valid gzip: " + e.getMessage());
+            return;
+        }
+
+        resp.setContentType("application/x-ndjson;charset=UTF-8");
+        PrintWriter out = resp.getWriter();
+        ProductImporter.ProgressListener progress = p -> {
+            out.write(gson.toJson(line("progress", p)));
+            out.write('\n');
+            out.flush();
+        };
+        try {
+            ImportResult result = "csv".equals(format) ? importer.importCsv(reader, progress)
+                    : importer.importNdjson(reader, progress);
+            Map<String, Object> done = line("result", result);
+            done.put("success", true);
+            out.write(gson.toJson(done));
+            out.write('\n');
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            // Raised before any row is read, so the status can still change
+            sendError(resp, e instanceof IllegalStateException ? 409 : 400, e.getMessage());
+        } catch (ZipException | EOFException e) {
+            // Corrupt or truncated gzip further into the body
+            String message = "Body is not valid gzip: " + e.getMessage();
+            if (!resp.isCommitted()) {
+                sendError(resp, 400, message);
+            } else {
+                out.write(gson.toJson(Map.of("type", "result", "success", false, "message", message)));
+                out.write('\n');
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            if (!resp.isCommitted()) {
+                sendError(resp, 500, "Import failed: " + e.getMessage());
+            } else {
+                out.write(gson.toJson(Map.of("type", "result", "success", false, "message", e.getMessage())));
+                out.write('\n');
+            }
+        }
+    }
+
+    private Map<String, Object> line(String type, ImportResult result) {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("type", type);
+        line.put("rowsRead", result.getRowsRead());
+        line.put("imported", result.getImported());
+        line.put("failed", result.getFailed());
+        line.put("elapsedMs", result.getElapsedMs());
+        line.put("rowsPerSecond", result.getRowsPerSecond());
+        if ("result".equals(type)) {
+            line.put("batches", result.getBatches());
+            line.put("errors", result.getErrors());
+            line.put("errorsTruncated", result.isErrorsTruncated());
+        }
+        return line;
+    }
 
-        resp.getWriter().write(gson.toJson(response));
+    private void sendError(HttpServletResponse resp, int status, String message) throws IOException {
+        resp.resetBuffer();
+        resp.setStatus(status);
+        resp.setContentType("application/json;charset=UTF-8");
+        resp.getWriter().write(gson.toJson(Map.of("success", false, "message", message)));
+    }
+
+    private static String etag(long catalogVersion) {
+        return "\"catalog-" + catalogVersion + "\"";
+    }
+
+    private static boolean matchesEtag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
     }
 }
@@ -19,6 +19,11 @@ CREATE TABLE IF NOT EXISTS products (
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
 
+-- Keyset pagination orders: (sort key, id)
+CREATE INDEX IF NOT EXISTS idx_products_price_id ON products(price, id);
+CREATE INDEX IF NOT EXISTS idx_products_rating_id ON products(rating, id);
+CREATE INDEX IF NOT EXISTS idx_products_created_id ON products(created_at, id);
+
 CREATE TABLE IF NOT EXISTS orders (
     id INT AUTO_INCREMENT PRIMARY KEY,
     user_id INT NOT NULL,
@@ -30,6 +35,9 @@ CREATE TABLE IF NOT EXISTS orders (
     FOREIGN KEY (user_id) REFERENCES users(id)
 );
 
+-- Order history pages: newest first per user, keyset on (created_at, id)
+CREATE INDEX IF NOT EXISTS idx_orders_user_created_id ON orders(user_id, created_at, id);
+
 CREATE TABLE IF NOT EXISTS order_items (
     id INT AUTO_INCREMENT PRIMARY KEY,
     order_id INT NOT NULL,
@@ -40,6 +48,16 @@ CREATE TABLE IF NOT EXISTS order_items (
     FOREIGN KEY (product_id) REFERENCES products(id)
 );
 
+-- Checkout retries carrying the same Idempotency-Key resolve to the original order
+CREATE TABLE IF NOT EXISTS order_idempotency (
+    user_id INT NOT NULL,
+    idempotency_key VARCHAR(128) NOT NULL,
+    order_id INT NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (user_id, idempotency_key),
+    FOREIGN KEY (order_id) REFERENCES orders(id)
+);
+
 CREATE TABLE IF NOT EXISTS cart_items (
     id INT AUTO_INCREMENT PRIMARY KEY,
     user_id INT NOT NULL,
@@ -47,5 +65,5 @@ CREATE TABLE IF NOT EXISTS cart_items (
     quantity INT NOT NULL DEFAULT 1,
     FOREIGN KEY (user_id) REFERENCES users(id),
     FOREIGN KEY (product_id) REFERENCES products(id),
-    UNIQUE KEY unique_cart_item (user_id, product_id)
+    CONSTRAINT unique_cart_item UNIQUE (user_id, product_id)
 );
@@ -0,0 +1,7 @@
+-- Category/brand listings and facet counts filter on both columns together
+CREATE INDEX IF NOT EXISTS idx_products_category_brand ON products(category, brand);
+
+-- cart_items(user_id) is served by the leading column of unique_cart_item and
+-- order_items(order_id) by the index backing its foreign key; a second index on
+-- the same prefix would only add write cost. QueryPlanCheck fails startup if
+-- either lookup stops using an index.
@@ -0,0 +1,172 @@
+package com.ecommerce;
+
+import com.ecommerce.bulk.ImportResult;
+import com.ecommerce.bulk.ProductImporter;
+import com.ecommerce.config.DatabaseConfig;
+import com.ecommerce.dao.ProductCatalog;
+import com.ecommerce.dao.ProductDAO;
+import com.ecommerce.model.Product;
+import com.ecommerce.search.ProductSearchIndex;
+import com.ecommerce.search.Tokenizer;
+
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Compares typo-tolerant index search with the LIKE query it replaced, on a
+ * synthetic catalog imported into the configured store. Every query is a word of
+ * product names or brands with one or two typos; a hit counts towards recall
+ * when the product's name or brand holds the intended word. Kept out of the WAR;
+ * compile with mvn test-compile and run with target/test-classes on the classpath.
+ * Optional args: products queries
+ */
+public class SearchBenchmark {
+    private static final String[] WORDS = { "headphones", "wireless", "keyboard", "monitor", "laptop", "charger",
+            "speaker", "bluetooth", "camera", "backpack", "sneakers", "jacket", "leather", "cotton", "watch",
+            "blender", "vacuum", "kettle", "mattress", "pillow", "sunglasses", "bracelet", "necklace", "perfume",
+            "shampoo", "notebook", "printer", "router", "tablet", "controller", "microphone", "projector" };
+    private static final String[] BRANDS = { "Samsung", "Sony", "Logitech", "Philips", "Panasonic", "Lenovo",
+            "Adidas", "Puma", "Nike", "Bosch", "Dyson", "Canon", "Nikon", "Xiaomi", "Anker", "Garmin" };
+    private static final String LIKE_SQL =
+            "SELECT id FROM products WHERE LOWER(name) LIKE ? OR LOWER(description) LIKE ?";
+
+    public static void main(String[] args) throws Exception {
+        int productCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int queryCount = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        Random random = new Random(42);
+
+        StringBuilder csv = new StringBuilder("name,description,price,image,brand,category,stock,rating\n");
+        for (int i = 0; i < productCount; i++) {
+            String name = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " "
+                    + (100 + random.nextInt(900));
+            csv.append(name).append(",Synthetic product ").append(i).append(",9.99,img/p.jpg,")
+                    .append(BRANDS[random.nextInt(BRANDS.length)]).append(",Benchmark,10,4\n");
+        }
+        long started = System.nanoTime();
+        ImportResult imported = new ProductImporter(DatabaseConfig.getDataSource(), ProductImporter.DEFAULT_BATCH_SIZE)
+                .importCsv(new StringReader(csv.toString()), null);
+        System.out.printf("imported %d products in %d ms%n", imported.getImported(),
+                (System.nanoTime() - started) / 1_000_000);
+
+        // Touching ProductDAO registers the index listeners before the catalog loads
+        new ProductDAO();
+        started = System.nanoTime();
+        ProductCatalog.Snapshot catalog = ProductCatalog.getInstance().refresh();
+        System.out.printf("catalog and indexes built in %d ms%n", (System.nanoTime() - started) / 1_000_000);
+        ProductSearchIndex index = ProductDAO.getSearchIndex();
+        Map<String, Set<Integer>> relevant = new HashMap<>();
+        for (Product p : catalog.getProducts()) {
+            for (String term : Tokenizer.tokenize(p.getName() + " " + p.getBrand())) {
+                relevant.computeIfAbsent(term, t -> new HashSet<>()).add(p.getId());
+            }
+        }
+
+        String[] intended = new String[queryCount];
+        String[] queries = new String[queryCount];
+        for (int q = 0; q < queryCount; q++) {
+            String word = random.nextBoolean() ? WORDS[random.nextInt(WORDS.length)]
+                    : BRANDS[random.nextInt(BRANDS.length)].toLowerCase();
+            intended[q] = word;
+            queries[q] = misspell(word, word.length() >= 8 && random.nextInt(4) == 0 ? 2 : 1, random);
+        }
+
+        long[] likeTimes = new long[queryCount];
+        long[] indexTimes = new long[queryCount];
+        double likeRecall = 0;
+        double indexRecall = 0;
+        int likeEmpty = 0;
+        int indexEmpty = 0;
+        try (Connection conn = DatabaseConfig.getConnection();
+                PreparedStatement stmt = conn.prepareStatement(LIKE_SQL)) {
+            for (int q = 0; q < queryCount; q++) {
+                Set<Integer> expected = relevant.getOrDefault(Tokenizer.normalize(intended[q]), new HashSet<>());
+
+                long start = System.nanoTime();
+                stmt.setString(1, "%" + queries[q] + "%");
+                stmt.setString(2, "%" + queries[q] + "%");
+                List<Integer> likeHits = new ArrayList<>();
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        likeHits.add(rs.getInt(1));
+                    }
+                }
+                likeTimes[q] = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                int[] indexHits = index.matchIds(queries[q]);
+                indexTimes[q] = System.nanoTime() - start;
+
+                likeRecall += recall(expected, likeHits);
+                List<Integer> hits = new ArrayList<>(indexHits.length);
+                for (int id : indexHits) {
+                    hits.add(id);
+                }
+                indexRecall += recall(expected, hits);
+                likeEmpty += likeHits.isEmpty() ? 1 : 0;
+                indexEmpty += indexHits.length == 0 ? 1 : 0;
+            }
+        }
+
+        System.out.printf("%d products, %d misspelled queries (e.g. %s -> %s)%n", productCount, queryCount,
+                intended[0], queries[0]);
+        report("LIKE ", likeTimes, likeRecall / queryCount, likeEmpty);
+        report("index", indexTimes, indexRecall / queryCount, indexEmpty);
+        System.out.println(index.getStats());
+        DatabaseConfig.shutdown();
+    }
+
+    // Applies the given number of random deletions, insertions, substitutions or transpositions
+    private static String misspell(String word, int edits, Random random) {
+        StringBuilder typo = new StringBuilder(word);
+        for (int e = 0; e < edits; e++) {
+            int at = 1 + random.nextInt(typo.length() - 2);
+            char letter = (char) ('a' + random.nextInt(26));
+            switch (random.nextInt(4)) {
+            case 0:
+                typo.deleteCharAt(at);
+                break;
+            case 1:
+                typo.insert(at, letter);
+                break;
+            case 2:
+                typo.setCharAt(at, letter);
+                break;
+            default:
+                char c = typo.charAt(at);
+                typo.setCharAt(at, typo.charAt(at + 1));
+                typo.setCharAt(at + 1, c);
+            }
+        }
+        return typo.toString();
+    }
+
+    private static double recall(Set<Integer> relevant, List<Integer> hits) {
+        if (relevant.isEmpty()) {
+            return 1;
+        }
+        int found = 0;
+        for (int id : hits) {
+            if (relevant.contains(id)) {
+                found++;
+            }
+        }
+        return found / (double) relevant.size();
+    }
+
+    private static void report(String label, long[] times, double recall, int empty) {
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%s recall %.3f, %d empty, p50 %.3f ms, p99 %.3f ms%n", label, recall, empty,
+                sorted[sorted.length / 2] / 1e6, sorted[sorted.length * 99 / 100] / 1e6);
+    }
+}